@@ -1,17 +1,44 @@
 package bdda.core;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class BufferManager {
 
+    // Nombre maximal de pages contiguës regroupées dans une même écriture
+    private static final int MAX_WRITE_RUN = 64;
+
+    // Ordre physique des pages : (fileIdx, pageIdx)
+    private static final Comparator<Frame> PHYSICAL_ORDER =
+            Comparator.<Frame>comparingInt(f -> f.pageId.getFileIdx())
+                      .thenComparingInt(f -> f.pageId.getPageIdx());
+
     private DBConfig config;
     private DiskManager diskManager;
     private BufferPolicy policy;
     private Frame[] frames;
     private Map<String, Frame> pageTable;
 
+    // Second niveau (pages evincees compressees), null si desactive
+    private CompressedPageCache compressedCache;
+
+    // Attente d'une frame quand le pool est sature
+    private int waitingPins;
+    private long pinWaitCount;
+    private long pinWaitTimeouts;
+    private long totalPinWaitNanos;
+    private long maxPinWaitNanos;
+
+    // Buffer des E/S groupées (alloué à la première séquence de plusieurs pages)
+    private byte[] ioBuffer;
+
     public BufferManager(DBConfig config, DiskManager diskManager) {
         this.config = config;
         this.diskManager = diskManager;
@@ -23,6 +50,11 @@ public class BufferManager {
         for(int i = 0; i < config.getBufferCount(); i++) {
             frames[i] = new Frame(config.getPageSize());
         }
+
+        if (config.getCompressedCacheMb() > 0) {
+            long capacity = (long) config.getCompressedCacheMb() * 1024 * 1024;
+            this.compressedCache = new CompressedPageCache(capacity, config.getPageSize());
+        }
     }
 
     public DBConfig getConfig() {
@@ -37,62 +69,110 @@ public class BufferManager {
         return pageTable;
     }
 
+    /**
+     * Retourne le cache de pages compressees (metriques hit/miss)
+     * @return le cache, ou null s'il est desactive (bm_compressed_cache_mb = 0)
+     */
+    public CompressedPageCache getCompressedCache() {
+        return compressedCache;
+    }
+
     public byte[] GetPage(PageId pageId) throws IOException {
-        String key = pageId.getFileIdx() + ":" + pageId.getPageIdx();
+        return pin(pageId).buffer;
+    }
 
-        Frame frame = pageTable.get(key);
+    /**
+     * Epingle une page et retourne la poignee (reutilisable) de sa frame.
+     * La page est desepinglee par PageHandle.close().
+     * @param pageId identifiant de la page
+     * @return la poignee sur la page epinglee
+     */
+    public PageHandle GetPageHandle(PageId pageId) throws IOException {
+        return pin(pageId).handle;
+    }
 
-        if(frame != null) {
-            frame.pinCount++;
-            frame.lastAccess = System.currentTimeMillis();
-            return frame.buffer;
-        }
+    /**
+     * Charge la page dans une frame (si besoin) et incremente son pinCount.
+     * Si toutes les frames sont epinglees, attend qu'une frame soit liberee
+     * pendant au plus bm_pin_timeout_ms (0 = echec immediat).
+     */
+    private synchronized Frame pin(PageId pageId) throws IOException {
+        String key = pageId.getFileIdx() + ":" + pageId.getPageIdx();
 
+        long waitStart = 0;
         Frame freeFrame = null;
 
-        for(Frame f : frames) {
-            if(f.pageId == null) {
-                freeFrame = f;
-                break;
+        while (freeFrame == null) {
+            Frame frame = pageTable.get(key);
+
+            if(frame != null) {
+                endPinWait(waitStart);
+                frame.pinCount++;
+                frame.lastAccess = System.currentTimeMillis();
+                return frame;
             }
-        }
 
-        if (freeFrame == null) {
-            
-            freeFrame = selectVictimFrame(); 
+            for(Frame f : frames) {
+                if(f.pageId == null) {
+                    freeFrame = f;
+                    break;
+                }
+            }
 
             if (freeFrame == null) {
-                throw new IOException("Buffer pool saturé : toutes les frames sont épinglées");
-            }
-            
-            
-            if (freeFrame.dirty) {
-                diskManager.WritePage(freeFrame.pageId, freeFrame.buffer);
+                
+                freeFrame = selectVictimFrame(); 
+
+                if (freeFrame == null) {
+                    if (waitStart == 0) {
+                        waitStart = System.nanoTime();
+                        pinWaitCount++;
+                    }
+                    awaitUnpin(waitStart);
+                    continue;
+                }
+                
+                
+                if (freeFrame.dirty) {
+                    writeBackVictim(freeFrame);
+                }
+                
+                // Garder une copie compressee de la page evincee
+                if (compressedCache != null) {
+                    compressedCache.put(freeFrame.pageId, freeFrame.buffer);
+                }
+                
+                String oldKey = freeFrame.pageId.getFileIdx() + ":" + freeFrame.pageId.getPageIdx();
+                pageTable.remove(oldKey);
+                freeFrame.pageId = null;
+                
             }
-            
-            String oldKey = freeFrame.pageId.getFileIdx() + ":" + freeFrame.pageId.getPageIdx();
-            pageTable.remove(oldKey);
-            
         }
 
-        diskManager.ReadPage(pageId, freeFrame.buffer);
+        endPinWait(waitStart);
+
+        if (compressedCache == null || !compressedCache.get(pageId, freeFrame.buffer)) {
+            diskManager.ReadPage(pageId, freeFrame.buffer);
+        }
         freeFrame.pageId = pageId;
+        // Nouvelle poignee : celles de la page precedente deviennent invalides
+        freeFrame.handle = new PageHandle(this, freeFrame);
         freeFrame.dirty = false;
         freeFrame.pinCount = 1;
         freeFrame.lastAccess = System.currentTimeMillis();
         pageTable.put(key, freeFrame);
         
-        return freeFrame.buffer;
+        return freeFrame;
     } 
 
-     public void SetCurrentReplacementPolicy(BufferPolicy policy) {
+    public synchronized void SetCurrentReplacementPolicy(BufferPolicy policy) {
         if (policy == null) {
             throw new IllegalArgumentException("Politique de remplacement invalide.");
         }
         this.policy = policy;
     }
 
-    public Frame selectVictimFrame() {
+    public synchronized Frame selectVictimFrame() {
         Frame victim = null;
 
         if(this.policy == BufferPolicy.LRU) {
@@ -117,33 +197,359 @@ public class BufferManager {
         return victim;
     }
 
-    public void FreePage(PageId pageId, boolean valDirty) {
+    public synchronized void FreePage(PageId pageId, boolean valDirty) {
         String key = pageId.getFileIdx() + ":" + pageId.getPageIdx();
         Frame frame = pageTable.get(key);
 
-        if (frame != null && frame.pinCount > 0) {   
-            frame.pinCount--;
- 
-            if (valDirty) {
+        if (frame != null) {
+            if (valDirty && frame.pinCount > 0) {
                 frame.dirty = true;
             }
+            unpin(frame);
+        }
+    }
+
+    /**
+     * Marque la page d'une poignee comme modifiee (utilise par PageHandle.markDirty())
+     */
+    synchronized void markDirty(PageHandle handle) {
+        checkHandle(handle).dirty = true;
+    }
+
+    /**
+     * Desepingle la page d'une poignee (utilise par PageHandle.close())
+     */
+    synchronized void unpin(PageHandle handle) {
+        unpin(checkHandle(handle));
+    }
+
+    /**
+     * Verifie que la poignee est celle de la page chargee dans sa frame
+     * et que cette page est epinglee
+     * @throws IllegalStateException poignee deja fermee ou perimee (frame reutilisee)
+     */
+    private Frame checkHandle(PageHandle handle) {
+        Frame frame = handle.getFrame();
+        if (frame.handle != handle || frame.pinCount == 0) {
+            throw new IllegalStateException("Poignee de la page " + handle.getPageId()
+                    + " deja fermee ou perimee");
+        }
+        return frame;
+    }
+
+    /**
+     * Decremente le pinCount d'une frame et reveille les demandeurs en attente si la frame devient evincable
+     */
+    synchronized void unpin(Frame frame) {
+        if (frame.pinCount > 0) {
+            frame.pinCount--;
             frame.lastAccess = System.currentTimeMillis();
+
+            if (frame.pinCount == 0 && waitingPins > 0) {
+                notifyAll();
+            }
         }
     }
 
+    /**
+     * Attend (moniteur libere) qu'une frame soit desepinglee
+     * @param waitStart debut de l'attente (System.nanoTime())
+     * @throws IOException si le delai bm_pin_timeout_ms est depasse
+     */
+    private void awaitUnpin(long waitStart) throws IOException {
+        long timeoutNanos = config.getPinTimeoutMs() * 1_000_000L;
+        long remaining = waitStart + timeoutNanos - System.nanoTime();
+
+        if (remaining <= 0) {
+            pinWaitTimeouts++;
+            endPinWait(waitStart);
+            throw new IOException("Buffer pool saturé : toutes les frames sont épinglées"
+                    + (timeoutNanos > 0 ? " (attente de " + config.getPinTimeoutMs() + " ms expirée)" : ""));
+        }
 
-    public void FlushBuffers() throws IOException {
+        waitingPins++;
         try {
+            wait(remaining / 1_000_000L, (int) (remaining % 1_000_000L));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            endPinWait(waitStart);
+            throw new InterruptedIOException("Attente d'une frame interrompue");
+        } finally {
+            waitingPins--;
+        }
+    }
+
+    /**
+     * Comptabilise la duree d'une attente terminee (rien si pas d'attente)
+     */
+    private void endPinWait(long waitStart) {
+        if (waitStart != 0) {
+            long duration = System.nanoTime() - waitStart;
+            totalPinWaitNanos += duration;
+            maxPinWaitNanos = Math.max(maxPinWaitNanos, duration);
+        }
+    }
+
+    /**
+     * Nombre de demandes de page ayant trouve le pool sature
+     * (attente, ou echec immediat si bm_pin_timeout_ms = 0)
+     */
+    public synchronized long getPinWaitCount() {
+        return pinWaitCount;
+    }
+
+    /**
+     * Nombre de demandes en echec faute de frame (delai expire ou nul)
+     */
+    public synchronized long getPinWaitTimeouts() {
+        return pinWaitTimeouts;
+    }
+
+    /**
+     * Duree cumulee des attentes, en millisecondes
+     */
+    public synchronized long getTotalPinWaitMs() {
+        return totalPinWaitNanos / 1_000_000L;
+    }
+
+    /**
+     * Duree de la plus longue attente, en millisecondes
+     */
+    public synchronized long getMaxPinWaitMs() {
+        return maxPinWaitNanos / 1_000_000L;
+    }
+
+
+    /**
+     * Oublie toute copie d'une page non epinglee (buffer pool et cache compresse).
+     * A appeler avant de modifier une page directement via le DiskManager.
+     * @param pageId identifiant de la page
+     * @throws IOException si la page est epinglee ou si l'ecriture de la page dirty echoue
+     */
+    public synchronized void DiscardPage(PageId pageId) throws IOException {
+        String key = pageId.getFileIdx() + ":" + pageId.getPageIdx();
+        Frame frame = pageTable.get(key);
+
+        if (frame != null) {
+            if (frame.pinCount > 0) {
+                throw new IOException("Page epinglee : " + key);
+            }
+            if (frame.dirty) {
+                diskManager.WritePage(frame.pageId, frame.buffer);
+            }
+            frame.pageId = null;
+            frame.handle = null;
+            frame.dirty = false;
+            pageTable.remove(key);
+
+            if (waitingPins > 0) {
+                notifyAll();
+            }
+        }
+
+        if (compressedCache != null) {
+            compressedCache.invalidate(pageId);
+        }
+    }
+
+    /**
+     * Écrit la victime dirty, ainsi que ses voisines physiques (pages adjacentes
+     * du même fichier) dirty et non épinglées, en une seule écriture séquentielle.
+     * Les voisines restent en mémoire mais deviennent propres.
+     */
+    private void writeBackVictim(Frame victim) throws IOException {
+        Deque<Frame> run = new ArrayDeque<>();
+        run.add(victim);
+
+        int fileIdx = victim.pageId.getFileIdx();
+        int pageIdx = victim.pageId.getPageIdx();
+
+        // Voisines précédentes
+        for (int idx = pageIdx - 1; idx >= 0 && run.size() < MAX_WRITE_RUN; idx--) {
+            Frame f = pageTable.get(fileIdx + ":" + idx);
+            if (f == null || !f.dirty || f.pinCount > 0) {
+                break;
+            }
+            run.addFirst(f);
+        }
+
+        // Voisines suivantes
+        for (int idx = pageIdx + 1; run.size() < MAX_WRITE_RUN; idx++) {
+            Frame f = pageTable.get(fileIdx + ":" + idx);
+            if (f == null || !f.dirty || f.pinCount > 0) {
+                break;
+            }
+            run.addLast(f);
+        }
+
+        writeRun(new ArrayList<>(run));
+    }
+
+    /**
+     * Écrit des frames dirty triées par (fileIdx, pageIdx), en fusionnant
+     * les pages adjacentes en écritures séquentielles
+     */
+    private void writeBackSorted(List<Frame> dirtyFrames) throws IOException {
+        dirtyFrames.sort(PHYSICAL_ORDER);
+
+        List<Frame> run = new ArrayList<>();
+        for (Frame f : dirtyFrames) {
+            if (!run.isEmpty()) {
+                PageId last = run.get(run.size() - 1).pageId;
+                boolean adjacent = last.getFileIdx() == f.pageId.getFileIdx()
+                        && last.getPageIdx() + 1 == f.pageId.getPageIdx();
+
+                if (!adjacent || run.size() == MAX_WRITE_RUN) {
+                    writeRun(run);
+                    run.clear();
+                }
+            }
+            run.add(f);
+        }
+
+        if (!run.isEmpty()) {
+            writeRun(run);
+        }
+    }
+
+    /**
+     * Écrit une séquence de frames correspondant à des pages contiguës
+     * et les marque propres
+     */
+    private void writeRun(List<Frame> run) throws IOException {
+        if (run.size() == 1) {
+            Frame f = run.get(0);
+            diskManager.WritePage(f.pageId, f.buffer);
+        } else {
+            int pageSize = config.getPageSize();
+            if (ioBuffer == null) {
+                ioBuffer = new byte[MAX_WRITE_RUN * pageSize];
+            }
+            for (int i = 0; i < run.size(); i++) {
+                System.arraycopy(run.get(i).buffer, 0, ioBuffer, i * pageSize, pageSize);
+            }
+            diskManager.WritePages(run.get(0).pageId, ioBuffer, run.size());
+        }
+
+        for (Frame f : run) {
+            f.dirty = false;
+        }
+    }
+
+    /**
+     * Retourne les pages actuellement en memoire, de la plus recemment
+     * utilisee a la moins recente
+     * @return liste des pages residentes avec leur date de dernier acces
+     */
+    public synchronized List<ResidentPage> GetResidentPages() {
+        List<ResidentPage> resident = new ArrayList<>();
+        for (Frame f : frames) {
+            if (f.pageId != null) {
+                resident.add(new ResidentPage(f.pageId, f.lastAccess));
+            }
+        }
+        resident.sort(Comparator.comparingLong(ResidentPage::getLastAccess).reversed());
+        return resident;
+    }
+
+    /**
+     * Precharge des pages dans les frames libres, sans les epingler ni evincer
+     * de page deja presente. Les pages doivent etre triees par (fileIdx, pageIdx) :
+     * les pages contigues sont lues en une seule operation.
+     * Une page inexistante (ou desallouee entre-temps et tronquee) est ignoree.
+     * @param pages pages a precharger, triees par offset
+     * @return nombre de pages effectivement chargees
+     */
+    public synchronized int Prefetch(List<PageId> pages) {
+        int pageSize = config.getPageSize();
+        if (ioBuffer == null) {
+            ioBuffer = new byte[MAX_WRITE_RUN * pageSize];
+        }
+
+        List<PageId> run = new ArrayList<>();
+        int loaded = 0;
+        int i = 0;
+
+        while (i < pages.size()) {
+            // Construire une sequence de pages contigues absentes du pool
+            run.clear();
+            while (i < pages.size() && run.size() < MAX_WRITE_RUN) {
+                PageId p = pages.get(i);
+                if (pageTable.containsKey(p.getFileIdx() + ":" + p.getPageIdx())) {
+                    i++;
+                    if (run.isEmpty()) {
+                        continue;
+                    }
+                    break;
+                }
+                if (!run.isEmpty()) {
+                    PageId last = run.get(run.size() - 1);
+                    if (last.getFileIdx() != p.getFileIdx() || last.getPageIdx() + 1 != p.getPageIdx()) {
+                        break;
+                    }
+                }
+                run.add(p);
+                i++;
+            }
+
+            if (run.isEmpty()) {
+                continue;
+            }
+
+            try {
+                diskManager.ReadPages(run.get(0), ioBuffer, run.size());
+            } catch (IOException e) {
+                continue; // sequence (en partie) inexistante : ignoree
+            }
+
+            int offset = 0;
+            for (Frame f : frames) {
+                if (offset == run.size()) {
+                    break;
+                }
+                if (f.pageId == null) {
+                    PageId p = run.get(offset);
+                    System.arraycopy(ioBuffer, offset * pageSize, f.buffer, 0, pageSize);
+                    f.pageId = p;
+                    f.handle = new PageHandle(this, f);
+                    f.dirty = false;
+                    f.pinCount = 0;
+                    // Jamais accedee : premiere candidate a l'eviction LRU
+                    f.lastAccess = 0;
+                    pageTable.put(p.getFileIdx() + ":" + p.getPageIdx(), f);
+                    if (compressedCache != null) {
+                        compressedCache.invalidate(p);
+                    }
+                    offset++;
+                    loaded++;
+                }
+            }
+
+            // Plus de frame libre
+            if (offset < run.size()) {
+                break;
+            }
+        }
+
+        return loaded;
+    }
+
+    public synchronized void FlushBuffers() throws IOException {
+        try {
+            // Écriture dans l'ordre physique, pages adjacentes regroupées
+            List<Frame> dirtyFrames = new ArrayList<>();
             for (Frame frame : frames) {
                 if (frame.pageId != null && frame.dirty) {
-                    diskManager.WritePage(frame.pageId, frame.buffer);
+                    dirtyFrames.add(frame);
                 }
             }
+            writeBackSorted(dirtyFrames);
         } finally {
             // Réinitialisation des frames et nettoyage de la table des pages
             // Ce bloc est exécuté même si une IOException survient lors de l'écriture
             for (Frame frame : frames) {
                 frame.pageId = null;
+                frame.handle = null;
                 frame.dirty = false;
                 frame.pinCount = 0;
                 frame.lastAccess = System.currentTimeMillis();
@@ -155,6 +561,10 @@ public class BufferManager {
             }
             
             pageTable.clear();
+
+            if (waitingPins > 0) {
+                notifyAll();
+            }
         }
     }
 
@@ -0,0 +1,168 @@
+package bdda.core;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Second niveau de cache du BufferManager : pages evincees conservees
+ * compressees en memoire avant de retomber sur une lecture DiskManager.
+ *
+ * Les pages stockees sont toujours des copies PROPRES (la victime dirty est
+ * ecrite sur disque avant d'etre compressee). Le cache est exclusif : une page
+ * relue depuis ce niveau en est retiree, elle vit de nouveau dans une frame.
+ * La capacite est bornee en octets compresses, l'eviction suit l'ordre LRU.
+ */
+public class CompressedPageCache {
+
+    private final long capacityBytes;
+    private long usedBytes;
+
+    // accessOrder = true -> l'iteration commence par l'entree la moins recemment utilisee
+    private final LinkedHashMap<PageId, byte[]> entries;
+
+    private final Deflater deflater;
+    private final Inflater inflater;
+    private final byte[] scratch;
+
+    // Metriques
+    private long hits;
+    private long misses;
+    private long stores;
+    private long rejected;
+    private long evictions;
+
+    /**
+     * @param capacityBytes taille maximale (octets compresses) du cache
+     * @param pageSize taille d'une page
+     */
+    public CompressedPageCache(long capacityBytes, int pageSize) {
+        this.capacityBytes = capacityBytes;
+        this.usedBytes = 0;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.deflater = new Deflater(Deflater.BEST_SPEED);
+        this.inflater = new Inflater();
+        this.scratch = new byte[pageSize];
+    }
+
+    /**
+     * Compresse et conserve une page evincee du buffer pool.
+     * Une page incompressible (taille compressee >= taille de page) n'est pas gardee.
+     * @param pageId identifiant de la page
+     * @param page contenu (propre) de la page
+     */
+    public void put(PageId pageId, byte[] page) {
+        invalidate(pageId);
+
+        deflater.reset();
+        deflater.setInput(page);
+        deflater.finish();
+        int length = deflater.deflate(scratch);
+        if (!deflater.finished() || length > capacityBytes) {
+            rejected++;
+            return;
+        }
+
+        byte[] compressed = Arrays.copyOf(scratch, length);
+        entries.put(pageId, compressed);
+        usedBytes += length;
+        stores++;
+
+        // Liberer la place en evinçant les entrees les moins recentes
+        Iterator<Map.Entry<PageId, byte[]>> it = entries.entrySet().iterator();
+        while (usedBytes > capacityBytes && it.hasNext()) {
+            Map.Entry<PageId, byte[]> eldest = it.next();
+            usedBytes -= eldest.getValue().length;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Decompresse une page dans le buffer fourni et la retire du cache
+     * @param pageId identifiant de la page
+     * @param dest buffer de destination (taille d'une page)
+     * @return true si la page etait presente (hit), false sinon (miss)
+     */
+    public boolean get(PageId pageId, byte[] dest) {
+        byte[] compressed = entries.remove(pageId);
+        if (compressed == null) {
+            misses++;
+            return false;
+        }
+        usedBytes -= compressed.length;
+
+        inflater.reset();
+        inflater.setInput(compressed);
+        try {
+            int length = inflater.inflate(dest);
+            if (length != dest.length) {
+                throw new IllegalStateException("Page compressee corrompue : " + pageId);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Page compressee corrompue : " + pageId, e);
+        }
+        hits++;
+        return true;
+    }
+
+    /**
+     * Oublie une page (a appeler si elle est modifiee hors du buffer pool)
+     */
+    public void invalidate(PageId pageId) {
+        byte[] old = entries.remove(pageId);
+        if (old != null) {
+            usedBytes -= old.length;
+        }
+    }
+
+    /**
+     * Vide le cache
+     */
+    public void clear() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    public long getCapacityBytes() {
+        return capacityBytes;
+    }
+
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public int getPageCount() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getStores() {
+        return stores;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressedPageCache{pages=" + entries.size() + ", used=" + usedBytes + "/" + capacityBytes
+                + " bytes, hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "}";
+    }
+}
@@ -16,6 +16,12 @@ public class DBConfig {
     private int bm_buffercount;
     private BufferPolicy bm_policy;
     
+    // Parametres optionnels (valeur par defaut si absents du fichier)
+    private int bm_compressed_cache_mb = 0;
+    private long bm_pin_timeout_ms = 0;
+    private double bloom_fpr = 0.01;
+    private double vacuum_threshold = 0;
+    
     /**
      * Constructeur complet de la classe DBConfig
      * Initialise une nouvelle configuration de base de données avec tous les paramètres
@@ -58,6 +64,61 @@ public class DBConfig {
         return bm_policy;
     }
 
+    /**
+     * Taille (en Mo) du cache de pages compressees du BufferManager
+     * @return la taille en Mo, 0 si le cache est desactive
+     */
+    public int getCompressedCacheMb() {
+        return bm_compressed_cache_mb;
+    }
+
+    public void setCompressedCacheMb(int bm_compressed_cache_mb) {
+        this.bm_compressed_cache_mb = bm_compressed_cache_mb;
+    }
+
+    /**
+     * Delai maximal d'attente d'une frame quand toutes sont epinglees
+     * @return le delai en millisecondes, 0 pour echouer immediatement
+     */
+    public long getPinTimeoutMs() {
+        return bm_pin_timeout_ms;
+    }
+
+    public void setPinTimeoutMs(long bm_pin_timeout_ms) {
+        this.bm_pin_timeout_ms = bm_pin_timeout_ms;
+    }
+
+    /**
+     * Taux de faux positifs visé par les filtres de Bloom des colonnes BLOOM
+     * (utilisé à la création d'une relation pour dimensionner ses filtres)
+     */
+    public double getBloomFpr() {
+        return bloom_fpr;
+    }
+
+    public void setBloomFpr(double bloom_fpr) {
+        if (!(bloom_fpr > 0 && bloom_fpr < 1)) {
+            throw new IllegalArgumentException("bloom_fpr doit etre dans ]0, 1[ : " + bloom_fpr);
+        }
+        this.bloom_fpr = bloom_fpr;
+    }
+
+    /**
+     * Part des pages non pleines d'une relation a partir de laquelle un VACUUM
+     * est lance automatiquement apres un DELETE
+     * @return la part (entre 0 et 1), 0 si le VACUUM automatique est desactive
+     */
+    public double getVacuumThreshold() {
+        return vacuum_threshold;
+    }
+
+    public void setVacuumThreshold(double vacuum_threshold) {
+        if (!(vacuum_threshold >= 0 && vacuum_threshold <= 1)) {
+            throw new IllegalArgumentException("vacuum_threshold doit etre dans [0, 1] : " + vacuum_threshold);
+        }
+        this.vacuum_threshold = vacuum_threshold;
+    }
+
     /**
      * Charge la configuration complète de la base de données depuis un fichier
      * @param fichier_config le fichier de configuration à lire
@@ -72,6 +133,10 @@ public class DBConfig {
         int dm_maxfilecount = 0;
         int bm_buffercount = 0;
         BufferPolicy bm_Policy = null;
+        int bm_compressed_cache_mb = 0;
+        long bm_pin_timeout_ms = 0;
+        double bloom_fpr = 0.01;
+        double vacuum_threshold = 0;
         
         while(line != null) {
             if(line.startsWith("dbpath = '")) {
@@ -97,12 +162,33 @@ public class DBConfig {
                 String value = line.substring("bm_buffercount = ".length()).trim();
                 bm_buffercount = Integer.parseInt(value);
             }
+            else if(line.startsWith("bm_compressed_cache_mb = ")) {
+                String value = line.substring("bm_compressed_cache_mb = ".length()).trim();
+                bm_compressed_cache_mb = Integer.parseInt(value);
+            }
+            else if(line.startsWith("bm_pin_timeout_ms = ")) {
+                String value = line.substring("bm_pin_timeout_ms = ".length()).trim();
+                bm_pin_timeout_ms = Long.parseLong(value);
+            }
+            else if(line.startsWith("bloom_fpr = ")) {
+                String value = line.substring("bloom_fpr = ".length()).trim();
+                bloom_fpr = Double.parseDouble(value);
+            }
+            else if(line.startsWith("vacuum_threshold = ")) {
+                String value = line.substring("vacuum_threshold = ".length()).trim();
+                vacuum_threshold = Double.parseDouble(value);
+            }
             line = reader.readLine();
         }
         
         reader.close();
         if (dbpath != null && pagesize > 0 && dm_maxfilecount > 0 && bm_Policy != null && bm_buffercount > 0) {
-            return new DBConfig(dbpath, pagesize, dm_maxfilecount, bm_buffercount, bm_Policy);
+            DBConfig config = new DBConfig(dbpath, pagesize, dm_maxfilecount, bm_buffercount, bm_Policy);
+            config.setCompressedCacheMb(bm_compressed_cache_mb);
+            config.setPinTimeoutMs(bm_pin_timeout_ms);
+            config.setBloomFpr(bloom_fpr);
+            config.setVacuumThreshold(vacuum_threshold);
+            return config;
         }
 
         return null;
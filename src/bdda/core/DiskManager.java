@@ -124,6 +124,51 @@ public class DiskManager {
         throw new IOException("Limite de fichiers atteinte (" + maxFiles + ")");
     }
 
+    /**
+     * Alloue pageCount pages physiquement contiguës (first, first+1, ...)
+     * en fin d'un même fichier, sans réutiliser les pages libres :
+     * destiné au chargement direct, qui les écrit ensuite avec WritePages.
+     *
+     * @param pageCount nombre de pages à allouer
+     * @return l'identifiant de la première page de la séquence
+     * @throws IOException si aucun fichier ne peut accueillir la séquence
+     */
+    public PageId allocContiguousPages(int pageCount) throws IOException {
+        int maxFiles = config.getMaxFileCount();
+        int pageSize = config.getPageSize();
+
+        for (int fileIdx = 0; fileIdx < maxFiles; fileIdx++) {
+            File f = new File(config.getPath(), "Data" + fileIdx + ".bin");
+
+            if (!f.exists()) {
+                createNewFileWithBitmap(f);
+            }
+
+            long length = f.length();
+            int firstIdx = (int) ((length - BITMAP_SIZE_BYTES) / pageSize);
+
+            // La séquence doit tenir entièrement dans le fichier
+            if (firstIdx + pageCount > MAX_PAGES_PER_FILE) {
+                continue;
+            }
+
+            try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+                // Étend le fichier d'un coup (contenu écrit ensuite par l'appelant)
+                raf.setLength(length + (long) pageCount * pageSize);
+
+                BitSet bitmap = getOrCreateBitmap(fileIdx);
+                bitmap.set(firstIdx, firstIdx + pageCount);
+
+                // Synchroniser avec le fichier
+                writeBitmapToFile(f, bitmap);
+
+                return new PageId(fileIdx, firstIdx);
+            }
+        }
+
+        throw new IOException("Aucun fichier ne peut accueillir " + pageCount + " pages contiguës");
+    }
+
     /**
      * Désalloue une page en la marquant libre dans la bitmap (bit = 0).
      * La page pourra être réutilisée lors du prochain appel à allocPage().
@@ -194,6 +239,64 @@ public class DiskManager {
         }
     }
 
+    /**
+     * Lit en une seule opération séquentielle plusieurs pages contiguës
+     * d'un même fichier (first, first+1, ..., first+pageCount-1).
+     *
+     * @param first identifiant de la première page de la séquence
+     * @param data buffer de destination (au moins pageCount * pageSize octets)
+     * @param pageCount nombre de pages à lire
+     * @throws IOException si une des pages n'existe pas, le fichier est inaccessible,
+     *                     ou si le buffer est trop petit
+     */
+    public void ReadPages(PageId first, byte[] data, int pageCount) throws IOException {
+        int pageSize = config.getPageSize();
+
+        if (data.length < (long) pageCount * pageSize) {
+            throw new IOException("Taille du buffer (" + data.length +
+                ") inférieure à " + pageCount + " pages de " + pageSize + " octets");
+        }
+
+        File f = getFile(first);
+        PageId last = new PageId(first.getFileIdx(), first.getPageIdx() + pageCount - 1);
+
+        try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
+            // Vérifie que toute la séquence existe
+            getOffset(last, f);
+            raf.seek(getOffset(first, f));
+            raf.readFully(data, 0, pageCount * pageSize);
+        }
+    }
+
+    /**
+     * Écrit en une seule opération séquentielle plusieurs pages contiguës
+     * d'un même fichier (first, first+1, ..., first+pageCount-1).
+     *
+     * @param first identifiant de la première page de la séquence
+     * @param data buffer contenant les pages bout à bout (au moins pageCount * pageSize octets)
+     * @param pageCount nombre de pages à écrire
+     * @throws IOException si une des pages n'existe pas, le fichier est inaccessible,
+     *                     ou si le buffer est trop petit
+     */
+    public void WritePages(PageId first, byte[] data, int pageCount) throws IOException {
+        int pageSize = config.getPageSize();
+
+        if (data.length < (long) pageCount * pageSize) {
+            throw new IOException("Taille du buffer (" + data.length +
+                ") inférieure à " + pageCount + " pages de " + pageSize + " octets");
+        }
+
+        File f = getFile(first);
+        PageId last = new PageId(first.getFileIdx(), first.getPageIdx() + pageCount - 1);
+
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+            // Vérifie que toute la séquence existe
+            getOffset(last, f);
+            raf.seek(getOffset(first, f));
+            raf.write(data, 0, pageCount * pageSize);
+        }
+    }
+
     /**
      * Finalise le DiskManager à l'arrêt du SGBD.
      * Synchronise toutes les bitmaps en mémoire vers les fichiers.
@@ -7,6 +7,7 @@ public class Frame {
     boolean dirty;
     public int pinCount;
     public long lastAccess;
+    PageHandle handle;
 
     Frame(int pageSize) {
         this.pageId = null;
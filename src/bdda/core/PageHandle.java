@@ -0,0 +1,140 @@
+package bdda.core;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Poignee sur une page epinglee dans le buffer pool.
+ *
+ * Chaque Frame possede sa propre poignee, creee quand une page y est chargee :
+ * obtenir une page deja presente via BufferManager.GetPageHandle() n'alloue
+ * donc rien. La poignee s'utilise avec un try-with-resources, close()
+ * desepingle la page :
+ *
+ *   try (PageHandle page = bufferManager.GetPageHandle(pageId)) {
+ *       page.putInt(0, 42);
+ *       page.markDirty();
+ *   }
+ *
+ * Tous les accesseurs sont absolus (offset explicite) : la poignee peut etre
+ * partagee par plusieurs epinglages de la meme page sans conflit de position.
+ *
+ * Une poignee n'est valable que tant que sa page est epinglee : close() ou
+ * markDirty() sur une poignee dont la page n'est plus epinglee (double
+ * close) ou a ete evincee (frame reutilisee par une autre page) leve une
+ * IllegalStateException au lieu de desepingler la page d'un autre appelant.
+ * (Les epinglages d'une meme page presente partagent la poignee : un close()
+ * en trop pendant qu'un autre appelant la tient epinglee n'est pas detecte.)
+ */
+public class PageHandle implements AutoCloseable {
+
+    // Acces big-endian (meme ordre que ByteBuffer par defaut)
+    private static final VarHandle SHORT =
+            MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT =
+            MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle FLOAT =
+            MethodHandles.byteArrayViewVarHandle(float[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final BufferManager bufferManager;
+    private final Frame frame;
+    private final PageId pageId;  // page chargee dans la frame a la creation de la poignee
+    private final byte[] bytes;
+    private final ByteBuffer byteBuffer;
+
+    PageHandle(BufferManager bufferManager, Frame frame) {
+        this.bufferManager = bufferManager;
+        this.frame = frame;
+        this.pageId = frame.pageId;
+        this.bytes = frame.buffer;
+        this.byteBuffer = ByteBuffer.wrap(frame.buffer);
+    }
+
+    /**
+     * Retourne l'identifiant de la page de la poignee
+     * (meme si la frame a depuis ete reutilisee)
+     */
+    public PageId getPageId() {
+        return pageId;
+    }
+
+    Frame getFrame() {
+        return frame;
+    }
+
+    /**
+     * Retourne le contenu brut de la page
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Retourne le ByteBuffer (mis en cache) sur le contenu de la page.
+     * La position est partagee : toujours la fixer avant un acces relatif.
+     */
+    public ByteBuffer getByteBuffer() {
+        return byteBuffer;
+    }
+
+    public byte get(int offset) {
+        return bytes[offset];
+    }
+
+    public void put(int offset, byte value) {
+        bytes[offset] = value;
+    }
+
+    public short getShort(int offset) {
+        return (short) SHORT.get(bytes, offset);
+    }
+
+    public void putShort(int offset, short value) {
+        SHORT.set(bytes, offset, value);
+    }
+
+    public int getInt(int offset) {
+        return (int) INT.get(bytes, offset);
+    }
+
+    public void putInt(int offset, int value) {
+        INT.set(bytes, offset, value);
+    }
+
+    public float getFloat(int offset) {
+        return (float) FLOAT.get(bytes, offset);
+    }
+
+    public void putFloat(int offset, float value) {
+        FLOAT.set(bytes, offset, value);
+    }
+
+    public long getLong(int offset) {
+        return (long) LONG.get(bytes, offset);
+    }
+
+    public void putLong(int offset, long value) {
+        LONG.set(bytes, offset, value);
+    }
+
+    /**
+     * Indique que la page a ete modifiee (elle sera ecrite sur disque
+     * lors de son eviction ou du prochain FlushBuffers)
+     */
+    public void markDirty() {
+        bufferManager.markDirty(this);
+    }
+
+    /**
+     * Desepingle la page (equivalent a FreePage sans le parametre dirty,
+     * celui-ci etant porte par markDirty())
+     */
+    @Override
+    public void close() {
+        bufferManager.unpin(this);
+    }
+}
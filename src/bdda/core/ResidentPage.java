@@ -0,0 +1,24 @@
+package bdda.core;
+
+/**
+ * Page presente dans le buffer pool, avec la date de son dernier acces
+ * (utilise pour persister la liste des pages chaudes)
+ */
+public class ResidentPage {
+
+    private PageId pageId;
+    private long lastAccess;
+
+    public ResidentPage(PageId pageId, long lastAccess) {
+        this.pageId = pageId;
+        this.lastAccess = lastAccess;
+    }
+
+    public PageId getPageId() {
+        return pageId;
+    }
+
+    public long getLastAccess() {
+        return lastAccess;
+    }
+}
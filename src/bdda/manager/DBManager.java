@@ -2,6 +2,7 @@ package bdda.manager;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -10,8 +11,12 @@ import bdda.core.BufferManager;
 import bdda.core.DBConfig;
 import bdda.core.DiskManager;
 import bdda.core.PageId;
+import bdda.core.ResidentPage;
 import bdda.storage.ColumnInfo;
+import bdda.storage.PartitionedRelation;
 import bdda.storage.Relation;
+import bdda.storage.StorageLayout;
+import bdda.storage.TableStatistics;
 
 /**
  * Gestionnaire de la base de donnees
@@ -26,9 +31,21 @@ public class DBManager {
     // Structure pour stocker les relations (nom -> Relation)
     private Map<String, Relation> tables;
     
+    // Tables partitionnees (nom logique -> partitions)
+    private Map<String, PartitionedRelation> partitionedTables;
+    
+    // Statistiques calculees par ANALYZE TABLE (nom -> statistiques)
+    private Map<String, TableStatistics> statistics;
+    
     // Nom du fichier de sauvegarde
     private static final String SAVE_FILE = "database.save";
     
+    // Liste des pages chaudes du buffer pool (a cote de database.save)
+    private static final String HOT_PAGES_FILE = "buffer.hot";
+    
+    // Nombre de pages prechargees par lot lors du rechauffement
+    private static final int WARM_UP_BATCH = 32;
+    
     /**
      * Constructeur
      * @param config configuration de la base de donnees
@@ -38,6 +55,8 @@ public class DBManager {
         this.diskManager = new DiskManager(config);
         this.bufferManager = new BufferManager(config, diskManager);
         this.tables = new HashMap<>();
+        this.partitionedTables = new HashMap<>();
+        this.statistics = new HashMap<>();
     }
 
     /**
@@ -51,6 +70,8 @@ public class DBManager {
         this.diskManager = diskManager;
         this.bufferManager = bufferManager;
         this.tables = new HashMap<>();
+        this.partitionedTables = new HashMap<>();
+        this.statistics = new HashMap<>();
     }
     
     /**
@@ -100,18 +121,160 @@ public class DBManager {
         Relation table = tables.get(nomTable);
         
         if (table != null) {
-            // Supprimer toutes les pages de donnees de la relation
-            List<PageId> dataPages = table.getDataPages();
-            for (PageId pageId : dataPages) {
-                diskManager.DeallocPage(pageId);
-            }
-            
-            // Supprimer la header page
-            diskManager.DeallocPage(table.getHeaderPageId());
+            DeallocRelation(table);
             
             // Retirer de la map
             tables.remove(nomTable);
         }
+        
+        PartitionedRelation partitioned = partitionedTables.remove(nomTable);
+        if (partitioned != null) {
+            for (Relation partition : partitioned.getPartitions()) {
+                DeallocRelation(partition);
+            }
+        }
+        
+        statistics.remove(nomTable);
+    }
+    
+    /**
+     * Libere toutes les pages d'une relation (sans lire ses records)
+     */
+    private void DeallocRelation(Relation table) throws IOException {
+        // Supprimer toutes les pages de donnees de la relation
+        List<PageId> dataPages = table.getDataPages();
+        for (PageId pageId : dataPages) {
+            diskManager.DeallocPage(pageId);
+        }
+        
+        // Supprimer les pages du dictionnaire (colonnes DICT)
+        for (PageId pageId : table.getDictionaryPages()) {
+            diskManager.DeallocPage(pageId);
+        }
+        
+        // Supprimer les pages de la Free Space Map
+        for (PageId pageId : table.getFreeSpaceMapPages()) {
+            diskManager.DeallocPage(pageId);
+        }
+        
+        // Supprimer la header page
+        diskManager.DeallocPage(table.getHeaderPageId());
+    }
+    
+    /**
+     * Cree une table partitionnee par HASH(col, n) : n relations vides
+     * @param columnIndex indice de la colonne de partitionnement
+     */
+    public PartitionedRelation CreateHashPartitionedTable(String nomTable, List<ColumnInfo> columns,
+            StorageLayout layout, int columnIndex, int partitionCount) throws IOException {
+        if (partitionCount < 1) {
+            throw new IllegalArgumentException("HASH : au moins une partition");
+        }
+        PartitionedRelation table = new PartitionedRelation(nomTable, columns,
+                PartitionedRelation.Kind.HASH, columnIndex, 0);
+        for (int i = 0; i < partitionCount; i++) {
+            table.addHashPartition(new Relation(table.newPartitionName(), columns, layout, diskManager, bufferManager));
+        }
+        partitionedTables.put(nomTable, table);
+        return table;
+    }
+    
+    /**
+     * Cree une table partitionnee par RANGE(col) : une partition par borne,
+     * la partition i contient [bornes[i-1], bornes[i][ (pas de borne
+     * inferieure pour la premiere)
+     * @param bounds bornes superieures exclues, croissantes
+     */
+    public PartitionedRelation CreateRangePartitionedTable(String nomTable, List<ColumnInfo> columns,
+            StorageLayout layout, int columnIndex, List<Object> bounds) throws IOException {
+        if (bounds.isEmpty()) {
+            throw new IllegalArgumentException("RANGE : au moins une borne");
+        }
+        PartitionedRelation table = new PartitionedRelation(nomTable, columns,
+                PartitionedRelation.Kind.RANGE, columnIndex, 0);
+        Object low = null;
+        for (Object high : bounds) {
+            // Bornes verifiees avant d'allouer la relation
+            if (low != null && table.compareValues(low, high) >= 0) {
+                throw new IllegalArgumentException("RANGE : bornes non croissantes");
+            }
+            table.addRangePartition(new Relation(table.newPartitionName(), columns, layout, diskManager, bufferManager),
+                    low, high);
+            low = high;
+        }
+        partitionedTables.put(nomTable, table);
+        return table;
+    }
+    
+    /**
+     * Ajoute une partition RANGE [derniere borne, high[ a la fin de la table
+     */
+    public void AddRangePartition(String nomTable, Object high) throws IOException {
+        PartitionedRelation table = partitionedTables.get(nomTable);
+        if (table == null || table.getKind() != PartitionedRelation.Kind.RANGE) {
+            throw new IllegalArgumentException("Table non partitionnee par RANGE : " + nomTable);
+        }
+        Object low = table.getHighBound(table.getPartitionCount() - 1);
+        if (table.compareValues(low, high) >= 0) {
+            throw new IllegalArgumentException("RANGE : borne " + high + " inferieure a " + low);
+        }
+        Relation first = table.getPartition(0);
+        table.addRangePartition(new Relation(table.newPartitionName(), table.getColumns(), first.getLayout(),
+                diskManager, bufferManager), low, high);
+    }
+    
+    /**
+     * Supprime une partition RANGE : operation sur les metadonnees, les pages
+     * de la partition sont liberees sans lire ses records
+     * @param index position de la partition (0 : valeurs les plus petites)
+     * @return le nombre de records supprimes avec la partition
+     */
+    public long DropPartition(String nomTable, int index) throws IOException {
+        PartitionedRelation table = partitionedTables.get(nomTable);
+        if (table == null) {
+            throw new IllegalArgumentException("Table non partitionnee : " + nomTable);
+        }
+        if (index < 0 || index >= table.getPartitionCount()) {
+            throw new IllegalArgumentException("Partition inexistante : " + index);
+        }
+        Relation partition = table.removePartition(index);
+        long count = partition.getRecordCount();
+        DeallocRelation(partition);
+        return count;
+    }
+    
+    /**
+     * Calcule les statistiques d'une table (toutes ses partitions) et les
+     * garde dans le catalogue, a la place des precedentes
+     * @return les statistiques, ou null si la table n'existe pas
+     */
+    public TableStatistics AnalyzeTable(String nomTable) throws IOException {
+        List<Relation> relations = new ArrayList<>();
+        if (tables.containsKey(nomTable)) {
+            relations.add(tables.get(nomTable));
+        } else if (partitionedTables.containsKey(nomTable)) {
+            relations.addAll(partitionedTables.get(nomTable).getPartitions());
+        } else {
+            return null;
+        }
+        
+        TableStatistics stats = TableStatistics.collect(relations);
+        statistics.put(nomTable, stats);
+        return stats;
+    }
+    
+    /**
+     * Retourne les statistiques du dernier ANALYZE de la table (null si aucun)
+     */
+    public TableStatistics GetStatistics(String nomTable) {
+        return statistics.get(nomTable);
+    }
+    
+    /**
+     * Retourne une table partitionnee par son nom (null si inexistante)
+     */
+    public PartitionedRelation GetPartitionedTable(String nomTable) {
+        return partitionedTables.get(nomTable);
     }
     
     /**
@@ -119,7 +282,7 @@ public class DBManager {
      */
     public void RemoveAllTables() throws IOException {
         // Creer une copie des noms pour eviter ConcurrentModificationException
-        List<String> tableNames = new ArrayList<>(tables.keySet());
+        List<String> tableNames = GetTableNames();
         
         for (String name : tableNames) {
             RemoveTable(name);
@@ -137,6 +300,34 @@ public class DBManager {
         if (table != null) {
             System.out.println(formatTableSchema(table));
         }
+        
+        PartitionedRelation partitioned = partitionedTables.get(nomTable);
+        if (partitioned != null) {
+            System.out.println(formatTableSchema(partitioned));
+        }
+        
+        // Statistiques du dernier ANALYZE TABLE
+        TableStatistics stats = statistics.get(nomTable);
+        if (stats != null) {
+            List<ColumnInfo> columns = table != null ? table.getColumns() : partitioned.getColumns();
+            System.out.println(formatStatistics(stats, columns));
+        }
+    }
+    
+    /**
+     * Formate les statistiques d'une table
+     * Format : Rows=n Pages=p
+     *            Col1: Distinct=d Histogram=[b0,b1,...]
+     */
+    private String formatStatistics(TableStatistics stats, List<ColumnInfo> columns) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("  Rows=").append(stats.getRowCount()).append(" Pages=").append(stats.getPageCount());
+        for (int c = 0; c < columns.size(); c++) {
+            sb.append(System.lineSeparator()).append("  ").append(columns.get(c).getName())
+              .append(": Distinct=").append(stats.getDistinctCount(c))
+              .append(" Histogram=").append(stats.getHistogram(c).toString().replace(" ", ""));
+        }
+        return sb.toString();
     }
     
     /**
@@ -146,6 +337,9 @@ public class DBManager {
         for (Relation table : tables.values()) {
             System.out.println(formatTableSchema(table));
         }
+        for (PartitionedRelation table : partitionedTables.values()) {
+            System.out.println(formatTableSchema(table));
+        }
     }
     
     /**
@@ -153,10 +347,34 @@ public class DBManager {
      * Format : NomTable (Col1:Type1,Col2:Type2,...)
      */
     private String formatTableSchema(Relation table) {
+        return formatTableSchema(table.getName(), table.getColumns());
+    }
+    
+    /**
+     * Schema d'une table partitionnee, suivi du partitionnement
+     * Format : NomTable (Col1:Type1,...) PARTITION BY RANGE(Col) [b0,b1[ [b1,b2[ ...
+     *      ou  NomTable (Col1:Type1,...) PARTITION BY HASH(Col,n)
+     */
+    private String formatTableSchema(PartitionedRelation table) {
+        StringBuilder sb = new StringBuilder(formatTableSchema(table.getName(), table.getColumns()));
+        String colName = table.getColumns().get(table.getColumnIndex()).getName();
+        sb.append(" PARTITION BY ").append(table.getKind()).append("(").append(colName);
+        if (table.getKind() == PartitionedRelation.Kind.HASH) {
+            sb.append(",").append(table.getPartitionCount()).append(")");
+        } else {
+            sb.append(")");
+            for (int i = 0; i < table.getPartitionCount(); i++) {
+                Object low = table.getLowBound(i);
+                sb.append(" [").append(low == null ? "" : low).append(",").append(table.getHighBound(i)).append("[");
+            }
+        }
+        return sb.toString();
+    }
+    
+    private String formatTableSchema(String name, List<ColumnInfo> columns) {
         StringBuilder sb = new StringBuilder();
-        sb.append(table.getName()).append(" (");
+        sb.append(name).append(" (");
         
-        List<ColumnInfo> columns = table.getColumns();
         for (int i = 0; i < columns.size(); i++) {
             ColumnInfo col = columns.get(i);
             sb.append(col.getName()).append(":").append(col.getType());
@@ -183,8 +401,22 @@ public class DBManager {
      *   - Pour chaque colonne :
      *     - Nom de la colonne (String)
      *     - Type de la colonne (String)
+     * - Nombre de tables partitionnees (int)
+     * - Pour chaque table partitionnee :
+     *   - Nom (String), RANGE / HASH (String), indice de la colonne (int),
+     *     numero de la prochaine partition (int)
+     *   - Colonnes (comme ci-dessus)
+     *   - Nombre de partitions (int)
+     *   - Pour chaque partition : nom (String), HeaderPageId (int, int),
+     *     borne inferieure presente (boolean) [+ valeur (String)],
+     *     borne superieure presente (boolean) [+ valeur (String)]
+     * - Nombre de tables analysees (int)
+     * - Pour chaque table analysee : nom (String), statistiques (voir TableStatistics.write)
      */
     public void SaveState() throws IOException {
+        // Memoriser les pages chaudes avant que le flush ne vide le pool
+        SaveHotPages();
+        
         // Flush les buffers avant de sauvegarder
         bufferManager.FlushBuffers();
         
@@ -205,16 +437,75 @@ public class DBManager {
                 
                 // Colonnes
                 List<ColumnInfo> columns = table.getColumns();
-                dos.writeInt(columns.size());
+                writeColumns(dos, columns);
+            }
+            
+            // Tables partitionnees
+            dos.writeInt(partitionedTables.size());
+            for (PartitionedRelation table : partitionedTables.values()) {
+                dos.writeUTF(table.getName());
+                dos.writeUTF(table.getKind().name());
+                dos.writeInt(table.getColumnIndex());
+                dos.writeInt(table.getNextPartitionId());
+                writeColumns(dos, table.getColumns());
                 
-                for (ColumnInfo col : columns) {
-                    dos.writeUTF(col.getName());
-                    dos.writeUTF(col.getType());
+                dos.writeInt(table.getPartitionCount());
+                for (int i = 0; i < table.getPartitionCount(); i++) {
+                    Relation partition = table.getPartition(i);
+                    dos.writeUTF(partition.getName());
+                    dos.writeInt(partition.getHeaderPageId().getFileIdx());
+                    dos.writeInt(partition.getHeaderPageId().getPageIdx());
+                    writeBound(dos, table.getLowBound(i));
+                    writeBound(dos, table.getHighBound(i));
                 }
             }
+            
+            // Statistiques (ANALYZE TABLE)
+            dos.writeInt(statistics.size());
+            for (Map.Entry<String, TableStatistics> entry : statistics.entrySet()) {
+                dos.writeUTF(entry.getKey());
+                entry.getValue().write(dos);
+            }
+        }
+    }
+    
+    private static void writeColumns(DataOutputStream dos, List<ColumnInfo> columns) throws IOException {
+        dos.writeInt(columns.size());
+        for (ColumnInfo col : columns) {
+            dos.writeUTF(col.getName());
+            dos.writeUTF(col.getType());
+        }
+    }
+    
+    private static List<ColumnInfo> readColumns(DataInputStream dis) throws IOException {
+        int nbColumns = dis.readInt();
+        List<ColumnInfo> columns = new ArrayList<>();
+        for (int j = 0; j < nbColumns; j++) {
+            String colName = dis.readUTF();
+            String colType = dis.readUTF();
+            columns.add(new ColumnInfo(colName, colType));
+        }
+        return columns;
+    }
+    
+    private static void writeBound(DataOutputStream dos, Object bound) throws IOException {
+        dos.writeBoolean(bound != null);
+        if (bound != null) {
+            dos.writeUTF(bound.toString());
         }
     }
     
+    /**
+     * Relit une borne RANGE (INT ou FLOAT selon la colonne)
+     */
+    private static Object readBound(DataInputStream dis, ColumnInfo col) throws IOException {
+        if (!dis.readBoolean()) {
+            return null;
+        }
+        String value = dis.readUTF();
+        return col.isInt() ? (Object) Integer.parseInt(value) : (Object) Float.parseFloat(value);
+    }
+    
     /**
      * Charge l'etat de la base de donnees
      */
@@ -242,41 +533,152 @@ public class DBManager {
                 PageId headerPageId = new PageId(fileIdx, pageIdx);
                 
                 // Colonnes
-                int nbColumns = dis.readInt();
-                List<ColumnInfo> columns = new ArrayList<>();
-                
-                for (int j = 0; j < nbColumns; j++) {
-                    String colName = dis.readUTF();
-                    String colType = dis.readUTF();
-                    columns.add(new ColumnInfo(colName, colType));
-                }
+                List<ColumnInfo> columns = readColumns(dis);
                 
                 // Recreer la relation avec le constructeur pour relation existante
                 Relation table = new Relation(name, columns, headerPageId, diskManager, bufferManager);
                 tables.put(name, table);
             }
+            
+            // Tables partitionnees (absentes des sauvegardes plus anciennes)
+            if (dis.available() == 0) {
+                return;
+            }
+            int nbPartitioned = dis.readInt();
+            for (int i = 0; i < nbPartitioned; i++) {
+                String name = dis.readUTF();
+                PartitionedRelation.Kind kind = PartitionedRelation.Kind.valueOf(dis.readUTF());
+                int columnIndex = dis.readInt();
+                int nextPartitionId = dis.readInt();
+                List<ColumnInfo> columns = readColumns(dis);
+                PartitionedRelation table = new PartitionedRelation(name, columns, kind, columnIndex, nextPartitionId);
+                
+                int nbPartitions = dis.readInt();
+                for (int p = 0; p < nbPartitions; p++) {
+                    String partitionName = dis.readUTF();
+                    PageId headerPageId = new PageId(dis.readInt(), dis.readInt());
+                    Object low = readBound(dis, columns.get(columnIndex));
+                    Object high = readBound(dis, columns.get(columnIndex));
+                    Relation partition = new Relation(partitionName, columns, headerPageId, diskManager, bufferManager);
+                    if (kind == PartitionedRelation.Kind.HASH) {
+                        table.addHashPartition(partition);
+                    } else {
+                        table.addRangePartition(partition, low, high);
+                    }
+                }
+                partitionedTables.put(name, table);
+            }
+            
+            // Statistiques (absentes des sauvegardes plus anciennes)
+            if (dis.available() == 0) {
+                return;
+            }
+            int nbStatistics = dis.readInt();
+            for (int i = 0; i < nbStatistics; i++) {
+                String name = dis.readUTF();
+                List<ColumnInfo> columns = tables.containsKey(name)
+                        ? tables.get(name).getColumns() : partitionedTables.get(name).getColumns();
+                statistics.put(name, TableStatistics.read(dis, columns));
+            }
+        }
+    }
+    
+    /**
+     * Sauvegarde la liste des pages presentes dans le buffer pool
+     * Format du fichier :
+     * - Nombre de pages (int)
+     * - Pour chaque page (de la plus recente a la plus ancienne) :
+     *   - fileIdx (int), pageIdx (int), date du dernier acces (long)
+     */
+    private void SaveHotPages() throws IOException {
+        List<ResidentPage> resident = bufferManager.GetResidentPages();
+        String hotPath = config.getPath() + File.separator + HOT_PAGES_FILE;
+        
+        try (DataOutputStream dos = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(hotPath)))) {
+            dos.writeInt(resident.size());
+            for (ResidentPage page : resident) {
+                dos.writeInt(page.getPageId().getFileIdx());
+                dos.writeInt(page.getPageId().getPageIdx());
+                dos.writeLong(page.getLastAccess());
+            }
         }
     }
     
+    /**
+     * Lit la liste des pages chaudes sauvegardee a la derniere fermeture
+     * @return les pages (au plus bm_buffercount, les plus recentes),
+     *         triees par offset (fileIdx, pageIdx) ; liste vide si pas de fichier
+     */
+    public List<PageId> LoadHotPages() throws IOException {
+        List<PageId> pages = new ArrayList<>();
+        File hotFile = new File(config.getPath(), HOT_PAGES_FILE);
+        
+        if (!hotFile.exists()) {
+            return pages;
+        }
+        
+        try (DataInputStream dis = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(hotFile)))) {
+            int count = dis.readInt();
+            int limit = Math.min(count, config.getBufferCount());
+            
+            // Les pages sont stockees de la plus recente a la plus ancienne
+            for (int i = 0; i < limit; i++) {
+                int fileIdx = dis.readInt();
+                int pageIdx = dis.readInt();
+                dis.readLong();
+                pages.add(new PageId(fileIdx, pageIdx));
+            }
+        }
+        
+        // Relecture dans l'ordre physique : lectures sequentielles
+        pages.sort(Comparator.comparingInt(PageId::getFileIdx).thenComparingInt(PageId::getPageIdx));
+        return pages;
+    }
+    
+    /**
+     * Lance le rechauffement du buffer pool en arriere-plan :
+     * les pages chaudes de la session precedente sont rechargees par lots,
+     * dans l'ordre des offsets, pendant que les commandes sont traitees.
+     * @return le thread (daemon) de prechargement, deja demarre
+     */
+    public Thread StartWarmUp() throws IOException {
+        List<PageId> pages = LoadHotPages();
+        
+        Thread warmUp = new Thread(() -> {
+            for (int i = 0; i < pages.size(); i += WARM_UP_BATCH) {
+                List<PageId> batch = pages.subList(i, Math.min(i + WARM_UP_BATCH, pages.size()));
+                bufferManager.Prefetch(batch);
+            }
+        }, "buffer-warm-up");
+        
+        warmUp.setDaemon(true);
+        warmUp.start();
+        return warmUp;
+    }
+    
     /**
      * Retourne la liste des noms de toutes les tables
      */
     public List<String> GetTableNames() {
-        return new ArrayList<>(tables.keySet());
+        List<String> names = new ArrayList<>(tables.keySet());
+        names.addAll(partitionedTables.keySet());
+        return names;
     }
     
     /**
      * Verifie si une table existe
      */
     public boolean TableExists(String nomTable) {
-        return tables.containsKey(nomTable);
+        return tables.containsKey(nomTable) || partitionedTables.containsKey(nomTable);
     }
     
     /**
      * Retourne le nombre de tables
      */
     public int GetTableCount() {
-        return tables.size();
+        return tables.size() + partitionedTables.size();
     }
     
     /**
@@ -2,8 +2,14 @@ package bdda.query;
 
 import java.util.List;
 
+import bdda.core.PageId;
+import bdda.storage.BloomFilters;
 import bdda.storage.ColumnInfo;
+import bdda.storage.PartitionedRelation;
 import bdda.storage.Record;
+import bdda.storage.RecordView;
+import bdda.storage.Relation;
+import bdda.storage.ZoneMap;
 
 /**
  * Represente une condition dans une clause WHERE
@@ -31,6 +37,10 @@ public class Condition {
     private int rightColIndex;
     private Object rightConstant;
     
+    // Egalite colonne DICT / constante : comparaison des codes (voir bindDictionary)
+    private int dictionaryColIndex = -1;
+    private int dictionaryCode;
+    
     /**
      * Constructeur
      * @param leftColIndex indice de la colonne gauche (-1 si constante)
@@ -49,6 +59,66 @@ public class Condition {
         this.rightConstant = rightConstant;
     }
 
+    /**
+     * Indice de la colonne du terme gauche (-1 si constante)
+     */
+    public int getLeftColIndex() {
+        return leftColIndex;
+    }
+
+    /**
+     * Indice de la colonne du terme droit (-1 si constante)
+     */
+    public int getRightColIndex() {
+        return rightColIndex;
+    }
+
+    /**
+     * Prepare la comparaison par code pour une condition "colonne DICT = constante"
+     * (ou <>) : la constante est cherchee une seule fois dans le dictionnaire.
+     * @return true si la condition peut etre evaluee avec evaluateCode()
+     */
+    public boolean bindDictionary(Relation relation) {
+        if (!OP_EQUAL.equals(operator) && !OP_NOT_EQUAL.equals(operator)) {
+            return false;
+        }
+        
+        int colIndex;
+        Object constant;
+        if (leftColIndex >= 0 && rightColIndex < 0) {
+            colIndex = leftColIndex;
+            constant = rightConstant;
+        } else if (rightColIndex >= 0 && leftColIndex < 0) {
+            colIndex = rightColIndex;
+            constant = leftConstant;
+        } else {
+            return false;
+        }
+        
+        if (!relation.getColumn(colIndex).isDictionaryEncoded()) {
+            return false;
+        }
+        dictionaryColIndex = colIndex;
+        dictionaryCode = relation.lookupDictionaryCode(toString(constant));
+        return true;
+    }
+    
+    /**
+     * Indice de la colonne DICT comparee par code (-1 si bindDictionary n'a pas reussi)
+     */
+    public int getDictionaryColIndex() {
+        return dictionaryColIndex;
+    }
+    
+    /**
+     * Evalue la condition a partir du code stocke dans le slot
+     * (la constante absente du dictionnaire n'est egale a aucune valeur)
+     */
+    public boolean evaluateCode(int code) {
+        boolean equal = dictionaryCode >= 0 && code == dictionaryCode;
+        return OP_EQUAL.equals(operator) ? equal : !equal;
+    }
+
     /**
      * Evalue la condition sur un record
      * @param record le record a evaluer
@@ -56,39 +126,186 @@ public class Condition {
      * @return true si la condition est satisfaite
      */
     public boolean evaluate(Record record, List<ColumnInfo> columns) {
-        // Recuperer la valeur gauche
-        Object leftValue;
-        ColumnInfo leftCol = null;
-        if (leftColIndex >= 0) {
-            leftValue = record.getValue(leftColIndex);
-            leftCol = columns.get(leftColIndex);
-        } else {
-            leftValue = leftConstant;
-        }
+        ColumnInfo refCol = getReferenceColumn(columns);
         
-        // Recuperer la valeur droite
-        Object rightValue;
-        ColumnInfo rightCol = null;
-        if (rightColIndex >= 0) {
-            rightValue = record.getValue(rightColIndex);
-            rightCol = columns.get(rightColIndex);
-        } else {
-            rightValue = rightConstant;
+        // INT / FLOAT : valeurs lues sans objet intermediaire (record type)
+        if (refCol == null || refCol.isInt()) {
+            int left = (leftColIndex >= 0) ? record.getInt(leftColIndex) : toInt(leftConstant);
+            int right = (rightColIndex >= 0) ? record.getInt(rightColIndex) : toInt(rightConstant);
+            return apply(Integer.compare(left, right));
+        }
+        if (refCol.isFloat()) {
+            float left = (leftColIndex >= 0) ? record.getFloat(leftColIndex) : toFloat(leftConstant);
+            float right = (rightColIndex >= 0) ? record.getFloat(rightColIndex) : toFloat(rightConstant);
+            return apply(Float.compare(left, right));
         }
         
-        // Determiner le type pour la comparaison
-        ColumnInfo refCol;
+        Object leftValue = (leftColIndex >= 0) ? record.getValue(leftColIndex) : leftConstant;
+        Object rightValue = (rightColIndex >= 0) ? record.getValue(rightColIndex) : rightConstant;
+        return compare(leftValue, rightValue, refCol);
+    }
 
-        if (leftCol != null) {
-            refCol = leftCol;
-        } else {
-            refCol = rightCol;
+    /**
+     * Evalue la condition sur une vue : seules les colonnes de la condition sont decodees
+     */
+    public boolean evaluate(RecordView view, List<ColumnInfo> columns) {
+        ColumnInfo refCol = getReferenceColumn(columns);
+        
+        if (refCol == null || refCol.isInt()) {
+            int left = (leftColIndex >= 0) ? view.getInt(leftColIndex) : toInt(leftConstant);
+            int right = (rightColIndex >= 0) ? view.getInt(rightColIndex) : toInt(rightConstant);
+            return apply(Integer.compare(left, right));
+        }
+        if (refCol.isFloat()) {
+            float left = (leftColIndex >= 0) ? view.getFloat(leftColIndex) : toFloat(leftConstant);
+            float right = (rightColIndex >= 0) ? view.getFloat(rightColIndex) : toFloat(rightConstant);
+            return apply(Float.compare(left, right));
         }
         
-        // Comparer selon le type
+        Object leftValue = (leftColIndex >= 0) ? view.getValue(leftColIndex) : leftConstant;
+        Object rightValue = (rightColIndex >= 0) ? view.getValue(rightColIndex) : rightConstant;
         return compare(leftValue, rightValue, refCol);
     }
 
+    /**
+     * Indique si un record de la page peut satisfaire la condition, d'apres
+     * l'intervalle [min, max] de la colonne dans la zone map et, pour une
+     * egalite, le filtre de Bloom de la colonne.
+     * Renvoie true des qu'on ne peut pas conclure (colonne non suivie,
+     * deux colonnes, intervalles inconnus) : la page est alors lue.
+     */
+    public boolean mayMatch(ZoneMap zoneMap, BloomFilters bloomFilters, PageId pageId) {
+        boolean columnLeft = leftColIndex >= 0 && rightColIndex < 0;
+        boolean columnRight = rightColIndex >= 0 && leftColIndex < 0;
+        if (!columnLeft && !columnRight) {
+            return true;
+        }
+        int colIndex = columnLeft ? leftColIndex : rightColIndex;
+        Object constant = columnLeft ? rightConstant : leftConstant;
+        
+        // Egalite : la constante doit etre dans le filtre de Bloom de la page
+        if (OP_EQUAL.equals(operator) && bloomFilters.hasFilter(colIndex)) {
+            try {
+                if (!bloomFilters.mightContain(pageId, colIndex, constant)) {
+                    return false;
+                }
+            } catch (IllegalArgumentException e) {
+                // Constante non convertible : pas de conclusion
+            }
+        }
+        
+        if (!zoneMap.isTracked(colIndex) || !zoneMap.hasValues(pageId)) {
+            return true;
+        }
+        
+        // Signes de compare(colonne, constante) pour le min et le max
+        int atMin;
+        int atMax;
+        try {
+            if (zoneMap.isInt(colIndex)) {
+                int value = toInt(constant);
+                atMin = Integer.signum(Integer.compare(zoneMap.getIntMin(pageId, colIndex), value));
+                atMax = Integer.signum(Integer.compare(zoneMap.getIntMax(pageId, colIndex), value));
+            } else {
+                float value = toFloat(constant);
+                atMin = Integer.signum(Float.compare(zoneMap.getFloatMin(pageId, colIndex), value));
+                atMax = Integer.signum(Float.compare(zoneMap.getFloatMax(pageId, colIndex), value));
+            }
+        } catch (NumberFormatException e) {
+            return true;
+        }
+        
+        return mayMatchRange(atMin, atMax, columnLeft);
+    }
+    
+    /**
+     * Indique si un record de la partition peut satisfaire la condition :
+     * RANGE, la constante est comparee aux bornes [low, high[ de la partition ;
+     * HASH, une egalite designe une seule partition.
+     * Renvoie true des qu'on ne peut pas conclure (autre colonne, deux colonnes).
+     */
+    public boolean mayMatch(PartitionedRelation table, int partition) {
+        boolean columnLeft = leftColIndex == table.getColumnIndex() && rightColIndex < 0;
+        boolean columnRight = rightColIndex == table.getColumnIndex() && leftColIndex < 0;
+        if (!columnLeft && !columnRight) {
+            return true;
+        }
+        Object constant = columnLeft ? rightConstant : leftConstant;
+        
+        try {
+            if (table.getKind() == PartitionedRelation.Kind.HASH) {
+                return !OP_EQUAL.equals(operator) || table.partitionFor(constant) == partition;
+            }
+            
+            // Signes de compare(colonne, constante) aux bornes de la partition
+            // (valeurs < high : au plus -1 si high <= constante)
+            Object lowBound = table.getLowBound(partition);
+            int atMin = lowBound == null ? -1 : Integer.signum(table.compareValues(lowBound, constant));
+            int atMax = table.compareValues(table.getHighBound(partition), constant) > 0 ? 1 : -1;
+            return mayMatchRange(atMin, atMax, columnLeft);
+        } catch (IllegalArgumentException e) {
+            // Constante non convertible (NumberFormatException comprise) : pas de conclusion
+            return true;
+        }
+    }
+    
+    /**
+     * Vrai si l'operateur est satisfait pour au moins un signe de comparaison
+     * colonne / constante compris entre atMin et atMax
+     */
+    private boolean mayMatchRange(int atMin, int atMax, boolean columnLeft) {
+        // Comparaisons possibles : de low a high (constante a gauche : inversees)
+        int low = columnLeft ? atMin : -atMax;
+        int high = columnLeft ? atMax : -atMin;
+        return apply(low) || apply(high) || (low < 0 && high > 0 && apply(0));
+    }
+    
+    /**
+     * Vrai si la page peut contenir un record satisfaisant toutes les conditions
+     * (conjonction : une seule condition impossible suffit a sauter la page)
+     */
+    public static boolean mayMatchAll(List<Condition> conditions, Relation relation, PageId pageId) {
+        if (conditions == null) {
+            return true;
+        }
+        ZoneMap zoneMap = relation.getZoneMap();
+        BloomFilters bloomFilters = relation.getBloomFilters();
+        for (Condition c : conditions) {
+            if (!c.mayMatch(zoneMap, bloomFilters, pageId)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Vrai si la partition peut contenir un record satisfaisant toutes les conditions
+     */
+    public static boolean mayMatchAll(List<Condition> conditions, PartitionedRelation table, int partition) {
+        if (conditions == null) {
+            return true;
+        }
+        for (Condition c : conditions) {
+            if (!c.mayMatch(table, partition)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Colonne qui determine le type de la comparaison (gauche en priorite)
+     */
+    private ColumnInfo getReferenceColumn(List<ColumnInfo> columns) {
+        if (leftColIndex >= 0) {
+            return columns.get(leftColIndex);
+        }
+        if (rightColIndex >= 0) {
+            return columns.get(rightColIndex);
+        }
+        return null;
+    }
+
     /**
      * Compare deux valeurs selon le type de colonne
      */
@@ -114,7 +331,13 @@ public class Condition {
             cmp = leftStr.compareTo(rightStr);
         }
         
-        // Appliquer l'operateur
+        return apply(cmp);
+    }
+    
+    /**
+     * Applique l'operateur au resultat d'une comparaison
+     */
+    private boolean apply(int cmp) {
         switch (operator) {
             case OP_EQUAL:
                 return cmp == 0;
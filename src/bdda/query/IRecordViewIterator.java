@@ -0,0 +1,20 @@
+package bdda.query;
+
+import java.io.IOException;
+
+import bdda.storage.RecordView;
+
+/**
+ * Iterateur qui peut renvoyer des vues sur les records au lieu de Records
+ * (les colonnes ne sont decodees que si elles sont lues)
+ */
+public interface IRecordViewIterator extends IRecordIterator {
+    
+    /**
+     * Retourne une vue sur le prochain record et avance le curseur
+     * La vue est reutilisee : elle n'est valable que jusqu'au prochain appel
+     * (RecordView.toRecord() pour garder les valeurs)
+     * @return la vue, ou null s'il n'y a plus de record
+     */
+    RecordView GetNextView() throws IOException;
+}
@@ -5,15 +5,19 @@ import java.util.ArrayList;
 import java.util.List;
 
 import bdda.storage.Record;
+import bdda.storage.RecordView;
 
 /**
  * Operateur de projection (selectionne certaines colonnes)
+ * Si le fils fournit des vues, seules les colonnes projetees sont decodees.
  */
 public class ProjectOperator implements IRecordIterator {
 
     private final IRecordIterator childIterator;
     // null => pas de projection (renvoyer le record tel quel)
     private final List<Integer> columnIndices;
+    // Schema des records projetes (calcule au premier record type)
+    private Record.Schema projectedSchema;
 
     /**
      * @param childIterator iterateur fils
@@ -39,6 +43,20 @@ public class ProjectOperator implements IRecordIterator {
 
     @Override
     public Record GetNextRecord() throws IOException {
+        if (childIterator instanceof IRecordViewIterator) {
+            // Materialisation a la sortie, directement depuis la page
+            RecordView view = ((IRecordViewIterator) childIterator).GetNextView();
+            if (view == null) {
+                return null;
+            }
+            if (columnIndices == null) {
+                return view.toRecord();
+            }
+            Record projected = newProjectedRecord(view.getSchema());
+            view.readColumns(columnIndices, projected);
+            return projected;
+        }
+        
         Record input = childIterator.GetNextRecord();
         if (input == null) {
             return null;
@@ -50,13 +68,26 @@ public class ProjectOperator implements IRecordIterator {
         }
 
         // Construire un nouveau record avec les colonnes projetees
-        Record projected = new Record();
-        for (Integer idx : columnIndices) {
-            projected.addValue(input.getValue(idx));
+        Record projected = newProjectedRecord(input.getSchema());
+        for (int k = 0; k < columnIndices.size(); k++) {
+            projected.copyValue(k, input, columnIndices.get(k));
         }
         return projected;
     }
 
+    /**
+     * Record de sortie : type si l'entree l'est (meme schema pour tous)
+     */
+    private Record newProjectedRecord(Record.Schema inputSchema) {
+        if (inputSchema == null) {
+            return new Record();
+        }
+        if (projectedSchema == null) {
+            projectedSchema = inputSchema.project(columnIndices);
+        }
+        return projectedSchema.newRecord();
+    }
+
     @Override
     public void Close() {
         childIterator.Close();
@@ -1,102 +1,158 @@
 package bdda.query;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 
 import bdda.core.BufferManager;
+import bdda.core.PageHandle;
 import bdda.core.PageId;
 import bdda.storage.Record;
+import bdda.storage.RecordView;
 import bdda.storage.Relation;
 
 /**
  * Iterateur qui parcourt tous les records d'une relation
  * Implementation efficace : ne garde qu'un record a la fois en memoire
+ * GetNextView() evite meme de decoder les colonnes qui ne sont pas lues
+ *
+ * Les pages sont lues par position dans le repertoire de la relation :
+ * l'ouverture et Reset() ne parcourent aucune page. Un scanner peut ne
+ * couvrir qu'un intervalle [fromPage, toPage) du repertoire (voir partition()).
+ * La relation ne doit pas etre modifiee pendant le parcours.
  */
-public class RelationScanner implements IRecordIterator {
+public class RelationScanner implements IRecordViewIterator {
     
     private Relation relation;
     private BufferManager bufferManager;
     
-    // Liste des pages de donnees
-    private List<PageId> dataPages;
+    // Intervalle de pages du repertoire (toPage < 0 : jusqu'a la fin)
+    private final int fromPage;
+    private final int toPage;
+    private int endPage;
     private int currentPageIndex;
     private int currentSlotIndex;
     
-    // Page courante en memoire
-    private PageId currentPageId;
-    private byte[] currentBuffer;
+    // Conditions consultees dans la zone map pour sauter des pages (null : aucune)
+    private List<Condition> pageFilter;
     
-    // Constantes
-    private static final int DATA_PAGE_HEADER_SIZE = 16;
+    // Page courante (epinglee) en memoire
+    private PageHandle currentPage;
+    
+    // Vue reutilisee pour GetNextView (detachee avant de liberer la page)
+    private final RecordView view;
+    private boolean viewInUse;
     
     public RelationScanner(Relation relation) throws IOException {
+        this(relation, 0, -1);
+    }
+    
+    /**
+     * Scanner limite aux pages [fromPage, toPage) du repertoire de la relation
+     */
+    public RelationScanner(Relation relation, int fromPage, int toPage) throws IOException {
         this.relation = relation;
         this.bufferManager = relation.getBufferManager();
-        this.dataPages = relation.getDataPages();
-        this.currentPageIndex = 0;
-        this.currentSlotIndex = 0;
-        this.currentPageId = null;
-        this.currentBuffer = null;
+        this.fromPage = fromPage;
+        this.toPage = toPage;
+        this.currentPage = null;
+        this.view = new RecordView(relation);
+        Reset();
+    }
+    
+    /**
+     * Un scanner par intervalle de pages (au plus parts scanners), pour un
+     * parcours partitionne ou parallele ; ils couvrent ensemble toute la relation
+     */
+    public static List<RelationScanner> partition(Relation relation, int parts) throws IOException {
+        List<RelationScanner> scanners = new ArrayList<>();
+        for (int[] range : relation.splitDataPages(parts)) {
+            scanners.add(new RelationScanner(relation, range[0], range[1]));
+        }
+        return scanners;
+    }
+
+    /**
+     * Saute les pages dont la zone map montre qu'aucun record ne satisfait
+     * les conditions (utilise par SelectOperator, qui filtre ensuite les records)
+     */
+    public void setPageFilter(List<Condition> conditions) {
+        this.pageFilter = conditions;
     }
 
     @Override
     public Record GetNextRecord() throws IOException {
-        int slotCount = relation.getSlotCount();
-        int bytemapOffset = DATA_PAGE_HEADER_SIZE + (slotCount * relation.getRecordSize());
-        
-        while (currentPageIndex < dataPages.size()) {
-            // Charger la page si necessaire
-            if (currentPageId == null || !currentPageId.equals(dataPages.get(currentPageIndex))) {
-                // Liberer l'ancienne page
-                if (currentPageId != null) {
-                    bufferManager.FreePage(currentPageId, false);
+        if (!advance()) {
+            return null;
+        }
+        Record record = relation.newRecord();
+        relation.readRecordFromSlot(currentPage, currentSlotIndex - 1, record);
+        return record;
+    }
+
+    @Override
+    public RecordView GetNextView() throws IOException {
+        if (!advance()) {
+            return null;
+        }
+        view.attach(currentPage, currentSlotIndex - 1);
+        viewInUse = true;
+        return view;
+    }
+
+    /**
+     * Avance jusqu'au prochain slot occupe (la page reste epinglee)
+     * @return false s'il n'y a plus de record ; sinon le slot est currentSlotIndex - 1
+     */
+    private boolean advance() throws IOException {
+        while (currentPageIndex < endPage) {
+            // Charger la page si necessaire (l'ancienne a ete liberee en fin de page)
+            if (currentPage == null) {
+                PageId pageId = relation.getDataPage(currentPageIndex);
+                if (pageFilter != null && !Condition.mayMatchAll(pageFilter, relation, pageId)) {
+                    currentPageIndex++;
+                    continue;
                 }
-                
-                currentPageId = dataPages.get(currentPageIndex);
-                currentBuffer = bufferManager.GetPage(currentPageId);
+                currentPage = bufferManager.GetPageHandle(pageId);
             }
             
-            ByteBuffer bb = ByteBuffer.wrap(currentBuffer);
-            
-            // Chercher le prochain slot occupe
-            while (currentSlotIndex < slotCount) {
-                if (bb.get(bytemapOffset + currentSlotIndex) == 1) {
-                    // Slot occupe : lire le record
-                    Record record = new Record();
-                    int slotOffset = DATA_PAGE_HEADER_SIZE + (currentSlotIndex * relation.getRecordSize());
-                    relation.readFromBuffer(record, bb, slotOffset);
-                    
-                    currentSlotIndex++;
-                    return record;
-                }
-                currentSlotIndex++;
+            // Chercher le prochain slot occupe directement dans la bitmap
+            int slotIdx = relation.nextOccupiedSlot(currentPage, currentSlotIndex);
+            if (slotIdx >= 0) {
+                currentSlotIndex = slotIdx + 1;
+                return true;
             }
             
             // Page terminee, passer a la suivante
+            Close();
             currentSlotIndex = 0;
             currentPageIndex++;
         }
         
         Close();
-        return null; // Plus de records
+        return false; // Plus de records
     }
 
      @Override
     public void Close() {
-        if (currentPageId != null) {
-            bufferManager.FreePage(currentPageId, false);
-            currentPageId = null;
-            currentBuffer = null;
+        if (currentPage != null) {
+            // La derniere vue renvoyee doit rester lisible sans la page
+            if (viewInUse) {
+                view.detach();
+                viewInUse = false;
+            }
+            currentPage.close();
+            currentPage = null;
         }
     }
 
     @Override
     public void Reset() throws IOException {
         Close();
-        this.dataPages = relation.getDataPages();
-        this.currentPageIndex = 0;
+        int count = relation.getDataPageCount();
+        this.endPage = toPage < 0 ? count : Math.min(toPage, count);
+        this.currentPageIndex = fromPage;
         this.currentSlotIndex = 0;
     }
     
-}
\ No newline at end of file
+}
@@ -1,10 +1,11 @@
 package bdda.query;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 
 import bdda.core.BufferManager;
+import bdda.core.PageHandle;
 import bdda.core.PageId;
 import bdda.storage.ColumnInfo;
 import bdda.storage.RecordId;
@@ -17,7 +18,6 @@ public class RelationScannerWithSelect implements IRecordIterator {
     private final BufferManager bufferManager;
     private final List<Condition> conditions;
     private final List<ColumnInfo> columns;
-    private final List<PageId> dataPages;
 
     // Curseurs
     private int pageCursor;
@@ -25,48 +25,74 @@ public class RelationScannerWithSelect implements IRecordIterator {
     
     // Pour les opérations UPDATE/DELETE
     private RecordId currentRecordId;
+    
+    // Egalités sur colonnes DICT : comparées sur le code, sans décoder la chaîne
+    private final List<Condition> codeConditions = new ArrayList<>();
+    private final List<Condition> valueConditions = new ArrayList<>();
+    
+    // Colonnes lues par les autres conditions : elles sont évaluées avant de décoder
+    // le record entier (seuls ces champs de probe sont remplis)
+    private final int[] conditionColumns;
+    private final Record probe;
 
     public RelationScannerWithSelect(Relation relation, List<Condition> conditions) throws IOException {
         this.relation = relation;
         this.bufferManager = relation.getBufferManager();
         this.conditions = conditions;
         this.columns = relation.getColumns();
-        this.dataPages = relation.getDataPages();
         this.pageCursor = 0;
         this.slotCursor = 0;
+        
+        if (conditions != null) {
+            for (Condition c : conditions) {
+                if (c.bindDictionary(relation)) {
+                    codeConditions.add(c);
+                } else {
+                    valueConditions.add(c);
+                }
+            }
+        }
+        this.conditionColumns = collectConditionColumns();
+        this.probe = relation.newRecord();
     }
 
     @Override
     public Record GetNextRecord() throws IOException {
-        while (pageCursor < dataPages.size()) {
-            PageId currentPageId = dataPages.get(pageCursor);
-            byte[] buffer = bufferManager.GetPage(currentPageId);
-            ByteBuffer bb = ByteBuffer.wrap(buffer);
-
-            int recordSize = relation.getRecordSize();
-            int slotCount = relation.getSlotCount();
-            int headerSize = 16;
-            int bytemapOffset = headerSize + (slotCount * recordSize);
-
-            while (slotCursor < slotCount) {
+        // Pages lues par position dans le repertoire de la relation
+        while (pageCursor < relation.getDataPageCount()) {
+            PageId currentPageId = relation.getDataPage(pageCursor);
+            
+            // Zone map : page sautee sans l'epingler si aucun record ne peut correspondre
+            if (slotCursor == 0 && !Condition.mayMatchAll(conditions, relation, currentPageId)) {
+                pageCursor++;
+                continue;
+            }
 
-                if (bb.get(bytemapOffset + slotCursor) == 1) {
-                    Record record = new Record();
-                    int slotOffset = headerSize + (slotCursor * recordSize);
-                    relation.readFromBuffer(record, bb, slotOffset);
+            try (PageHandle page = bufferManager.GetPageHandle(currentPageId)) {
+                // Sauter directement au prochain slot occupe (bitmap)
+                while ((slotCursor = relation.nextOccupiedSlot(page, slotCursor)) >= 0) {
+                    if (!matchesCodeConditions(page, slotCursor)) {
+                        slotCursor++;
+                        continue;
+                    }
+                    
+                    // Lire uniquement les colonnes des autres conditions
+                    for (int colIdx : conditionColumns) {
+                        readProbeColumn(page, slotCursor, colIdx);
+                    }
                     
-                    if (matchesAllConditions(record)) {
+                    if (matchesAllConditions(probe)) {
+                        Record record = relation.newRecord();
+                        relation.readRecordFromSlot(page, slotCursor, record);
                         this.currentRecordId = new RecordId(currentPageId, slotCursor);
                         
                         slotCursor++;
-                        bufferManager.FreePage(currentPageId, false);
                         return record;
                     }
+                    slotCursor++;
                 }
-                slotCursor++;
             }
 
-            bufferManager.FreePage(currentPageId, false);
             pageCursor++;
             slotCursor = 0;
         }
@@ -78,9 +104,51 @@ public class RelationScannerWithSelect implements IRecordIterator {
         return currentRecordId;
     }
 
+    /**
+     * Indices (sans doublon) des colonnes utilisées par les conditions
+     */
+    private int[] collectConditionColumns() {
+        boolean[] used = new boolean[columns.size()];
+        for (Condition c : valueConditions) {
+            if (c.getLeftColIndex() >= 0) used[c.getLeftColIndex()] = true;
+            if (c.getRightColIndex() >= 0) used[c.getRightColIndex()] = true;
+        }
+        
+        int count = 0;
+        for (boolean u : used) {
+            if (u) count++;
+        }
+        int[] indices = new int[count];
+        int k = 0;
+        for (int i = 0; i < used.length; i++) {
+            if (used[i]) indices[k++] = i;
+        }
+        return indices;
+    }
+
+    /**
+     * Copie une colonne du slot dans probe (INT / FLOAT sans objet intermédiaire)
+     */
+    private void readProbeColumn(PageHandle page, int slotIdx, int colIdx) {
+        if (probe.getSchema().isInt(colIdx)) {
+            probe.setInt(colIdx, relation.readIntValue(page, slotIdx, colIdx));
+        } else if (probe.getSchema().isFloat(colIdx)) {
+            probe.setFloat(colIdx, relation.readFloatValue(page, slotIdx, colIdx));
+        } else {
+            probe.setValue(colIdx, relation.readColumnValue(page, slotIdx, colIdx));
+        }
+    }
+
+    private boolean matchesCodeConditions(PageHandle page, int slotIdx) {
+        for (Condition c : codeConditions) {
+            int colIdx = c.getDictionaryColIndex();
+            if (!c.evaluateCode(relation.readColumnCode(page, slotIdx, colIdx))) return false;
+        }
+        return true;
+    }
+
     private boolean matchesAllConditions(Record record) {
-        if (conditions == null || conditions.isEmpty()) return true;
-        for (Condition c : conditions) {
+        for (Condition c : valueConditions) {
             if (!c.evaluate(record, columns)) return false;
         }
         return true;
@@ -5,26 +5,43 @@ import java.util.List;
 
 import bdda.storage.ColumnInfo;
 import bdda.storage.Record;
+import bdda.storage.RecordView;
 
 /**
  * Operateur de selection (filtre les records selon des conditions)
+ * Si le fils fournit des vues, les conditions sont evaluees sur la vue :
+ * seules les colonnes testees sont decodees pour les records rejetes.
+ * Sur un RelationScanner, les pages exclues par la zone map sont sautees.
  */
-public class SelectOperator implements IRecordIterator {
+public class SelectOperator implements IRecordViewIterator {
     
     private IRecordIterator childIterator;
     private List<Condition> conditions;
     private List<ColumnInfo> columns;
     
+    // Vue sur les records d'un fils qui ne fournit pas de vues
+    private RecordView wrapper;
+    
     public SelectOperator(IRecordIterator childIterator, 
                           List<Condition> conditions,
                           List<ColumnInfo> columns) {
         this.childIterator = childIterator;
         this.conditions = conditions;
         this.columns = columns;
+        
+        // Parcours direct d'une relation : les pages hors zone map ne sont pas lues
+        if (childIterator instanceof RelationScanner) {
+            ((RelationScanner) childIterator).setPageFilter(conditions);
+        }
     }
 
     @Override
     public Record GetNextRecord() throws IOException {
+        if (childIterator instanceof IRecordViewIterator) {
+            RecordView view = GetNextView();
+            return view == null ? null : view.toRecord();
+        }
+        
         Record record;
         
         while ((record = childIterator.GetNextRecord()) != null) {
@@ -37,6 +54,40 @@ public class SelectOperator implements IRecordIterator {
         return null; // Plus de records qui satisfont les conditions
     }
 
+    @Override
+    public RecordView GetNextView() throws IOException {
+        if (!(childIterator instanceof IRecordViewIterator)) {
+            Record record = GetNextRecord();
+            if (record == null) {
+                return null;
+            }
+            if (wrapper == null) {
+                wrapper = new RecordView(record);
+            } else {
+                wrapper.wrap(record);
+            }
+            return wrapper;
+        }
+        
+        IRecordViewIterator child = (IRecordViewIterator) childIterator;
+        RecordView view;
+        while ((view = child.GetNextView()) != null) {
+            if (evaluateAllConditions(view)) {
+                return view;
+            }
+        }
+        return null;
+    }
+
+    private boolean evaluateAllConditions(RecordView view) {
+        for (Condition cond : conditions) {
+            if (!cond.evaluate(view, columns)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Evalue toutes les conditions (AND)
      */
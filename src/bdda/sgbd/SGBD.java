@@ -4,13 +4,16 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Scanner;
 
 import bdda.core.BufferManager;
 import bdda.core.DBConfig;
 import bdda.core.DiskManager;
+import bdda.core.PageHandle;
 import bdda.core.PageId;
 import bdda.manager.DBManager;
 import bdda.query.Condition;
@@ -18,11 +21,15 @@ import bdda.query.IRecordIterator;
 import bdda.query.ProjectOperator;
 import bdda.query.RecordPrinter;
 import bdda.query.RelationScanner;
-import bdda.query.SelectOperator;
+import bdda.query.RelationScannerWithSelect;
 import bdda.storage.ColumnInfo;
+import bdda.storage.PartitionedRelation;
 import bdda.storage.Record;
 import bdda.storage.RecordId;
+import bdda.storage.RecordView;
 import bdda.storage.Relation;
+import bdda.storage.StorageLayout;
+import bdda.storage.TableStatistics;
 
 /**
  * Classe principale du SGBD
@@ -39,6 +46,9 @@ public class SGBD {
     // Flag pour controler la boucle principale
     private boolean running;
     
+    // Nombre de records du CSV inseres d'un coup par APPEND INTO
+    private static final int APPEND_BATCH_SIZE = 1024;
+    
     /**
      * Constructeur
      * @param config configuration de la base de donnees
@@ -68,6 +78,13 @@ public class SGBD {
             System.err.println("Erreur lors du chargement de l'etat : " + e.getMessage());
         }
         
+        // Rechauffer le buffer pool pendant le traitement des commandes
+        try {
+            dbManager.StartWarmUp();
+        } catch (IOException e) {
+            System.err.println("Erreur lors du rechauffement du buffer pool : " + e.getMessage());
+        }
+        
         // Boucle de commandes
         while (running) {
             // Lire la commande (pas de prompt comme demande)
@@ -123,6 +140,15 @@ public class SGBD {
         else if (command.startsWith("UPDATE ")) {
             ProcessUpdateCommand(command);
         }
+        else if (command.startsWith("VACUUM TABLE ")) {
+            ProcessVacuumCommand(command);
+        }
+        else if (command.startsWith("ANALYZE TABLE ")) {
+            ProcessAnalyzeCommand(command);
+        }
+        else if (command.startsWith("ALTER TABLE ")) {
+            ProcessAlterTableCommand(command);
+        }
         else if (command.equals("EXIT")) {
             ProcessExitCommand(command);
         }
@@ -134,12 +160,36 @@ public class SGBD {
     /**
      * Traite la commande CREATE TABLE
      * Format : CREATE TABLE NomTable (Col1:Type1,Col2:Type2,...)
+     *          [PARTITION BY RANGE(Col) (b1,b2,...) | PARTITION BY HASH(Col,n)]
+     *          [LAYOUT ROW|SLOTTED|COLUMNAR]
      * Exemple : CREATE TABLE R (X:INT,C3:FLOAT,BLA:CHAR(10))
      */
     private void ProcessCreateTableCommand(String command) throws IOException {
         // Enlever "CREATE TABLE "
         String rest = command.substring(13);
         
+        // Option LAYOUT en fin de commande (ROW par defaut)
+        StorageLayout layout = StorageLayout.ROW;
+        int layoutPos = rest.lastIndexOf(" LAYOUT ");
+        if (layoutPos != -1 && layoutPos > rest.lastIndexOf(')')) {
+            String layoutName = rest.substring(layoutPos + 8).trim();
+            try {
+                layout = StorageLayout.valueOf(layoutName);
+            } catch (IllegalArgumentException e) {
+                System.out.println("Layout inconnu : " + layoutName);
+                return;
+            }
+            rest = rest.substring(0, layoutPos).trim();
+        }
+        
+        // Option PARTITION BY apres la definition des colonnes
+        String partitionDef = null;
+        int partitionPos = rest.indexOf(" PARTITION BY ");
+        if (partitionPos != -1) {
+            partitionDef = rest.substring(partitionPos + 14).trim();
+            rest = rest.substring(0, partitionPos).trim();
+        }
+        
         // Trouver la position de la parenthese ouvrante
         int parenPos = rest.indexOf('(');
         if (parenPos == -1) {
@@ -156,13 +206,60 @@ public class SGBD {
         // Parser les colonnes
         List<ColumnInfo> columns = parseColumns(colsDef);
         
+        if (partitionDef != null) {
+            createPartitionedTable(tableName, columns, layout, partitionDef);
+            return;
+        }
+        
         // Creer la relation
-        Relation relation = new Relation(tableName, columns, diskManager, bufferManager);
+        Relation relation = new Relation(tableName, columns, layout, diskManager, bufferManager);
         
         // Ajouter au DBManager
         dbManager.AddTable(relation);
     }
     
+    /**
+     * Cree une table partitionnee (une relation par partition)
+     * Format : RANGE(Col) (b1,b2,...) : partitions ]..,b1[ [b1,b2[ ...
+     *          HASH(Col,n) : n partitions
+     */
+    private void createPartitionedTable(String tableName, List<ColumnInfo> columns,
+                                        StorageLayout layout, String partitionDef) throws IOException {
+        int open = partitionDef.indexOf('(');
+        int close = partitionDef.indexOf(')');
+        if (open == -1 || close < open) {
+            System.out.println("Erreur de syntaxe : PARTITION BY " + partitionDef);
+            return;
+        }
+        String kind = partitionDef.substring(0, open).trim();
+        String[] args = partitionDef.substring(open + 1, close).split(",");
+        
+        int colIdx = indexOfColumn(args[0].trim(), columns);
+        if (colIdx < 0) {
+            System.out.println("Colonne inconnue : " + args[0].trim());
+            return;
+        }
+        
+        if (kind.equals("HASH") && args.length == 2) {
+            int count = Integer.parseInt(args[1].trim());
+            dbManager.CreateHashPartitionedTable(tableName, columns, layout, colIdx, count);
+        } else if (kind.equals("RANGE") && args.length == 1) {
+            // Bornes entre parentheses apres RANGE(Col)
+            String boundsDef = partitionDef.substring(close + 1).trim();
+            if (!boundsDef.startsWith("(") || !boundsDef.endsWith(")")) {
+                System.out.println("Erreur de syntaxe : bornes RANGE manquantes");
+                return;
+            }
+            List<Object> bounds = new ArrayList<>();
+            for (String token : splitValues(boundsDef.substring(1, boundsDef.length() - 1))) {
+                bounds.add(parseValue(token, columns.get(colIdx)));
+            }
+            dbManager.CreateRangePartitionedTable(tableName, columns, layout, colIdx, bounds);
+        } else {
+            System.out.println("Erreur de syntaxe : PARTITION BY " + partitionDef);
+        }
+    }
+    
     /**
      * Parse la definition des colonnes
      * Format : Col1:Type1,Col2:Type2,...
@@ -185,6 +282,47 @@ public class SGBD {
         return columns;
     }
     
+    /**
+     * Traite la commande ALTER TABLE (tables partitionnees par RANGE)
+     * Format : ALTER TABLE NomTable DROP PARTITION k
+     *          ALTER TABLE NomTable ADD PARTITION (borne)
+     * DROP PARTITION libere les pages de la k-ieme partition (0 : valeurs
+     * les plus petites, ordre de DESCRIBE TABLE) sans lire ses records ;
+     * ADD PARTITION ajoute [derniere borne, borne[ apres les partitions
+     */
+    private void ProcessAlterTableCommand(String command) throws IOException {
+        // Enlever "ALTER TABLE "
+        String rest = command.substring(12).trim();
+        
+        int spacePos = rest.indexOf(' ');
+        if (spacePos == -1) {
+            System.out.println("Erreur de syntaxe : " + command);
+            return;
+        }
+        String tableName = rest.substring(0, spacePos);
+        String action = rest.substring(spacePos + 1).trim();
+        
+        PartitionedRelation table = dbManager.GetPartitionedTable(tableName);
+        if (table == null) {
+            System.out.println("Table partitionnee inexistante : " + tableName);
+            return;
+        }
+        
+        if (action.startsWith("DROP PARTITION ")) {
+            int index = Integer.parseInt(action.substring(15).trim());
+            long count = dbManager.DropPartition(tableName, index);
+            System.out.println("Total dropped records=" + count);
+        } else if (action.startsWith("ADD PARTITION ")) {
+            String bound = action.substring(14).trim();
+            if (bound.startsWith("(") && bound.endsWith(")")) {
+                bound = bound.substring(1, bound.length() - 1);
+            }
+            dbManager.AddRangePartition(tableName, parseValue(bound, table.getColumns().get(table.getColumnIndex())));
+        } else {
+            System.out.println("Erreur de syntaxe : " + command);
+        }
+    }
+    
     /**
      * Traite la commande DROP TABLE
      * Format : DROP TABLE NomTable
@@ -256,7 +394,7 @@ public class SGBD {
         String valuesStr = valuesPart.substring(1, valuesPart.length() - 1);
         
         // Recuperer la relation
-        Relation relation = dbManager.GetTable(tableName);
+        Relation relation = getSchemaRelation(tableName);
         if (relation == null) {
             System.out.println("Table inexistante : " + tableName);
             return;
@@ -265,9 +403,47 @@ public class SGBD {
         // Parser les valeurs
         List<Object> values = parseValues(valuesStr, relation.getColumns());
         
-        // Inserer le record
+        // Inserer le record (dans sa partition si la table est partitionnee)
         Record record = new Record(values);
-        relation.InsertRecord(record);
+        PartitionedRelation partitioned = dbManager.GetPartitionedTable(tableName);
+        if (partitioned != null) {
+            partitioned.InsertRecord(record);
+        } else {
+            relation.InsertRecord(record);
+        }
+    }
+    
+    /**
+     * Relation dont le schema sert a parser la commande : la table, ou la
+     * premiere partition d'une table partitionnee (meme schema pour toutes)
+     * @return null si la table n'existe pas
+     */
+    private Relation getSchemaRelation(String tableName) {
+        PartitionedRelation partitioned = dbManager.GetPartitionedTable(tableName);
+        if (partitioned != null) {
+            return partitioned.getPartition(0);
+        }
+        return dbManager.GetTable(tableName);
+    }
+    
+    /**
+     * Relations a parcourir pour une commande : la table elle-meme, ou les
+     * seules partitions qui peuvent contenir un record satisfaisant les
+     * conditions (les autres ne sont pas ouvertes)
+     */
+    private List<Relation> getTargetRelations(String tableName, List<Condition> conditions) {
+        PartitionedRelation partitioned = dbManager.GetPartitionedTable(tableName);
+        List<Relation> relations = new ArrayList<>();
+        if (partitioned == null) {
+            relations.add(dbManager.GetTable(tableName));
+            return relations;
+        }
+        for (int i = 0; i < partitioned.getPartitionCount(); i++) {
+            if (Condition.mayMatchAll(conditions, partitioned, i)) {
+                relations.add(partitioned.getPartition(i));
+            }
+        }
+        return relations;
     }
 
     /**
@@ -339,7 +515,9 @@ public class SGBD {
 
     /**
      * Traite la commande APPEND INTO
-     * Format : APPEND INTO nomRelation ALLRECORDS (nomFichier.csv)
+     * Format : APPEND INTO nomRelation ALLRECORDS (nomFichier.csv) [DIRECT]
+     * DIRECT : chargement direct en pages pleines écrites sans passer par le buffer pool
+     * (table partitionnée : insertion par lots, chaque lot réparti entre les partitions)
      */
     private void ProcessAppendCommand(String command) throws IOException {
         // Enlever "APPEND INTO "
@@ -349,16 +527,23 @@ public class SGBD {
         int allrecordsPos = rest.indexOf(" ALLRECORDS ");
         String tableName = rest.substring(0, allrecordsPos).trim();
         
-        // Extraire le nom du fichier (entre parentheses)
+        // Option DIRECT en fin de commande
         String filePart = rest.substring(allrecordsPos + 12).trim();
+        boolean direct = filePart.endsWith(" DIRECT");
+        if (direct) {
+            filePart = filePart.substring(0, filePart.length() - 7).trim();
+        }
+        
+        // Extraire le nom du fichier (entre parentheses)
         String fileName = filePart.substring(1, filePart.length() - 1);
         
         // Recuperer la relation
-        Relation relation = dbManager.GetTable(tableName);
+        Relation relation = getSchemaRelation(tableName);
         if (relation == null) {
             System.out.println("Table inexistante : " + tableName);
             return;
         }
+        PartitionedRelation partitioned = dbManager.GetPartitionedTable(tableName);
         
         // Lire le fichier CSV
         File csvFile = new File(fileName);
@@ -367,7 +552,23 @@ public class SGBD {
             return;
         }
 
+        if (direct && partitioned == null) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(csvFile))) {
+                List<ColumnInfo> columns = relation.getColumns();
+                Iterator<Record> records = reader.lines()
+                        .filter(l -> !l.trim().isEmpty())
+                        .map(l -> new Record(parseValues(l, columns)))
+                        .iterator();
+                relation.LoadRecordsDirect(records);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return;
+        }
+        
+        // Insertion par lots : chaque page est remplie sous un seul épinglage
         try (BufferedReader reader = new BufferedReader(new FileReader(csvFile))) {
+            List<Record> batch = new ArrayList<>(APPEND_BATCH_SIZE);
             String line;
             while ((line = reader.readLine()) != null) {
                 if (line.trim().isEmpty()) {
@@ -375,12 +576,31 @@ public class SGBD {
                 }
                 
                 List<Object> values = parseValues(line, relation.getColumns());
-                Record record = new Record(values);
-                relation.InsertRecord(record);
+                batch.add(new Record(values));
+                
+                if (batch.size() == APPEND_BATCH_SIZE) {
+                    insertBatch(relation, partitioned, batch);
+                    batch.clear();
+                }
+            }
+            
+            if (!batch.isEmpty()) {
+                insertBatch(relation, partitioned, batch);
             }
         }
     }
 
+    /**
+     * Insere un lot de records dans la relation, ou dans les partitions
+     */
+    private void insertBatch(Relation relation, PartitionedRelation partitioned, List<Record> batch) throws IOException {
+        if (partitioned != null) {
+            partitioned.InsertRecords(batch);
+        } else {
+            relation.InsertRecords(batch);
+        }
+    }
+
     /**
      * Traite la commande SELECT
      * Format : SELECT cols FROM nomRelation alias [WHERE conditions]
@@ -400,7 +620,7 @@ public class SGBD {
         String alias = fromParts[1];
         
         // Recuperer la relation
-        Relation relation = dbManager.GetTable(tableName);
+        Relation relation = getSchemaRelation(tableName);
         if (relation == null) {
             System.out.println("Table inexistante : " + tableName);
             return;
@@ -422,20 +642,30 @@ public class SGBD {
             conditions = parseConditions(wherePart, alias, relation);
         }
         
-        // Creer la chaine d'iterateurs
-        IRecordIterator scanner = new RelationScanner(relation);
-        IRecordIterator selector = new SelectOperator(scanner, conditions, relation.getColumns());
-        IRecordIterator projector = new ProjectOperator(selector, projectIndices);
-        
-        try {
-            // Afficher les resultats
-            RecordPrinter printer = new RecordPrinter(projector);
-            int count = printer.printAll();
+        // Table partitionnee : seules les partitions non eliminees sont lues
+        int count = 0;
+        for (Relation target : getTargetRelations(tableName, conditions)) {
+            // Creer la chaine d'iterateurs
+            // Avec un WHERE, le scanner filtre lui-meme en ne lisant d'abord que
+            // les colonnes des conditions (contigues en LAYOUT COLUMNAR)
+            IRecordIterator selector;
+            if (conditions.isEmpty()) {
+                selector = new RelationScanner(target);
+            } else {
+                selector = new RelationScannerWithSelect(target, conditions);
+            }
+            IRecordIterator projector = new ProjectOperator(selector, projectIndices);
             
-            System.out.println("Total selected records=" + count);
-        } finally {
-            projector.Close();
+            try {
+                // Afficher les resultats
+                RecordPrinter printer = new RecordPrinter(projector);
+                count += printer.printAll();
+            } finally {
+                projector.Close();
+            }
         }
+        
+        System.out.println("Total selected records=" + count);
     }
 
     /**
@@ -471,7 +701,10 @@ public class SGBD {
      * Retourne l'indice d'une colonne par son nom
      */
     private int getColumnIndex(String colName, Relation relation) {
-        List<ColumnInfo> columns = relation.getColumns();
+        return indexOfColumn(colName, relation.getColumns());
+    }
+    
+    private static int indexOfColumn(String colName, List<ColumnInfo> columns) {
         for (int i = 0; i < columns.size(); i++) {
             if (columns.get(i).getName().equals(colName)) {
                 return i;
@@ -633,7 +866,7 @@ public class SGBD {
         String alias = parts[1];
         
         // Recuperer la relation
-        Relation relation = dbManager.GetTable(tableName);
+        Relation relation = getSchemaRelation(tableName);
         if (relation == null) {
             System.out.println("Table inexistante : " + tableName);
             return;
@@ -648,56 +881,114 @@ public class SGBD {
         }
         
         // Parcourir et supprimer les records qui matchent
+        // (table partitionnee : seulement dans les partitions non eliminees)
         int deleteCount = 0;
-        List<RecordId> toDelete = new ArrayList<>();
+        List<Relation> targets = getTargetRelations(tableName, conditions);
+        for (Relation target : targets) {
+            // D'abord, collecter les RecordIds a supprimer
+            List<RecordId> toDelete = collectMatchingRecords(target, conditions);
+            
+            // Supprimer les records
+            for (RecordId rid : toDelete) {
+                target.DeleteRecord(rid);
+                deleteCount++;
+            }
+        }
         
-        // D'abord, collecter les RecordIds a supprimer
+        System.out.println("Total deleted records=" + deleteCount);
+        
+        // VACUUM automatique si beaucoup de pages sont devenues peu remplies
+        for (Relation target : targets) {
+            if (target.needsVacuum(config.getVacuumThreshold())) {
+                System.out.println("Total reclaimed pages=" + target.Vacuum());
+            }
+        }
+    }
+
+    /**
+     * Collecte les RecordIds des records de la relation qui satisfont les conditions
+     */
+    private List<RecordId> collectMatchingRecords(Relation relation, List<Condition> conditions) throws IOException {
+        List<RecordId> matching = new ArrayList<>();
         List<PageId> dataPages = relation.getDataPages();
-        int slotCount = relation.getSlotCount();
-        int bytemapOffset = 16 + (slotCount * relation.getRecordSize());
+        RecordView view = new RecordView(relation);
         
         for (PageId pageId : dataPages) {
-            byte[] buffer = bufferManager.GetPage(pageId);
-            try {
-	            java.nio.ByteBuffer bb = java.nio.ByteBuffer.wrap(buffer);
-	            
-	            for (int slotIdx = 0; slotIdx < slotCount; slotIdx++) {
-	                if (bb.get(bytemapOffset + slotIdx) == 1) {
-	                    Record record = new Record();
-	                    int slotOffset = 16 + (slotIdx * relation.getRecordSize());
-	                    relation.readFromBuffer(record, bb, slotOffset);
-	                    
-	                    // Verifier les conditions
-	                    boolean match = true;
-	                    for (Condition cond : conditions) {
-	                        if (!cond.evaluate(record, relation.getColumns())) {
-	                            match = false;
-	                            break;
-	                        }
-	                    }
-	                    
-	                    if (match) {
-	                        toDelete.add(new RecordId(pageId, slotIdx));
-	                    }
-	                }
-	            }
-            } finally {
-                bufferManager.FreePage(pageId, false);
+            // Zone map : aucun record de la page ne peut correspondre
+            if (!Condition.mayMatchAll(conditions, relation, pageId)) {
+                continue;
+            }
+            try (PageHandle page = bufferManager.GetPageHandle(pageId)) {
+                // Parcourir uniquement les slots occupes (bitmap)
+                for (int slotIdx = relation.nextOccupiedSlot(page, 0); slotIdx >= 0;
+                        slotIdx = relation.nextOccupiedSlot(page, slotIdx + 1)) {
+                    // Verifier les conditions (seules leurs colonnes sont decodees)
+                    view.attach(page, slotIdx);
+                    boolean match = true;
+                    for (Condition cond : conditions) {
+                        if (!cond.evaluate(view, relation.getColumns())) {
+                            match = false;
+                            break;
+                        }
+                    }
+                    
+                    if (match) {
+                        matching.add(new RecordId(pageId, slotIdx));
+                    }
+                }
             }
         }
+        return matching;
+    }
+
+    /**
+     * Traite la commande VACUUM TABLE
+     * Format : VACUUM TABLE nomRelation
+     * Regroupe les records des pages peu remplies et libere les pages videes
+     */
+    private void ProcessVacuumCommand(String command) throws IOException {
+        // Enlever "VACUUM TABLE "
+        String tableName = command.substring(13).trim();
         
-        // Supprimer les records
-        for (RecordId rid : toDelete) {
-            relation.DeleteRecord(rid);
-            deleteCount++;
+        Relation relation = getSchemaRelation(tableName);
+        if (relation == null) {
+            System.out.println("Table inexistante : " + tableName);
+            return;
         }
         
-        System.out.println("Total deleted records=" + deleteCount);
+        // Table partitionnee : chaque partition est compactee
+        int reclaimed = 0;
+        for (Relation target : getTargetRelations(tableName, null)) {
+            reclaimed += target.Vacuum();
+        }
+        System.out.println("Total reclaimed pages=" + reclaimed);
+    }
+
+    /**
+     * Traite la commande ANALYZE TABLE
+     * Format : ANALYZE TABLE nomRelation
+     * Calcule les statistiques de la table (affichees par DESCRIBE TABLE)
+     */
+    private void ProcessAnalyzeCommand(String command) throws IOException {
+        // Enlever "ANALYZE TABLE "
+        String tableName = command.substring(14).trim();
+        
+        TableStatistics stats = dbManager.AnalyzeTable(tableName);
+        if (stats == null) {
+            System.out.println("Table inexistante : " + tableName);
+            return;
+        }
+        
+        System.out.println("Total analyzed records=" + stats.getRowCount());
     }
 
     /**
      * Traite la commande UPDATE
      * Format : UPDATE nomRelation alias SET alias.col1=val1,... [WHERE conditions]
+     * Les records sont collectes, puis les nouvelles valeurs verifiees par
+     * Relation.prepareUpdate (partitions deplacees comprises) avant toute
+     * ecriture : une valeur refusee laisse la table intacte. Un manque de
+     * pages sur le disque pendant les ecritures n'est pas annule.
      */
     private void ProcessUpdateCommand(String command) throws IOException {
         // Enlever "UPDATE "
@@ -714,7 +1005,7 @@ public class SGBD {
         String alias = beforeParts[1];
         
         // Recuperer la relation
-        Relation relation = dbManager.GetTable(tableName);
+        Relation relation = getSchemaRelation(tableName);
         if (relation == null) {
             System.out.println("Table inexistante : " + tableName);
             return;
@@ -753,49 +1044,82 @@ public class SGBD {
             newValues.add(value);
         }
         
-        // Parcourir et modifier les records qui matchent
-        int updateCount = 0;
-        List<PageId> dataPages = relation.getDataPages();
-        int slotCount = relation.getSlotCount();
-        int bytemapOffset = 16 + (slotCount * relation.getRecordSize());
+        int[] colIndices = new int[updates.size()];
+        for (int i = 0; i < colIndices.length; i++) {
+            colIndices[i] = updates.get(i)[0];
+        }
+        Object[] values = newValues.toArray();
+        
+        // Table partitionnee dont la colonne de partitionnement est modifiee :
+        // les records hors de leur nouvelle partition y sont deplaces
+        PartitionedRelation partitioned = dbManager.GetPartitionedTable(tableName);
+        Relation destination = null;
+        if (partitioned != null) {
+            for (int k = 0; k < colIndices.length; k++) {
+                if (colIndices[k] == partitioned.getColumnIndex()) {
+                    int index = partitioned.partitionFor(values[k]);
+                    if (index < 0) {
+                        System.out.println("Aucune partition pour la valeur : " + values[k]);
+                        return;
+                    }
+                    destination = partitioned.getPartition(index);
+                }
+            }
+        }
         
-        for (PageId pageId : dataPages) {
-            byte[] buffer = bufferManager.GetPage(pageId);
-            boolean pageModified = false;
-            try {
-	            java.nio.ByteBuffer bb = java.nio.ByteBuffer.wrap(buffer);
-	            
-	            for (int slotIdx = 0; slotIdx < slotCount; slotIdx++) {
-	                if (bb.get(bytemapOffset + slotIdx) == 1) {
-	                    Record record = new Record();
-	                    int slotOffset = 16 + (slotIdx * relation.getRecordSize());
-	                    relation.readFromBuffer(record, bb, slotOffset);
-	                    
-	                    // Verifier les conditions
-	                    boolean match = true;
-	                    for (Condition cond : conditions) {
-	                        if (!cond.evaluate(record, relation.getColumns())) {
-	                            match = false;
-	                            break;
-	                        }
-	                    }
-	                    
-	                    if (match) {
-	                        // Appliquer les modifications
-	                        for (int i = 0; i < updates.size(); i++) {
-	                            int colIdx = updates.get(i)[0];
-	                            record.setValue(colIdx, newValues.get(i));
-	                        }
-	                        
-	                        // Reecrire le record
-	                        relation.writeRecordToBuffer(record, bb, slotOffset);
-	                        pageModified = true;
-	                        updateCount++;
-	                    }
-	                }
-	            }
-            } finally {
-	            bufferManager.FreePage(pageId, pageModified);
+        // Collecter d'abord les records a modifier de chaque partition, sans rien ecrire
+        // (les records inseres ou deplaces pendant l'UPDATE ne sont pas revus)
+        List<Relation> targets = getTargetRelations(tableName, conditions);
+        List<List<RecordId>> matches = new ArrayList<>();
+        for (Relation target : targets) {
+            matches.add(collectMatchingRecords(target, conditions));
+        }
+        
+        // Verifier les nouvelles valeurs dans chaque relation qui les recoit
+        // (la partition destination recoit toutes les valeurs) : une valeur
+        // refusee fait echouer l'UPDATE avant qu'aucun record ne soit modifie
+        if (destination != null) {
+            destination.prepareUpdate(colIndices, values);
+        } else {
+            for (Relation target : targets) {
+                target.prepareUpdate(colIndices, values);
+            }
+        }
+        
+        // Records qui changent de partition : inseres dans leur nouvelle partition,
+        // puis supprimes de l'ancienne seulement une fois l'insertion reussie
+        List<Record> moved = new ArrayList<>();
+        for (int i = 0; i < targets.size(); i++) {
+            Relation target = targets.get(i);
+            if (destination != null && target != destination) {
+                for (RecordId rid : matches.get(i)) {
+                    Record record = new Record();
+                    try (PageHandle page = bufferManager.GetPageHandle(rid.getPageId())) {
+                        target.readRecordFromSlot(page, rid.getSlotIdx(), record);
+                    }
+                    for (int k = 0; k < colIndices.length; k++) {
+                        record.setValue(colIndices[k], values[k]);
+                    }
+                    moved.add(record);
+                }
+            }
+        }
+        if (!moved.isEmpty()) {
+            destination.InsertRecords(moved);
+        }
+        
+        int updateCount = 0;
+        for (int i = 0; i < targets.size(); i++) {
+            Relation target = targets.get(i);
+            for (RecordId rid : matches.get(i)) {
+                if (destination != null && target != destination) {
+                    target.DeleteRecord(rid);
+                } else {
+                    // Reecrire seulement les colonnes modifiees (un record deplace
+                    // hors de sa page, layout SLOTTED, garde son RecordId)
+                    target.updateColumns(rid, colIndices, values);
+                }
+                updateCount++;
             }
         }
         
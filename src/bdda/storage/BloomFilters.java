@@ -0,0 +1,240 @@
+package bdda.storage;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import bdda.core.PageId;
+
+/**
+ * Filtres de Bloom par page des colonnes déclarées BLOOM : une condition
+ * "colonne = constante" saute les pages dont le filtre ne contient pas la
+ * constante (voir Condition.mayMatch), sans les épingler. Utile là où la
+ * zone map ne l'est pas (chaînes, valeurs dispersées dans toutes les pages).
+ *
+ * Les filtres sont rangés dans le résumé de la page dans la Free Space Map,
+ * après la zone map (offset summaryOffset) :
+ *
+ * Offset 0-3 : valeurs retirées depuis la construction des filtres
+ *              (records supprimés, colonnes BLOOM modifiées par UPDATE)
+ * Offset 4.. : un filtre de bitsPerFilter bits par colonne BLOOM
+ *
+ * Un filtre ne peut pas retirer une valeur : après des suppressions il reste
+ * correct mais donne plus de faux positifs. Il est reconstruit à partir de
+ * la page lors d'une insertion, quand au moins un quart de ses slots a été
+ * retiré (voir needsRebuild).
+ *
+ * Les valeurs sont celles relues depuis la page : INT / FLOAT convertis,
+ * chaînes tronquées à T (sans espaces de fin pour un CHAR).
+ */
+public final class BloomFilters {
+
+    private static final int REMOVED_OFFSET = 0;
+    private static final int FILTERS_OFFSET = 4;
+
+    private final RecordLayout layout;
+    private final FreeSpaceMap freeSpaceMap;
+    private final int summaryOffset;
+    private final int bitsPerFilter;
+    private final int hashCount;
+    private final int rebuildThreshold;
+    private final int[] filterOffsets;  // offset du filtre de la colonne dans le résumé, -1 sans filtre
+    private final int size;
+
+    /**
+     * @param summaryOffset début des filtres dans le résumé de chaque page
+     * @param bitsPerFilter taille d'un filtre (multiple de 64)
+     * @param hashCount nombre de fonctions de hachage
+     * @param slotCount nombre maximal de records d'une page
+     */
+    BloomFilters(List<ColumnInfo> columns, RecordLayout layout, FreeSpaceMap freeSpaceMap,
+                 int summaryOffset, int bitsPerFilter, int hashCount, int slotCount) {
+        this.layout = layout;
+        this.freeSpaceMap = freeSpaceMap;
+        this.summaryOffset = summaryOffset;
+        this.bitsPerFilter = bitsPerFilter;
+        this.hashCount = hashCount;
+        this.rebuildThreshold = Math.max(1, slotCount / 4);
+        this.filterOffsets = new int[columns.size()];
+
+        int offset = FILTERS_OFFSET;
+        for (int c = 0; c < filterOffsets.length; c++) {
+            if (columns.get(c).hasBloomFilter()) {
+                filterOffsets[c] = offset;
+                offset += bitsPerFilter / 8;
+            } else {
+                filterOffsets[c] = -1;
+            }
+        }
+        this.size = offset == FILTERS_OFFSET ? 0 : offset;
+    }
+
+    /**
+     * Taille des filtres dans le résumé d'une page (0 si aucune colonne BLOOM)
+     */
+    static int summarySize(List<ColumnInfo> columns, int bitsPerFilter) {
+        int filters = 0;
+        for (ColumnInfo col : columns) {
+            if (col.hasBloomFilter()) {
+                filters++;
+            }
+        }
+        return filters == 0 ? 0 : FILTERS_OFFSET + filters * bitsPerFilter / 8;
+    }
+
+    /**
+     * Taille d'un filtre (en bits, multiple de 64) pour expectedItems valeurs
+     * et le taux de faux positifs fpr : m = -n ln(p) / ln(2)^2
+     * @param maxBits borne supérieure (la place dans la FSM est limitée)
+     */
+    static int bitsFor(int expectedItems, double fpr, int maxBits) {
+        double bits = -Math.max(1, expectedItems) * Math.log(fpr) / (Math.log(2) * Math.log(2));
+        int rounded = (int) Math.min(Math.ceil(bits / 64) * 64, maxBits - maxBits % 64);
+        return Math.max(64, rounded);
+    }
+
+    /**
+     * Nombre optimal de fonctions de hachage : k = m / n * ln(2)
+     */
+    static int hashCountFor(int bitsPerFilter, int expectedItems) {
+        int k = (int) Math.round((double) bitsPerFilter / Math.max(1, expectedItems) * Math.log(2));
+        return Math.max(1, Math.min(k, 16));
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * Vrai si la colonne a un filtre de Bloom (suffixe BLOOM)
+     */
+    public boolean hasFilter(int colIdx) {
+        return filterOffsets[colIdx] >= 0;
+    }
+
+    /**
+     * Faux si la page ne contient certainement pas la valeur dans la colonne
+     * (vrai pour une page absente de la FSM ou une colonne sans filtre)
+     */
+    public boolean mightContain(PageId pageId, int colIdx, Object value) {
+        if (!hasFilter(colIdx) || !freeSpaceMap.contains(pageId)) {
+            return true;
+        }
+        ByteBuffer buff = freeSpaceMap.getSummaries();
+        int filter = base(pageId) + filterOffsets[colIdx];
+        long hash = layout.hash(colIdx, value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bitsPerFilter);
+            if ((buff.get(filter + (bit >>> 3)) & (1 << (bit & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Ajoute aux filtres les valeurs d'un record inséré (en mémoire)
+     * @return true si un filtre a changé
+     */
+    boolean include(PageId pageId, Record record) {
+        if (size == 0) {
+            return false;
+        }
+        boolean changed = false;
+        for (int c = 0; c < filterOffsets.length; c++) {
+            if (filterOffsets[c] >= 0) {
+                changed |= add(pageId, c, stored(c, record.getValue(c)));
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Ajoute les nouvelles valeurs de quelques colonnes (UPDATE en place) ;
+     * les anciennes valeurs comptent comme retirées
+     * @return true si le résumé a changé
+     */
+    boolean include(PageId pageId, int[] colIndices, Object[] values) {
+        if (size == 0) {
+            return false;
+        }
+        boolean changed = false;
+        for (int k = 0; k < colIndices.length; k++) {
+            if (hasFilter(colIndices[k])) {
+                changed |= add(pageId, colIndices[k], stored(colIndices[k], values[k]));
+                changed |= noteRemoved(pageId);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Compte un record supprimé de la page (ses valeurs restent dans les filtres)
+     * @return true si le résumé a changé
+     */
+    boolean noteRemoved(PageId pageId) {
+        if (size == 0) {
+            return false;
+        }
+        ByteBuffer buff = freeSpaceMap.getSummaries();
+        int pos = base(pageId) + REMOVED_OFFSET;
+        buff.putInt(pos, buff.getInt(pos) + 1);
+        return true;
+    }
+
+    /**
+     * Vrai si assez de valeurs ont été retirées pour reconstruire les filtres de la page
+     */
+    boolean needsRebuild(PageId pageId) {
+        return size > 0 && freeSpaceMap.getSummaries().getInt(base(pageId) + REMOVED_OFFSET) >= rebuildThreshold;
+    }
+
+    /**
+     * Vide les filtres de la page en mémoire (avant de les reconstruire)
+     */
+    void clear(PageId pageId) {
+        if (size == 0) {
+            return;
+        }
+        ByteBuffer buff = freeSpaceMap.getSummaries();
+        int base = base(pageId);
+        for (int i = 0; i < size; i++) {
+            buff.put(base + i, (byte) 0);
+        }
+    }
+
+    private boolean add(PageId pageId, int colIdx, Object value) {
+        ByteBuffer buff = freeSpaceMap.getSummaries();
+        int filter = base(pageId) + filterOffsets[colIdx];
+        long hash = layout.hash(colIdx, value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        boolean changed = false;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bitsPerFilter);
+            int pos = filter + (bit >>> 3);
+            byte b = buff.get(pos);
+            byte set = (byte) (b | (1 << (bit & 7)));
+            if (set != b) {
+                buff.put(pos, set);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Valeur écrite dans la page pour une valeur insérée (chaîne tronquée, CHAR sans espaces de fin)
+     */
+    private Object stored(int colIdx, Object value) {
+        if (layout.isInt(colIdx) || layout.isFloat(colIdx)) {
+            return value;
+        }
+        return layout.toDictionaryValue(colIdx, value);
+    }
+
+    private int base(PageId pageId) {
+        return freeSpaceMap.getSummaryOffset(pageId) + summaryOffset;
+    }
+}
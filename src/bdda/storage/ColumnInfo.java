@@ -3,15 +3,63 @@ package bdda.storage;
 /**
  * Représente une colonne d'une relation (nom + type)
  * Types possibles : INT, FLOAT, CHAR(T), VARCHAR(T)
+ * Suffixe DICT possible sur CHAR/VARCHAR (ex : "VARCHAR(30) DICT") :
+ * la valeur est stockée comme code entier du dictionnaire de la relation
+ * Suffixe BLOOM possible sur tout type (ex : "INT BLOOM", "VARCHAR(30) DICT BLOOM") :
+ * un filtre de Bloom par page permet de sauter les pages pour "colonne = constante"
  */
 public class ColumnInfo {
     
     private String name;
-    private String type; // "INT", "FLOAT", "CHAR(T)", "VARCHAR(T)"
+    private String type; // "INT", "FLOAT", "CHAR(T)", "VARCHAR(T)" [+ " DICT"] [+ " BLOOM"]
+    private boolean dictionary; // encodage par dictionnaire
+    private boolean bloomFilter; // filtre de Bloom par page
+    
+    // Type analysé une seule fois à la construction
+    private final boolean isInt;
+    private final boolean isFloat;
+    private final boolean isChar;
+    private final boolean isVarchar;
+    private final int maxLength;    // T de CHAR(T) / VARCHAR(T), 0 sinon
+    private final int sizeInBytes;  // -1 si le type est inconnu
     
     public ColumnInfo(String name, String type) {
         this.name = name;
         this.type = type.toUpperCase().trim();
+        
+        // Suffixes DICT / BLOOM, dans un ordre quelconque
+        String baseType = this.type;
+        while (true) {
+            if (baseType.endsWith(" DICT")) {
+                this.dictionary = true;
+                baseType = baseType.substring(0, baseType.length() - 5).trim();
+            } else if (baseType.endsWith(" BLOOM")) {
+                this.bloomFilter = true;
+                baseType = baseType.substring(0, baseType.length() - 6).trim();
+            } else {
+                break;
+            }
+        }
+        this.isInt = baseType.equals("INT");
+        this.isFloat = baseType.equals("FLOAT");
+        this.isChar = baseType.startsWith("CHAR(");
+        this.isVarchar = baseType.startsWith("VARCHAR(");
+        
+        if (dictionary && !isChar && !isVarchar) {
+            throw new IllegalArgumentException("DICT ne s'applique qu'aux colonnes CHAR/VARCHAR : " + type);
+        }
+        
+        this.maxLength = (isChar || isVarchar) ? extractSize(this.type) : 0;
+        if (dictionary || isInt || isFloat) {
+            this.sizeInBytes = 4;
+        } else if (isChar) {
+            this.sizeInBytes = maxLength;
+        } else if (isVarchar) {
+            // 4 bytes pour stocker la longueur + T bytes pour les caractères
+            this.sizeInBytes = 4 + maxLength;
+        } else {
+            this.sizeInBytes = -1;
+        }
     }
     
     public String getName() {
@@ -28,25 +76,19 @@ public class ColumnInfo {
      * - FLOAT : 4 bytes
      * - CHAR(T) : T bytes (1 byte par caractère)
      * - VARCHAR(T) : 4 bytes (longueur) + T bytes (caractères max)
+     * - CHAR/VARCHAR DICT : 4 bytes (code dans le dictionnaire)
      */
     public int getSizeInBytes() {
-        if (type.equals("INT")) {
-            return 4;
-        } else if (type.equals("FLOAT")) {
-            return 4;
-        } else if (type.startsWith("CHAR(")) {
-            return extractSize(type);
-        } else if (type.startsWith("VARCHAR(")) {
-            // 4 bytes pour stocker la longueur + T bytes pour les caractères
-            return 4 + extractSize(type);
+        if (sizeInBytes < 0) {
+            throw new IllegalArgumentException("Type inconnu : " + type);
         }
-        throw new IllegalArgumentException("Type inconnu : " + type);
+        return sizeInBytes;
     }
     
     /**
      * Extrait la taille T de "CHAR(T)" ou "VARCHAR(T)"
      */
-    private int extractSize(String type) {
+    private static int extractSize(String type) {
         int start = type.indexOf('(') + 1;
         int end = type.indexOf(')');
         return Integer.parseInt(type.substring(start, end));
@@ -56,38 +98,49 @@ public class ColumnInfo {
      * Retourne la taille max pour CHAR(T) ou VARCHAR(T)
      */
     public int getMaxLength() {
-        if (type.startsWith("CHAR(") || type.startsWith("VARCHAR(")) {
-            return extractSize(type);
-        }
-        return 0;
+        return maxLength;
     }
     
     /**
      * Vérifie si c'est un type INT
      */
     public boolean isInt() {
-        return type.equals("INT");
+        return isInt;
     }
     
     /**
      * Vérifie si c'est un type FLOAT
      */
     public boolean isFloat() {
-        return type.equals("FLOAT");
+        return isFloat;
     }
     
     /**
      * Vérifie si c'est un type CHAR(T)
      */
     public boolean isChar() {
-        return type.startsWith("CHAR(");
+        return isChar;
     }
     
     /**
      * Vérifie si c'est un type VARCHAR(T)
      */
     public boolean isVarchar() {
-        return type.startsWith("VARCHAR(");
+        return isVarchar;
+    }
+    
+    /**
+     * Vérifie si la colonne est encodée par dictionnaire (suffixe DICT)
+     */
+    public boolean isDictionaryEncoded() {
+        return dictionary;
+    }
+    
+    /**
+     * Vérifie si la colonne a un filtre de Bloom par page (suffixe BLOOM)
+     */
+    public boolean hasBloomFilter() {
+        return bloomFilter;
     }
     
     @Override
@@ -0,0 +1,75 @@
+package bdda.storage;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Format COLUMNAR (PAX) : même entête, bitmap et nombre de slots que le
+ * format ROW, mais la zone des slots est découpée en une "mini-page" par
+ * colonne. La valeur de la colonne c du slot i est à
+ * columnOffsets[c] + i * taille(c) : les valeurs d'une colonne sont contiguës,
+ * un filtre sur 2 colonnes parmi 20 ne lit que ces 2 tableaux.
+ */
+class ColumnarPageFormat extends FixedSlotPageFormat {
+
+    private final List<ColumnInfo> columns;
+    private final int[] columnOffsets;
+    private final int[] columnSizes;
+
+    ColumnarPageFormat(Relation relation, int pageSize) {
+        super(relation, pageSize);
+        this.columns = relation.getColumns();
+        this.columnOffsets = new int[columns.size()];
+        this.columnSizes = new int[columns.size()];
+
+        int offset = slotsOffset;
+        for (int c = 0; c < columns.size(); c++) {
+            columnOffsets[c] = offset;
+            columnSizes[c] = relation.getRecordLayout().getSize(c);
+            offset += slotCount * columnSizes[c];
+        }
+    }
+
+    @Override
+    int getValueOffset(int slotIdx, int colIdx) {
+        return columnOffsets[colIdx] + slotIdx * columnSizes[colIdx];
+    }
+
+    @Override
+    void read(ByteBuffer page, int slotIdx, Record record) {
+        record.clear();
+        for (int c = 0; c < columns.size(); c++) {
+            relation.readColumn(page, getValueOffset(slotIdx, c), c, record);
+        }
+    }
+
+    @Override
+    void writeSlot(ByteBuffer page, int slotIdx, Record record) {
+        if (record.size() != columns.size()) {
+            throw new IllegalArgumentException(
+                "Le record a " + record.size() + " valeurs mais la relation a " + columns.size() + " colonnes");
+        }
+        for (int c = 0; c < columns.size(); c++) {
+            relation.writeColumn(page, getValueOffset(slotIdx, c), c, record);
+        }
+    }
+
+    @Override
+    void readIntColumn(ByteBuffer page, int colIdx, int[] dest) {
+        // Mini-page contiguë : copie d'un bloc, par une vue de la mini-page
+        // (la position du ByteBuffer, partagé par les lecteurs de la page, n'est pas modifiée)
+        columnView(page, colIdx).asIntBuffer().get(dest, 0, slotCount);
+    }
+
+    @Override
+    void readFloatColumn(ByteBuffer page, int colIdx, float[] dest) {
+        columnView(page, colIdx).asFloatBuffer().get(dest, 0, slotCount);
+    }
+
+    /**
+     * Vue sur la mini-page d'une colonne de 4 bytes par valeur, dans l'ordre des bytes de la page
+     */
+    private ByteBuffer columnView(ByteBuffer page, int colIdx) {
+        return page.slice(columnOffsets[colIdx], slotCount * 4).order(page.order());
+    }
+}
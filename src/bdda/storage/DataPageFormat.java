@@ -0,0 +1,174 @@
+package bdda.storage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Format du contenu d'une page de données (après prevPage / nextPage).
+ *
+ * Relation gère l'en-tête des pages (offsets 0-15) et la Free Space Map
+ * qui les répertorie ; un DataPageFormat gère le rangement des records dans le reste de la page.
+ * Tous les accès sont absolus sur le ByteBuffer de la page (épinglée ou privée).
+ *
+ * Invariant utilisé par Relation : une page non pleine (isFull() == false)
+ * accepte toujours l'insertion d'un record quelconque (y compris un record
+ * déplacé depuis une autre page, voir insertMoved).
+ */
+abstract class DataPageFormat {
+
+    // Début de la zone gérée par le format (après prevPage + nextPage)
+    static final int BODY_OFFSET = 16;
+
+    protected final Relation relation;
+    protected final int pageSize;
+
+    protected DataPageFormat(Relation relation, int pageSize) {
+        this.relation = relation;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Crée le format correspondant au layout de la relation
+     */
+    static DataPageFormat create(StorageLayout layout, Relation relation, int pageSize) {
+        switch (layout) {
+            case SLOTTED:
+                return new SlottedPageFormat(relation, pageSize);
+            case COLUMNAR:
+                return new ColumnarPageFormat(relation, pageSize);
+            case ROW:
+            default:
+                return new FixedSlotPageFormat(relation, pageSize);
+        }
+    }
+
+    /**
+     * Nombre maximal de slots d'une page (borne des indices de slot)
+     */
+    abstract int getSlotCount();
+
+    /**
+     * Initialise une page vide
+     */
+    abstract void initPage(ByteBuffer page);
+
+    /**
+     * Nombre de records présents dans la page
+     */
+    abstract int getOccupiedCount(ByteBuffer page);
+
+    /**
+     * Vrai si la page ne peut plus garantir l'insertion d'un record quelconque
+     */
+    abstract boolean isFull(ByteBuffer page);
+
+    boolean isEmpty(ByteBuffer page) {
+        return getOccupiedCount(page) == 0;
+    }
+
+    /**
+     * Range un record dans la page
+     * @return l'indice du slot utilisé, ou -1 si la place manque
+     */
+    abstract int insert(ByteBuffer page, Record record);
+
+    /**
+     * Libère un slot
+     */
+    abstract void delete(ByteBuffer page, int slotIdx);
+
+    abstract boolean isOccupied(ByteBuffer page, int slotIdx);
+
+    /**
+     * Retourne le premier slot occupé d'indice >= fromSlot, ou -1
+     */
+    abstract int nextOccupied(ByteBuffer page, int fromSlot);
+
+    /**
+     * Comme nextOccupied, mais rend aussi les records déplacés depuis une
+     * autre page (VACUUM déplace toutes les entrées d'une page)
+     */
+    int nextEntry(ByteBuffer page, int fromSlot) {
+        return nextOccupied(page, fromSlot);
+    }
+
+    abstract void read(ByteBuffer page, int slotIdx, Record record);
+
+    /**
+     * Réécrit le record d'un slot occupé (le RecordId ne change pas)
+     * @return false si le nouveau record ne tient plus dans la page (rien n'est écrit)
+     */
+    abstract boolean update(ByteBuffer page, int slotIdx, Record record);
+
+    /**
+     * Remplace les valeurs de quelques colonnes d'un slot occupé
+     * (par défaut : décode le record, le modifie puis le réécrit avec update)
+     * @return false si le nouveau record ne tient plus dans la page (rien n'est écrit)
+     */
+    boolean updateColumns(ByteBuffer page, int slotIdx, int[] colIndices, Object[] values) {
+        Record record = relation.newRecord();
+        read(page, slotIdx, record);
+        for (int k = 0; k < colIndices.length; k++) {
+            record.setValue(colIndices[k], values[k]);
+        }
+        return update(page, slotIdx, record);
+    }
+
+    /**
+     * Adresse du record vers lequel renvoie un slot, ou null si le record est
+     * dans le slot (seul un ForwardingPageFormat déplace des records)
+     */
+    RecordId getForward(ByteBuffer page, int slotIdx) {
+        return null;
+    }
+
+    /**
+     * Lit la valeur d'une seule colonne d'un slot occupé
+     * (par défaut : décode le record entier)
+     */
+    Object readColumnValue(ByteBuffer page, int slotIdx, int colIdx) {
+        Record record = new Record();
+        read(page, slotIdx, record);
+        return record.getValue(colIdx);
+    }
+
+    /**
+     * Valeur d'une colonne INT d'un slot occupé (par défaut : via readColumnValue)
+     */
+    int readIntValue(ByteBuffer page, int slotIdx, int colIdx) {
+        return (Integer) readColumnValue(page, slotIdx, colIdx);
+    }
+
+    /**
+     * Valeur d'une colonne FLOAT d'un slot occupé (par défaut : via readColumnValue)
+     */
+    float readFloatValue(ByteBuffer page, int slotIdx, int colIdx) {
+        return (Float) readColumnValue(page, slotIdx, colIdx);
+    }
+
+    /**
+     * Code stocké pour une colonne DICT d'un slot occupé
+     * (par défaut : décode la chaîne puis la recherche dans le dictionnaire)
+     */
+    int readColumnCode(ByteBuffer page, int slotIdx, int colIdx) {
+        return relation.lookupDictionaryCode((String) readColumnValue(page, slotIdx, colIdx));
+    }
+
+    /**
+     * Copie les valeurs d'une colonne INT de tous les slots occupés :
+     * dest[slotIdx] (les cases des slots libres ne sont pas définies)
+     */
+    void readIntColumn(ByteBuffer page, int colIdx, int[] dest) {
+        for (int i = nextOccupied(page, 0); i >= 0; i = nextOccupied(page, i + 1)) {
+            dest[i] = (Integer) readColumnValue(page, i, colIdx);
+        }
+    }
+
+    /**
+     * Copie les valeurs d'une colonne FLOAT de tous les slots occupés (voir readIntColumn)
+     */
+    void readFloatColumn(ByteBuffer page, int colIdx, float[] dest) {
+        for (int i = nextOccupied(page, 0); i >= 0; i = nextOccupied(page, i + 1)) {
+            dest[i] = (Float) readColumnValue(page, i, colIdx);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package bdda.storage;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Format ROW : slots de taille fixe (getRecordSize()) et bitmap d'occupation.
+ *
+ * Offset 16-19 : nombre de slots occupés
+ * Offset 20-23 : réservé
+ * Offset 24... : Bitmap des slots (1 bit par slot, mots de 64 bits)
+ * Puis         : Slots (records)
+ */
+class FixedSlotPageFormat extends DataPageFormat {
+
+    static final int HEADER_SIZE = 24;  // prevPage + nextPage + nbSlotsOccupés + réservé
+    static final int OCCUPIED_COUNT_OFFSET = 16;
+
+    protected final int recordSize;
+    protected final int slotCount;
+    protected final int bitmapWords;
+    protected final int slotsOffset;
+    private final RecordLayout recordLayout;  // Offset de chaque colonne dans un record
+
+    FixedSlotPageFormat(Relation relation, int pageSize) {
+        super(relation, pageSize);
+        this.recordSize = relation.getRecordSize();
+        this.slotCount = calculateSlotCount();
+        this.bitmapWords = bitmapWordsFor(slotCount);
+        this.slotsOffset = HEADER_SIZE + 8 * bitmapWords;
+        this.recordLayout = relation.getRecordLayout();
+    }
+
+    private int calculateSlotCount() {
+        // Espace disponible = pageSize - header
+        int availableSpace = pageSize - HEADER_SIZE;
+
+        // Chaque slot = 1 record + 1 bit dans la bitmap (arrondie à des mots de 64 bits)
+        int count = (int) ((availableSpace * 8L) / (recordSize * 8L + 1));
+        while (count > 0 && 8 * bitmapWordsFor(count) + count * recordSize > availableSpace) {
+            count--;
+        }
+        return count;
+    }
+
+    /**
+     * Nombre de mots de 64 bits nécessaires pour une bitmap de count slots
+     */
+    static int bitmapWordsFor(int count) {
+        return (count + 63) >>> 6;
+    }
+
+    @Override
+    int getSlotCount() {
+        return slotCount;
+    }
+
+    /**
+     * Calcule l'offset d'un slot dans une page de données
+     */
+    int getSlotOffset(int slotIdx) {
+        return slotsOffset + (slotIdx * recordSize);
+    }
+
+    /**
+     * Calcule l'offset de la valeur d'une colonne d'un slot
+     */
+    int getValueOffset(int slotIdx, int colIdx) {
+        return getSlotOffset(slotIdx) + recordLayout.getOffset(colIdx);
+    }
+
+    /**
+     * Calcule l'offset du mot de la bitmap contenant un slot
+     */
+    private static int getBitmapWordOffset(int slotIdx) {
+        return HEADER_SIZE + ((slotIdx >>> 6) << 3);
+    }
+
+    @Override
+    void initPage(ByteBuffer page) {
+        // Compteur et bitmap à 0 (tous les slots libres)
+        Arrays.fill(page.array(), page.arrayOffset() + OCCUPIED_COUNT_OFFSET,
+                page.arrayOffset() + slotsOffset, (byte) 0);
+    }
+
+    @Override
+    int getOccupiedCount(ByteBuffer page) {
+        return page.getInt(OCCUPIED_COUNT_OFFSET);
+    }
+
+    @Override
+    boolean isFull(ByteBuffer page) {
+        return getOccupiedCount(page) == slotCount;
+    }
+
+    @Override
+    int insert(ByteBuffer page, Record record) {
+        if (isFull(page)) {
+            return -1;
+        }
+        int slotIdx = nextFree(page, 0);
+        if (slotIdx < 0) {
+            return -1;
+        }
+
+        writeSlot(page, slotIdx, record);
+        markOccupied(page, slotIdx);
+        return slotIdx;
+    }
+
+    @Override
+    void delete(ByteBuffer page, int slotIdx) {
+        int offset = getBitmapWordOffset(slotIdx);
+        long word = page.getLong(offset);
+        long bit = 1L << (slotIdx & 63);
+        if ((word & bit) != 0) {
+            page.putLong(offset, word & ~bit);
+            page.putInt(OCCUPIED_COUNT_OFFSET, page.getInt(OCCUPIED_COUNT_OFFSET) - 1);
+        }
+    }
+
+    /**
+     * Marque un slot comme occupé (bitmap + compteur)
+     */
+    void markOccupied(ByteBuffer page, int slotIdx) {
+        int offset = getBitmapWordOffset(slotIdx);
+        long word = page.getLong(offset);
+        long bit = 1L << (slotIdx & 63);
+        if ((word & bit) == 0) {
+            page.putLong(offset, word | bit);
+            page.putInt(OCCUPIED_COUNT_OFFSET, page.getInt(OCCUPIED_COUNT_OFFSET) + 1);
+        }
+    }
+
+    @Override
+    boolean isOccupied(ByteBuffer page, int slotIdx) {
+        return (page.getLong(getBitmapWordOffset(slotIdx)) & (1L << (slotIdx & 63))) != 0;
+    }
+
+    @Override
+    int nextOccupied(ByteBuffer page, int fromSlot) {
+        return nextBit(page, fromSlot, false);
+    }
+
+    /**
+     * Trouve le premier slot libre d'indice >= fromSlot, ou -1
+     */
+    int nextFree(ByteBuffer page, int fromSlot) {
+        return nextBit(page, fromSlot, true);
+    }
+
+    /**
+     * Parcourt la bitmap mot par mot à partir de fromSlot
+     * @param free true pour chercher un bit à 0 (slot libre), false pour un bit à 1
+     */
+    private int nextBit(ByteBuffer page, int fromSlot, boolean free) {
+        if (fromSlot >= slotCount) {
+            return -1;
+        }
+
+        int w = fromSlot >>> 6;
+        long word = page.getLong(HEADER_SIZE + (w << 3));
+        // Ignorer les slots avant fromSlot dans le premier mot
+        word = (free ? ~word : word) & (-1L << (fromSlot & 63));
+
+        while (true) {
+            if (word != 0) {
+                int slotIdx = (w << 6) + Long.numberOfTrailingZeros(word);
+                return slotIdx < slotCount ? slotIdx : -1;
+            }
+            w++;
+            if (w >= bitmapWords) {
+                return -1;
+            }
+            word = page.getLong(HEADER_SIZE + (w << 3));
+            if (free) {
+                word = ~word;
+            }
+        }
+    }
+
+    @Override
+    void read(ByteBuffer page, int slotIdx, Record record) {
+        relation.readFromBuffer(record, page, getSlotOffset(slotIdx));
+    }
+
+    @Override
+    boolean update(ByteBuffer page, int slotIdx, Record record) {
+        writeSlot(page, slotIdx, record);
+        return true;
+    }
+
+    /**
+     * Écrit les valeurs d'un record dans son slot
+     */
+    void writeSlot(ByteBuffer page, int slotIdx, Record record) {
+        relation.writeRecordToBuffer(record, page, getSlotOffset(slotIdx));
+    }
+
+    @Override
+    boolean updateColumns(ByteBuffer page, int slotIdx, int[] colIndices, Object[] values) {
+        // Chaque valeur a une position fixe : seuls ses bytes sont réécrits
+        for (int k = 0; k < colIndices.length; k++) {
+            relation.writeValue(page, getValueOffset(slotIdx, colIndices[k]), colIndices[k], values[k]);
+        }
+        return true;
+    }
+
+    @Override
+    Object readColumnValue(ByteBuffer page, int slotIdx, int colIdx) {
+        return relation.readValue(page, getValueOffset(slotIdx, colIdx), colIdx);
+    }
+
+    @Override
+    int readIntValue(ByteBuffer page, int slotIdx, int colIdx) {
+        return page.getInt(getValueOffset(slotIdx, colIdx));
+    }
+
+    @Override
+    float readFloatValue(ByteBuffer page, int slotIdx, int colIdx) {
+        return page.getFloat(getValueOffset(slotIdx, colIdx));
+    }
+
+    @Override
+    int readColumnCode(ByteBuffer page, int slotIdx, int colIdx) {
+        return page.getInt(getValueOffset(slotIdx, colIdx));
+    }
+
+    @Override
+    void readIntColumn(ByteBuffer page, int colIdx, int[] dest) {
+        for (int i = nextOccupied(page, 0); i >= 0; i = nextOccupied(page, i + 1)) {
+            dest[i] = page.getInt(getValueOffset(i, colIdx));
+        }
+    }
+
+    @Override
+    void readFloatColumn(ByteBuffer page, int colIdx, float[] dest) {
+        for (int i = nextOccupied(page, 0); i >= 0; i = nextOccupied(page, i + 1)) {
+            dest[i] = page.getFloat(getValueOffset(i, colIdx));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package bdda.storage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Format de page qui peut déplacer un record hors de sa page (layout SLOTTED) :
+ * le slot d'origine devient un renvoi vers le record déplacé, qui garde
+ * l'adresse de ce renvoi. Relation s'en sert quand update ne trouve plus
+ * la place (voir Relation.relocate) et pendant VACUUM (voir Relation.moveEntry).
+ * Lire un renvoi (DataPageFormat.getForward) ne dépend pas de cette interface.
+ */
+interface ForwardingPageFormat {
+
+    /**
+     * Slot du renvoi d'un record déplacé dans cette page, ou null si le slot n'en contient pas
+     */
+    RecordId getOrigin(ByteBuffer page, int slotIdx);
+
+    /**
+     * Range un record déplacé depuis le slot origin d'une autre page ;
+     * il n'est lu qu'à travers le renvoi de ce slot (nextOccupied l'ignore)
+     * @return l'indice du slot utilisé, ou -1 si la place manque
+     */
+    int insertMoved(ByteBuffer page, Record record, RecordId origin);
+
+    /**
+     * Range un renvoi vers target dans un slot libre
+     * @return l'indice du slot utilisé, ou -1 si la place manque
+     */
+    int insertForward(ByteBuffer page, RecordId target);
+
+    /**
+     * Remplace le contenu d'un slot occupé (record ou renvoi) par un renvoi vers target
+     */
+    void setForward(ByteBuffer page, int slotIdx, RecordId target);
+
+    /**
+     * Change le slot du renvoi d'un record déplacé (le renvoi a été déplacé)
+     */
+    void setOrigin(ByteBuffer page, int slotIdx, RecordId origin);
+}
@@ -0,0 +1,372 @@
+package bdda.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import bdda.core.BufferManager;
+import bdda.core.DiskManager;
+import bdda.core.PageHandle;
+import bdda.core.PageId;
+
+/**
+ * Free Space Map d'une relation : répertoire de ses pages de données
+ * (un tableau de PageId) et, pour chaque entrée, un bit "page non pleine".
+ * Il remplace les listes freePages / fullPages chaînées dans les pages.
+ *
+ * Il est gardé entièrement en mémoire et persisté dans sa propre liste de
+ * pages, chaque modification n'écrivant que la page FSM concernée :
+ *
+ * Offset 0-7   : page FSM suivante (fileIdx, pageIdx), -1 = fin de liste
+ * Offset 8-11  : nombre d'entrées de la page
+ * Offset 12-15 : réservé
+ * Offset 16... : bitmap "non pleine" (mots de 64 bits), puis les entrées :
+ *                PageId (8 bytes) + résumé de la page (summarySize bytes)
+ *
+ * L'entrée i du répertoire est dans la page FSM i / entriesPerPage.
+ * Une page retirée est remplacée par la dernière entrée : le répertoire
+ * reste compact, sans trou.
+ *
+ * Le résumé est une zone opaque de taille fixe par page de données
+ * (la zone map, voir ZoneMap), déplacée avec son entrée.
+ */
+class FreeSpaceMap {
+
+    private static final int NEXT_PAGE_OFFSET = 0;
+    private static final int ENTRY_COUNT_OFFSET = 8;
+    private static final int BITMAP_OFFSET = 16;
+    private static final int PAGE_ID_SIZE = 8;
+    private static final int INVALID_PAGE_ID = -1;
+
+    private final DiskManager diskManager;
+    private final BufferManager bufferManager;
+    private final int summarySize;
+    private final int entrySize;
+    private final int entriesPerPage;
+    private final int entriesOffset;
+
+    // Répertoire en mémoire
+    private final List<PageId> dataPages = new ArrayList<>();
+    private final Map<PageId, Integer> positions = new HashMap<>();
+    private final BitSet freeBits = new BitSet();
+    private byte[] summaries;              // résumé de l'entrée i à i * summarySize
+    private ByteBuffer summaryBuffer;
+
+    // Pages FSM, dans l'ordre de la chaîne
+    private final List<PageId> mapPages = new ArrayList<>();
+
+    /**
+     * Crée une FSM vide, ou la charge depuis sa première page
+     * @param firstPage première page FSM (null si la relation n'en a pas encore)
+     * @param summarySize taille du résumé de chaque page de données (0 = aucun)
+     */
+    FreeSpaceMap(DiskManager diskManager, BufferManager bufferManager, PageId firstPage,
+                 int summarySize) throws IOException {
+        this.diskManager = diskManager;
+        this.bufferManager = bufferManager;
+        this.summarySize = summarySize;
+        this.entrySize = PAGE_ID_SIZE + summarySize;
+
+        int pageSize = diskManager.getConfig().getPageSize();
+        int count = (pageSize - BITMAP_OFFSET) * 8 / (entrySize * 8 + 1);
+        while (count > 0 && BITMAP_OFFSET + 8 * bitmapWordsFor(count) + count * entrySize > pageSize) {
+            count--;
+        }
+        if (count == 0) {
+            throw new IllegalArgumentException("Résumé de page trop grand pour la Free Space Map : " + summarySize);
+        }
+        this.entriesPerPage = count;
+        this.entriesOffset = BITMAP_OFFSET + 8 * bitmapWordsFor(count);
+        this.summaries = new byte[16 * summarySize];
+        this.summaryBuffer = ByteBuffer.wrap(summaries);
+
+        load(firstPage);
+    }
+
+    private static int bitmapWordsFor(int count) {
+        return (count + 63) >>> 6;
+    }
+
+    private void load(PageId firstPage) throws IOException {
+        PageId current = firstPage;
+        while (current != null) {
+            mapPages.add(current);
+            try (PageHandle page = bufferManager.GetPageHandle(current)) {
+                int count = page.getInt(ENTRY_COUNT_OFFSET);
+                for (int i = 0; i < count; i++) {
+                    int offset = entriesOffset + i * entrySize;
+                    PageId pageId = new PageId(page.getInt(offset), page.getInt(offset + 4));
+                    int index = dataPages.size();
+                    dataPages.add(pageId);
+                    positions.put(pageId, index);
+                    ensureSummaryCapacity(index + 1);
+                    for (int b = 0; b < summarySize; b++) {
+                        summaries[index * summarySize + b] = page.get(offset + PAGE_ID_SIZE + b);
+                    }
+                    long word = page.getLong(BITMAP_OFFSET + 8 * (i >>> 6));
+                    if ((word & (1L << (i & 63))) != 0) {
+                        freeBits.set(index);
+                    }
+                }
+                current = readNextPage(page);
+            }
+        }
+    }
+
+    /**
+     * Première page FSM (null si la FSM n'a encore aucune page)
+     */
+    PageId getFirstPage() {
+        return mapPages.isEmpty() ? null : mapPages.get(0);
+    }
+
+    /**
+     * Pages FSM (pour DROP TABLE)
+     */
+    List<PageId> getMapPages() {
+        return Collections.unmodifiableList(mapPages);
+    }
+
+    /**
+     * Pages de données de la relation, dans l'ordre du répertoire
+     */
+    List<PageId> getDataPages() {
+        return Collections.unmodifiableList(dataPages);
+    }
+
+    /**
+     * Page de données à la position index du répertoire
+     */
+    PageId getDataPage(int index) {
+        return dataPages.get(index);
+    }
+
+    int size() {
+        return dataPages.size();
+    }
+
+    int getFreeCount() {
+        return freeBits.cardinality();
+    }
+
+    boolean contains(PageId pageId) {
+        return positions.containsKey(pageId);
+    }
+
+    int getSummarySize() {
+        return summarySize;
+    }
+
+    /**
+     * Résumés de toutes les entrées (accès absolus, voir getSummaryOffset)
+     * Le buffer change quand le répertoire grandit : ne pas le garder.
+     */
+    ByteBuffer getSummaries() {
+        return summaryBuffer;
+    }
+
+    /**
+     * Position du résumé d'une page de données dans getSummaries()
+     */
+    int getSummaryOffset(PageId pageId) {
+        return indexOf(pageId) * summarySize;
+    }
+
+    /**
+     * Écrit dans sa page FSM le résumé modifié d'une page de données
+     */
+    void saveSummary(PageId pageId) throws IOException {
+        writeEntry(indexOf(pageId));
+    }
+
+    /**
+     * Vrai si la page est marquée non pleine
+     */
+    boolean isFree(PageId pageId) {
+        return freeBits.get(indexOf(pageId));
+    }
+
+    /**
+     * Retourne une page non pleine (recherche dans la bitmap), ou null
+     */
+    PageId findFreePage() {
+        int index = freeBits.nextSetBit(0);
+        return index < 0 ? null : dataPages.get(index);
+    }
+
+    /**
+     * Ajoute une page de données au répertoire
+     */
+    void add(PageId pageId, boolean free) throws IOException {
+        int index = dataPages.size();
+        dataPages.add(pageId);
+        positions.put(pageId, index);
+        freeBits.set(index, free);
+        clearSummaries(index, index + 1);
+
+        if (index / entriesPerPage >= mapPages.size()) {
+            appendMapPage();
+        }
+        writeEntry(index);
+    }
+
+    /**
+     * Ajoute des pages de données (non pleines ou pleines), une écriture par page FSM
+     */
+    void addAll(List<PageId> pageIds, boolean free) throws IOException {
+        if (pageIds.isEmpty()) {
+            return;
+        }
+        int first = dataPages.size();
+        for (PageId pageId : pageIds) {
+            positions.put(pageId, dataPages.size());
+            freeBits.set(dataPages.size(), free);
+            dataPages.add(pageId);
+        }
+        clearSummaries(first, dataPages.size());
+        while ((dataPages.size() - 1) / entriesPerPage >= mapPages.size()) {
+            appendMapPage();
+        }
+        writeEntries(first, dataPages.size());
+    }
+
+    /**
+     * Met à jour le bit "non pleine" d'une page
+     */
+    void setFree(PageId pageId, boolean free) throws IOException {
+        int index = indexOf(pageId);
+        if (freeBits.get(index) != free) {
+            freeBits.set(index, free);
+            writeEntry(index);
+        }
+    }
+
+    /**
+     * Retire une page du répertoire (la dernière entrée prend sa place)
+     */
+    void remove(PageId pageId) throws IOException {
+        int index = indexOf(pageId);
+        int last = dataPages.size() - 1;
+        positions.remove(pageId);
+
+        if (index != last) {
+            PageId moved = dataPages.get(last);
+            dataPages.set(index, moved);
+            positions.put(moved, index);
+            freeBits.set(index, freeBits.get(last));
+            System.arraycopy(summaries, last * summarySize, summaries, index * summarySize, summarySize);
+        }
+        dataPages.remove(last);
+        freeBits.clear(last);
+
+        if (index != last) {
+            writeEntry(index);
+        }
+        writeEntries(last, last);  // nouveau nombre d'entrées de la dernière page
+    }
+
+    /**
+     * Remet à zéro les résumés des entrées [from, to), en agrandissant le tableau si besoin
+     */
+    private void clearSummaries(int from, int to) {
+        ensureSummaryCapacity(to);
+        Arrays.fill(summaries, from * summarySize, to * summarySize, (byte) 0);
+    }
+
+    private void ensureSummaryCapacity(int entries) {
+        if (entries * summarySize > summaries.length) {
+            summaries = Arrays.copyOf(summaries, Math.max(entries * summarySize, 2 * summaries.length));
+            summaryBuffer = ByteBuffer.wrap(summaries);
+        }
+    }
+
+    private int indexOf(PageId pageId) {
+        Integer index = positions.get(pageId);
+        if (index == null) {
+            throw new IllegalArgumentException("Page absente de la Free Space Map : " + pageId);
+        }
+        return index;
+    }
+
+    /**
+     * Réécrit l'entrée index dans sa page FSM
+     */
+    private void writeEntry(int index) throws IOException {
+        writeEntries(index, index + 1);
+    }
+
+    /**
+     * Réécrit les entrées [from, to) et le nombre d'entrées des pages FSM touchées
+     * (from == to : seul le nombre d'entrées de la page de from est réécrit)
+     */
+    private void writeEntries(int from, int to) throws IOException {
+        int firstPage = from / entriesPerPage;
+        int lastPage = Math.max(firstPage, (to - 1) / entriesPerPage);
+
+        for (int p = firstPage; p <= lastPage && p < mapPages.size(); p++) {
+            int base = p * entriesPerPage;
+            int count = Math.max(0, Math.min(entriesPerPage, dataPages.size() - base));
+            int start = Math.max(from, base);
+            int end = Math.min(to, base + entriesPerPage);
+
+            try (PageHandle page = bufferManager.GetPageHandle(mapPages.get(p))) {
+                for (int index = start; index < end; index++) {
+                    int i = index - base;
+                    PageId pageId = dataPages.get(index);
+                    int offset = entriesOffset + i * entrySize;
+                    page.putInt(offset, pageId.getFileIdx());
+                    page.putInt(offset + 4, pageId.getPageIdx());
+                    for (int b = 0; b < summarySize; b++) {
+                        page.put(offset + PAGE_ID_SIZE + b, summaries[index * summarySize + b]);
+                    }
+
+                    int wordOffset = BITMAP_OFFSET + 8 * (i >>> 6);
+                    long word = page.getLong(wordOffset);
+                    long bit = 1L << (i & 63);
+                    page.putLong(wordOffset, freeBits.get(index) ? word | bit : word & ~bit);
+                }
+                page.putInt(ENTRY_COUNT_OFFSET, count);
+                page.markDirty();
+            }
+        }
+    }
+
+    /**
+     * Alloue une page FSM vide et la chaîne à la fin de la liste
+     */
+    private void appendMapPage() throws IOException {
+        PageId newPage = diskManager.allocPage();
+        try (PageHandle page = bufferManager.GetPageHandle(newPage)) {
+            page.putInt(NEXT_PAGE_OFFSET, INVALID_PAGE_ID);
+            page.putInt(NEXT_PAGE_OFFSET + 4, INVALID_PAGE_ID);
+            page.putInt(ENTRY_COUNT_OFFSET, 0);
+            for (int w = 0; w < bitmapWordsFor(entriesPerPage); w++) {
+                page.putLong(BITMAP_OFFSET + 8 * w, 0L);
+            }
+            page.markDirty();
+        }
+
+        if (!mapPages.isEmpty()) {
+            try (PageHandle previous = bufferManager.GetPageHandle(mapPages.get(mapPages.size() - 1))) {
+                previous.putInt(NEXT_PAGE_OFFSET, newPage.getFileIdx());
+                previous.putInt(NEXT_PAGE_OFFSET + 4, newPage.getPageIdx());
+                previous.markDirty();
+            }
+        }
+        mapPages.add(newPage);
+    }
+
+    private static PageId readNextPage(PageHandle page) {
+        int fileIdx = page.getInt(NEXT_PAGE_OFFSET);
+        if (fileIdx == INVALID_PAGE_ID) {
+            return null;
+        }
+        return new PageId(fileIdx, page.getInt(NEXT_PAGE_OFFSET + 4));
+    }
+}
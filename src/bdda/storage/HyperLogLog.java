@@ -0,0 +1,55 @@
+package bdda.storage;
+
+/**
+ * Estimateur HyperLogLog du nombre de valeurs distinctes d'une colonne :
+ * 2^p registres d'un byte, chacun gardant le plus long préfixe de zéros
+ * (+1) des hachages qui lui sont attribués par leurs p premiers bits.
+ * Erreur relative typique 1.04 / sqrt(2^p) (1.6 % pour p = 12),
+ * en mémoire constante quel que soit le nombre de records.
+ */
+final class HyperLogLog {
+
+    private final int precision;
+    private final byte[] registers;
+
+    HyperLogLog(int precision) {
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Ajoute une valeur par son hachage 64 bits (voir RecordLayout.hash)
+     */
+    void add(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // Rang du premier bit à 1 après les p bits d'indice (borné par la sentinelle)
+        long rest = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * Nombre estimé de valeurs distinctes ajoutées
+     */
+    long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte r : registers) {
+            sum += 1.0 / (1L << r);
+            if (r == 0) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+
+        // Petites cardinalités : comptage linéaire des registres vides
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+}
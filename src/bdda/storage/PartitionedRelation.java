@@ -0,0 +1,269 @@
+package bdda.storage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Table logique partitionnée : chaque partition est une Relation (fichier
+ * de pages, FSM, zone maps) de même schéma. Les records sont routés vers
+ * une partition d'après la valeur de la colonne de partitionnement :
+ *
+ * RANGE(col) : la partition i contient les valeurs de [low(i), high(i)[
+ *              (bornes croissantes ; low null = pas de borne inférieure).
+ *              Une valeur hors de toutes les partitions est refusée.
+ * HASH(col, n) : la partition est hash(valeur) mod n (n fixé à la création).
+ *
+ * Supprimer une partition RANGE (les valeurs les plus anciennes) ne lit
+ * aucun record : ses pages sont libérées et la partition est retirée.
+ * Le schéma est persisté par DBManager (database.save).
+ */
+public final class PartitionedRelation {
+
+    public enum Kind { RANGE, HASH }
+
+    private final String name;
+    private final List<ColumnInfo> columns;
+    private final Kind kind;
+    private final int columnIndex;
+    private final RecordLayout layout;
+    private final List<Relation> partitions = new ArrayList<>();
+    private final List<Object> lowBounds = new ArrayList<>();   // RANGE : borne incluse (null : aucune)
+    private final List<Object> highBounds = new ArrayList<>();  // RANGE : borne exclue
+    private int nextPartitionId;  // suffixe du nom de la prochaine partition créée
+
+    /**
+     * @param columnIndex indice de la colonne de partitionnement
+     * @param nextPartitionId suffixe du nom de la prochaine partition (voir newPartitionName)
+     */
+    public PartitionedRelation(String name, List<ColumnInfo> columns, Kind kind,
+                               int columnIndex, int nextPartitionId) {
+        if (columnIndex < 0 || columnIndex >= columns.size()) {
+            throw new IllegalArgumentException("Colonne de partitionnement inconnue pour " + name);
+        }
+        if (kind == Kind.RANGE && !columns.get(columnIndex).isInt() && !columns.get(columnIndex).isFloat()) {
+            throw new IllegalArgumentException("RANGE : la colonne de partitionnement doit être INT ou FLOAT");
+        }
+        this.name = name;
+        this.columns = new ArrayList<>(columns);
+        this.kind = kind;
+        this.columnIndex = columnIndex;
+        this.layout = new RecordLayout(this.columns);
+        this.nextPartitionId = nextPartitionId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<ColumnInfo> getColumns() {
+        return columns;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Indice de la colonne de partitionnement
+     */
+    public int getColumnIndex() {
+        return columnIndex;
+    }
+
+    public int getPartitionCount() {
+        return partitions.size();
+    }
+
+    public Relation getPartition(int index) {
+        return partitions.get(index);
+    }
+
+    public List<Relation> getPartitions() {
+        return Collections.unmodifiableList(partitions);
+    }
+
+    /**
+     * Borne inférieure incluse de la partition RANGE (null : aucune)
+     */
+    public Object getLowBound(int index) {
+        return lowBounds.get(index);
+    }
+
+    /**
+     * Borne supérieure exclue de la partition RANGE (null pour HASH)
+     */
+    public Object getHighBound(int index) {
+        return highBounds.get(index);
+    }
+
+    public int getNextPartitionId() {
+        return nextPartitionId;
+    }
+
+    /**
+     * Nom de la Relation de la prochaine partition (table#k, k jamais réutilisé)
+     */
+    public String newPartitionName() {
+        return name + "#" + nextPartitionId++;
+    }
+
+    /**
+     * Ajoute une partition HASH (dans l'ordre des restes)
+     */
+    public void addHashPartition(Relation partition) {
+        if (kind != Kind.HASH) {
+            throw new IllegalStateException("Table " + name + " non partitionnée par HASH");
+        }
+        checkSchema(partition);
+        partitions.add(partition);
+        lowBounds.add(null);
+        highBounds.add(null);
+    }
+
+    /**
+     * Ajoute une partition RANGE [low, high[ après les partitions existantes
+     * @param low borne incluse (null : aucune, seulement pour la première partition)
+     */
+    public void addRangePartition(Relation partition, Object low, Object high) {
+        if (kind != Kind.RANGE) {
+            throw new IllegalStateException("Table " + name + " non partitionnée par RANGE");
+        }
+        checkSchema(partition);
+        Object last = highBounds.isEmpty() ? null : highBounds.get(highBounds.size() - 1);
+        if (low == null ? last != null : last != null && compareValues(low, last) < 0) {
+            throw new IllegalArgumentException("Partition chevauchant la partition précédente : " + low);
+        }
+        if (low != null && compareValues(low, high) >= 0) {
+            throw new IllegalArgumentException("Partition vide : [" + low + ", " + high + "[");
+        }
+        partitions.add(partition);
+        lowBounds.add(low);
+        highBounds.add(high);
+    }
+
+    /**
+     * Retire une partition (ses pages sont libérées par DBManager)
+     * @return la Relation retirée
+     */
+    public Relation removePartition(int index) {
+        if (kind != Kind.RANGE) {
+            throw new IllegalStateException("Seule une partition RANGE peut être supprimée");
+        }
+        if (partitions.size() == 1) {
+            throw new IllegalStateException("Impossible de supprimer la dernière partition de " + name);
+        }
+        lowBounds.remove(index);
+        highBounds.remove(index);
+        return partitions.remove(index);
+    }
+
+    private void checkSchema(Relation partition) {
+        if (partition.getColumnCount() != columns.size()) {
+            throw new IllegalArgumentException("Schéma de la partition différent de celui de " + name);
+        }
+    }
+
+    /**
+     * Indice de la partition d'une valeur de la colonne de partitionnement
+     * @return -1 si aucune partition RANGE ne contient la valeur
+     */
+    public int partitionFor(Object value) {
+        if (kind == Kind.HASH) {
+            return Math.floorMod(hash(value), partitions.size());
+        }
+        for (int i = 0; i < partitions.size(); i++) {
+            Object low = lowBounds.get(i);
+            if ((low == null || compareValues(value, low) >= 0) && compareValues(value, highBounds.get(i)) < 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Partition d'un record
+     * @throws IllegalArgumentException si aucune partition ne le contient
+     */
+    public Relation route(Record record) {
+        return partitions.get(routeIndex(record));
+    }
+
+    private int routeIndex(Record record) {
+        Object value = record.getValue(columnIndex);
+        int index = partitionFor(value);
+        if (index < 0) {
+            throw new IllegalArgumentException("Aucune partition de " + name + " pour la valeur " + value);
+        }
+        return index;
+    }
+
+    /**
+     * Insère un record dans sa partition
+     */
+    public RecordId InsertRecord(Record record) throws IOException {
+        return route(record).InsertRecord(record);
+    }
+
+    /**
+     * Insère un lot de records : ils sont regroupés par partition puis
+     * insérés avec Relation.InsertRecords (une passe par partition).
+     * Le lot est refusé en entier si un record n'a pas de partition.
+     */
+    public void InsertRecords(List<Record> records) throws IOException {
+        List<List<Record>> groups = new ArrayList<>(partitions.size());
+        for (int i = 0; i < partitions.size(); i++) {
+            groups.add(new ArrayList<>());
+        }
+        for (Record record : records) {
+            groups.get(routeIndex(record)).add(record);
+        }
+        for (int i = 0; i < partitions.size(); i++) {
+            if (!groups.get(i).isEmpty()) {
+                partitions.get(i).InsertRecords(groups.get(i));
+            }
+        }
+    }
+
+    /**
+     * Nombre total de records (somme des partitions)
+     */
+    public long getRecordCount() {
+        long count = 0;
+        for (Relation partition : partitions) {
+            count += partition.getRecordCount();
+        }
+        return count;
+    }
+
+    /**
+     * Compare deux valeurs de la colonne de partitionnement
+     * (INT / FLOAT comme Condition, chaînes sinon)
+     */
+    public int compareValues(Object left, Object right) {
+        ColumnInfo col = columns.get(columnIndex);
+        if (col.isInt()) {
+            return Integer.compare(RecordLayout.toInt(left), RecordLayout.toInt(right));
+        }
+        if (col.isFloat()) {
+            return Float.compare(RecordLayout.toFloat(left), RecordLayout.toFloat(right));
+        }
+        return String.valueOf(left).compareTo(String.valueOf(right));
+    }
+
+    /**
+     * Hachage de la valeur telle qu'elle est relue depuis la page
+     * (chaîne tronquée à T, CHAR sans espaces de fin) : une égalité
+     * sur la valeur relue désigne la même partition
+     */
+    private int hash(Object value) {
+        if (layout.isInt(columnIndex)) {
+            return Integer.hashCode(RecordLayout.toInt(value));
+        }
+        if (layout.isFloat(columnIndex)) {
+            return Float.hashCode(RecordLayout.toFloat(value));
+        }
+        return layout.toDictionaryValue(columnIndex, value).hashCode();
+    }
+}
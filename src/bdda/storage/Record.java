@@ -1,88 +1,369 @@
 package bdda.storage;
 
 import java.util.List;
+import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.Objects;
 
 /**
  * Représente un tuple / record (une ligne d'une table)
  * Stocke une liste de valeurs correspondant aux colonnes de la relation
+ *
+ * Un record créé depuis un schéma (Record.Schema, voir Relation.newRecord())
+ * range ses valeurs dans des tableaux typés : int[] pour les INT, float[]
+ * pour les FLOAT, String[] pour les chaînes. getInt / getFloat / setInt /
+ * setFloat n'allouent alors aucun objet ; getValue() crée l'objet demandé.
  */
 public class Record {
-    
+
+    // Mode générique (schema == null)
     private List<Object> values;
-    
+
+    // Mode typé : valeur de la colonne i dans ints / floats / strings[schema.index[i]]
+    private final Schema schema;
+    private int[] ints;
+    private float[] floats;
+    private String[] strings;
+    private int cursor;  // prochaine colonne remplie par addValue
+
     /**
      * Constructeur vide (pour lecture depuis buffer)
      */
     public Record() {
         this.values = new ArrayList<>();
+        this.schema = null;
     }
-    
+
     /**
      * Constructeur avec valeurs
      * @param values liste des valeurs du tuple
      */
     public Record(List<Object> values) {
         this.values = new ArrayList<>(values);
+        this.schema = null;
+    }
+
+    /**
+     * Constructeur d'un record typé (toutes les valeurs à 0 / null)
+     */
+    private Record(Schema schema) {
+        this.schema = schema;
+        this.ints = new int[schema.intCount];
+        this.floats = new float[schema.floatCount];
+        this.strings = new String[schema.stringCount];
+    }
+
+    /**
+     * Schéma du record (null pour un record générique)
+     */
+    public Schema getSchema() {
+        return schema;
     }
-    
+
     /**
      * Retourne la liste des valeurs
+     * (pour un record typé : une copie, chaque valeur numérique est un nouvel objet)
      */
     public List<Object> getValues() {
-        return values;
+        if (schema == null) {
+            return values;
+        }
+        List<Object> list = new ArrayList<>(schema.size());
+        for (int i = 0; i < schema.size(); i++) {
+            list.add(getValue(i));
+        }
+        return list;
     }
-    
+
     /**
      * Retourne la valeur à l'index donné
      * @param index index de la colonne
      * @return la valeur
      */
     public Object getValue(int index) {
-        return values.get(index);
+        if (schema == null) {
+            return values.get(index);
+        }
+        switch (schema.tags[index]) {
+            case Schema.INT:
+                return ints[schema.index[index]];
+            case Schema.FLOAT:
+                return floats[schema.index[index]];
+            default:
+                return strings[schema.index[index]];
+        }
     }
-    
+
+    /**
+     * Valeur entière d'une colonne (sans objet intermédiaire pour un INT typé)
+     */
+    public int getInt(int index) {
+        if (schema != null && schema.tags[index] == Schema.INT) {
+            return ints[schema.index[index]];
+        }
+        Object value = getValue(index);
+        if (value == null) return 0;
+        return value instanceof Number ? ((Number) value).intValue() : Integer.parseInt(value.toString());
+    }
+
+    /**
+     * Valeur flottante d'une colonne (sans objet intermédiaire pour un FLOAT typé)
+     */
+    public float getFloat(int index) {
+        if (schema != null && schema.tags[index] == Schema.FLOAT) {
+            return floats[schema.index[index]];
+        }
+        Object value = getValue(index);
+        if (value == null) return 0.0f;
+        return value instanceof Number ? ((Number) value).floatValue() : Float.parseFloat(value.toString());
+    }
+
+    /**
+     * Valeur d'une colonne chaîne
+     */
+    public String getString(int index) {
+        Object value = getValue(index);
+        return value == null ? null : value.toString();
+    }
+
     /**
      * Ajoute une valeur à la fin
+     * (record typé : remplit la colonne suivante, voir clear())
      * @param value valeur à ajouter
      */
     public void addValue(Object value) {
-        values.add(value);
+        if (schema == null) {
+            values.add(value);
+        } else {
+            setValue(cursor++, value);
+        }
+    }
+
+    /**
+     * Remplit la colonne suivante d'un record typé avec un INT
+     */
+    public void addInt(int value) {
+        if (schema == null) {
+            values.add(value);
+        } else {
+            setInt(cursor++, value);
+        }
+    }
+
+    /**
+     * Remplit la colonne suivante d'un record typé avec un FLOAT
+     */
+    public void addFloat(float value) {
+        if (schema == null) {
+            values.add(value);
+        } else {
+            setFloat(cursor++, value);
+        }
     }
-    
+
     /**
      * Modifie une valeur à l'index donné
      * @param index index de la colonne
      * @param value nouvelle valeur
      */
     public void setValue(int index, Object value) {
-        values.set(index, value);
+        if (schema == null) {
+            values.set(index, value);
+            return;
+        }
+        switch (schema.tags[index]) {
+            case Schema.INT:
+                ints[schema.index[index]] = value instanceof Number
+                        ? ((Number) value).intValue() : Integer.parseInt(value.toString());
+                break;
+            case Schema.FLOAT:
+                floats[schema.index[index]] = value instanceof Number
+                        ? ((Number) value).floatValue() : Float.parseFloat(value.toString());
+                break;
+            default:
+                strings[schema.index[index]] = value == null ? null : value.toString();
+        }
+    }
+
+    /**
+     * Modifie une colonne INT
+     */
+    public void setInt(int index, int value) {
+        if (schema != null && schema.tags[index] == Schema.INT) {
+            ints[schema.index[index]] = value;
+        } else {
+            setValue(index, value);
+        }
+    }
+
+    /**
+     * Modifie une colonne FLOAT
+     */
+    public void setFloat(int index, float value) {
+        if (schema != null && schema.tags[index] == Schema.FLOAT) {
+            floats[schema.index[index]] = value;
+        } else {
+            setValue(index, value);
+        }
     }
-    
+
+    /**
+     * Copie la colonne srcIndex de source dans la colonne index de ce record
+     * (sans objet intermédiaire si les deux colonnes sont INT ou FLOAT)
+     */
+    public void copyValue(int index, Record source, int srcIndex) {
+        if (schema != null && schema.tags[index] == Schema.INT) {
+            setInt(index, source.getInt(srcIndex));
+        } else if (schema != null && schema.tags[index] == Schema.FLOAT) {
+            setFloat(index, source.getFloat(srcIndex));
+        } else if (schema == null && index == values.size()) {
+            values.add(source.getValue(srcIndex));
+        } else {
+            setValue(index, source.getValue(srcIndex));
+        }
+    }
+
+    /**
+     * Copie indépendante du record (même schéma)
+     */
+    public Record copy() {
+        if (schema == null) {
+            return new Record(values);
+        }
+        Record copy = new Record(schema);
+        System.arraycopy(ints, 0, copy.ints, 0, ints.length);
+        System.arraycopy(floats, 0, copy.floats, 0, floats.length);
+        System.arraycopy(strings, 0, copy.strings, 0, strings.length);
+        copy.cursor = cursor;
+        return copy;
+    }
+
     /**
      * Retourne le nombre de valeurs
+     * (record typé : le nombre de colonnes du schéma)
      */
     public int size() {
-        return values.size();
+        return schema == null ? values.size() : schema.size();
     }
-    
+
     /**
      * Vide la liste des valeurs
+     * (record typé : addValue reprend à la première colonne)
      */
     public void clear() {
-        values.clear();
+        if (schema == null) {
+            values.clear();
+        } else {
+            cursor = 0;
+        }
     }
-    
+
     @Override
     public String toString() {
-        return "Record" + values.toString();
+        return "Record" + getValues().toString();
     }
-    
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
         if (obj == null || getClass() != obj.getClass()) return false;
         Record other = (Record) obj;
-        return values.equals(other.values);
+        if (schema == null && other.schema == null) {
+            return values.equals(other.values);
+        }
+        if (size() != other.size()) return false;
+        for (int i = 0; i < size(); i++) {
+            if (!Objects.equals(getValue(i), other.getValue(i))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Types des colonnes d'un record typé, calculés une fois par relation
+     * (ou par projection) et partagés par tous ses records
+     */
+    public static final class Schema {
+
+        static final byte INT = 0;
+        static final byte FLOAT = 1;
+        static final byte STRING = 2;
+
+        private final byte[] tags;
+        private final int[] index;  // indice de la colonne dans son tableau typé
+        private final int intCount;
+        private final int floatCount;
+        private final int stringCount;
+
+        private Schema(byte[] tags) {
+            this.tags = tags;
+            this.index = new int[tags.length];
+            int ic = 0, fc = 0, sc = 0;
+            for (int i = 0; i < tags.length; i++) {
+                switch (tags[i]) {
+                    case INT:   index[i] = ic++; break;
+                    case FLOAT: index[i] = fc++; break;
+                    default:    index[i] = sc++;
+                }
+            }
+            this.intCount = ic;
+            this.floatCount = fc;
+            this.stringCount = sc;
+        }
+
+        /**
+         * Schéma des colonnes d'une relation (CHAR, VARCHAR et DICT sont des chaînes)
+         */
+        public static Schema of(List<ColumnInfo> columns) {
+            byte[] tags = new byte[columns.size()];
+            for (int i = 0; i < tags.length; i++) {
+                ColumnInfo col = columns.get(i);
+                tags[i] = col.isInt() ? INT : col.isFloat() ? FLOAT : STRING;
+            }
+            return new Schema(tags);
+        }
+
+        /**
+         * Schéma des colonnes projetées (dans l'ordre donné)
+         */
+        public Schema project(List<Integer> colIndices) {
+            byte[] projected = new byte[colIndices.size()];
+            for (int k = 0; k < projected.length; k++) {
+                projected[k] = tags[colIndices.get(k)];
+            }
+            return new Schema(projected);
+        }
+
+        /**
+         * Nombre de colonnes
+         */
+        public int size() {
+            return tags.length;
+        }
+
+        /**
+         * Vrai si la colonne est rangée dans le tableau des INT
+         */
+        public boolean isInt(int colIdx) {
+            return tags[colIdx] == INT;
+        }
+
+        /**
+         * Vrai si la colonne est rangée dans le tableau des FLOAT
+         */
+        public boolean isFloat(int colIdx) {
+            return tags[colIdx] == FLOAT;
+        }
+
+        /**
+         * Nouveau record vide de ce schéma
+         */
+        public Record newRecord() {
+            return new Record(this);
+        }
+
+        @Override
+        public String toString() {
+            return "Schema" + Arrays.toString(tags);
+        }
     }
-}
\ No newline at end of file
+}
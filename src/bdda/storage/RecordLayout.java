@@ -0,0 +1,375 @@
+package bdda.storage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Schéma d'une relation compilé une seule fois : type de chaque colonne,
+ * offset et taille dans un record de taille fixe, taille des records.
+ * Sert aussi de codec : toutes les lectures / écritures de valeurs passent
+ * par ces tableaux, sans relire les chaînes de type ("VARCHAR(10)", ...).
+ *
+ * Les accès au ByteBuffer sont absolus (sa position n'est pas modifiée).
+ * Les caractères sont stockés sur un byte (ISO-8859-1).
+ */
+public final class RecordLayout {
+
+    static final byte INT = 0;
+    static final byte FLOAT = 1;
+    static final byte CHAR = 2;
+    static final byte VARCHAR = 3;
+    static final byte DICT = 4;  // CHAR/VARCHAR DICT : code sur 4 bytes
+
+    private final byte[] tags;
+    private final int[] offsets;     // offset de la colonne dans un record de taille fixe
+    private final int[] sizes;       // taille de la colonne (voir ColumnInfo.getSizeInBytes)
+    private final int[] maxLengths;  // T de CHAR(T) / VARCHAR(T), 0 sinon
+    private final boolean[] charColumns;  // CHAR (DICT compris) : espaces de fin retirés
+    private final int recordSize;
+    private final int maxCompactSize;
+    private final int minCompactSize;
+    private final Record.Schema schema;
+
+    RecordLayout(List<ColumnInfo> columns) {
+        int count = columns.size();
+        this.tags = new byte[count];
+        this.offsets = new int[count];
+        this.sizes = new int[count];
+        this.maxLengths = new int[count];
+        this.charColumns = new boolean[count];
+
+        int offset = 0;
+        int maxCompact = 0;
+        int minCompact = 0;
+        for (int c = 0; c < count; c++) {
+            ColumnInfo col = columns.get(c);
+            if (col.isDictionaryEncoded()) {
+                tags[c] = DICT;
+            } else if (col.isInt()) {
+                tags[c] = INT;
+            } else if (col.isFloat()) {
+                tags[c] = FLOAT;
+            } else if (col.isChar()) {
+                tags[c] = CHAR;
+            } else {
+                tags[c] = VARCHAR;
+            }
+            charColumns[c] = col.isChar();
+            offsets[c] = offset;
+            sizes[c] = col.getSizeInBytes();
+            maxLengths[c] = col.getMaxLength();
+            offset += sizes[c];
+
+            // Format compact : VARCHAR(T) = 2 bytes de longueur + au plus T caractères
+            maxCompact += tags[c] == VARCHAR ? 2 + maxLengths[c] : sizes[c];
+            minCompact += tags[c] == VARCHAR ? 2 : sizes[c];
+        }
+        this.recordSize = offset;
+        this.maxCompactSize = maxCompact;
+        this.minCompactSize = minCompact;
+        this.schema = Record.Schema.of(columns);
+    }
+
+    public int getColumnCount() {
+        return tags.length;
+    }
+
+    /**
+     * Taille d'un record au format fixe (somme des tailles des colonnes)
+     */
+    public int getRecordSize() {
+        return recordSize;
+    }
+
+    /**
+     * Offset de la colonne dans un record au format fixe
+     */
+    public int getOffset(int colIdx) {
+        return offsets[colIdx];
+    }
+
+    public int getSize(int colIdx) {
+        return sizes[colIdx];
+    }
+
+    public int getMaxLength(int colIdx) {
+        return maxLengths[colIdx];
+    }
+
+    public boolean isInt(int colIdx) {
+        return tags[colIdx] == INT;
+    }
+
+    public boolean isFloat(int colIdx) {
+        return tags[colIdx] == FLOAT;
+    }
+
+    public boolean isDictionaryEncoded(int colIdx) {
+        return tags[colIdx] == DICT;
+    }
+
+    /**
+     * Schéma des records typés (Record.Schema)
+     */
+    public Record.Schema getSchema() {
+        return schema;
+    }
+
+    int getMaxCompactSize() {
+        return maxCompactSize;
+    }
+
+    int getMinCompactSize() {
+        return minCompactSize;
+    }
+
+    // ---------------------------------------------------------------- Format fixe
+
+    /**
+     * Écrit un record au format fixe à partir de pos
+     */
+    void write(ByteBuffer buff, int pos, Record record, StringDictionary dictionary) {
+        checkSize(record);
+        for (int c = 0; c < tags.length; c++) {
+            writeColumn(buff, pos + offsets[c], c, record, dictionary);
+        }
+    }
+
+    /**
+     * Lit un record au format fixe à partir de pos (le record est vidé puis rempli)
+     */
+    void read(ByteBuffer buff, int pos, Record record, StringDictionary dictionary) {
+        record.clear();
+        for (int c = 0; c < tags.length; c++) {
+            readColumn(buff, pos + offsets[c], c, record, dictionary);
+        }
+    }
+
+    /**
+     * Écrit la colonne c d'un record à la position valuePos
+     * (INT / FLOAT d'un record typé : sans objet intermédiaire)
+     */
+    void writeColumn(ByteBuffer buff, int valuePos, int c, Record record, StringDictionary dictionary) {
+        switch (tags[c]) {
+            case INT:
+                buff.putInt(valuePos, record.getSchema() != null ? record.getInt(c) : toInt(record.getValue(c)));
+                break;
+            case FLOAT:
+                buff.putFloat(valuePos, record.getSchema() != null ? record.getFloat(c) : toFloat(record.getValue(c)));
+                break;
+            default:
+                writeValue(buff, valuePos, c, record.getValue(c), dictionary);
+        }
+    }
+
+    /**
+     * Écrit une valeur de la colonne c à la position valuePos
+     */
+    void writeValue(ByteBuffer buff, int valuePos, int c, Object value, StringDictionary dictionary) {
+        switch (tags[c]) {
+            case INT:
+                buff.putInt(valuePos, toInt(value));
+                break;
+            case FLOAT:
+                buff.putFloat(valuePos, toFloat(value));
+                break;
+            case DICT:
+                // Seul le code est stocké (la chaîne est ajoutée au dictionnaire si besoin)
+                buff.putInt(valuePos, dictionary.encode(toDictionaryValue(c, value)));
+                break;
+            case CHAR: {
+                // Tronquée à T, complétée par des espaces
+                String str = truncate(c, value);
+                putChars(buff, valuePos, str);
+                fillSpaces(buff, valuePos + str.length(), maxLengths[c] - str.length());
+                break;
+            }
+            default: {
+                // VARCHAR : longueur réelle (4 bytes) + T bytes complétés par des espaces
+                String str = truncate(c, value);
+                buff.putInt(valuePos, str.length());
+                putChars(buff, valuePos + 4, str);
+                fillSpaces(buff, valuePos + 4 + str.length(), maxLengths[c] - str.length());
+            }
+        }
+    }
+
+    /**
+     * Lit la colonne c à la position valuePos et l'ajoute au record
+     */
+    void readColumn(ByteBuffer buff, int valuePos, int c, Record record, StringDictionary dictionary) {
+        switch (tags[c]) {
+            case INT:
+                record.addInt(buff.getInt(valuePos));
+                break;
+            case FLOAT:
+                record.addFloat(buff.getFloat(valuePos));
+                break;
+            default:
+                record.addValue(readValue(buff, valuePos, c, dictionary));
+        }
+    }
+
+    /**
+     * Lit la valeur de la colonne c à la position valuePos
+     */
+    Object readValue(ByteBuffer buff, int valuePos, int c, StringDictionary dictionary) {
+        switch (tags[c]) {
+            case INT:
+                return buff.getInt(valuePos);
+            case FLOAT:
+                return buff.getFloat(valuePos);
+            case DICT:
+                return dictionary.decode(buff.getInt(valuePos));
+            case CHAR: {
+                // Sans les espaces de fin
+                int length = maxLengths[c];
+                while (length > 0 && Character.isWhitespace((char) (buff.get(valuePos + length - 1) & 0xFF))) {
+                    length--;
+                }
+                return getChars(buff, valuePos, length);
+            }
+            default:
+                return getChars(buff, valuePos + 4, buff.getInt(valuePos));
+        }
+    }
+
+    // ------------------------------------------------------------- Format compact
+
+    /**
+     * Écrit un record au format compact : comme le format fixe, mais un VARCHAR
+     * n'occupe que 2 bytes de longueur + ses caractères réels (pas de padding)
+     * @return le nombre de bytes écrits
+     */
+    int writeCompact(ByteBuffer buff, int pos, Record record, StringDictionary dictionary) {
+        checkSize(record);
+        int p = pos;
+        for (int c = 0; c < tags.length; c++) {
+            if (tags[c] == VARCHAR) {
+                String str = truncate(c, record.getValue(c));
+                buff.putShort(p, (short) str.length());
+                putChars(buff, p + 2, str);
+                p += 2 + str.length();
+            } else {
+                writeColumn(buff, p, c, record, dictionary);
+                p += sizes[c];
+            }
+        }
+        return p - pos;
+    }
+
+    /**
+     * Lit un record écrit par writeCompact
+     */
+    void readCompact(ByteBuffer buff, int pos, Record record, StringDictionary dictionary) {
+        record.clear();
+        int p = pos;
+        for (int c = 0; c < tags.length; c++) {
+            if (tags[c] == VARCHAR) {
+                int length = buff.getShort(p) & 0xFFFF;
+                record.addValue(getChars(buff, p + 2, length));
+                p += 2 + length;
+            } else {
+                readColumn(buff, p, c, record, dictionary);
+                p += sizes[c];
+            }
+        }
+    }
+
+    // ----------------------------------------------------------------- Utilitaires
+
+    private void checkSize(Record record) {
+        if (record.size() != tags.length) {
+            throw new IllegalArgumentException(
+                "Le record a " + record.size() + " valeurs mais la relation a " + tags.length + " colonnes");
+        }
+    }
+
+    /**
+     * Chaîne mémorisée dans le dictionnaire pour une valeur : tronquée à T,
+     * sans espaces de fin pour un CHAR (comme à la relecture d'un CHAR(T))
+     */
+    String toDictionaryValue(int c, Object value) {
+        String str = truncate(c, value);
+        return charColumns[c] ? str.stripTrailing() : str;
+    }
+
+    /**
+     * Hachage 64 bits d'une valeur de la colonne c telle qu'elle est relue
+     * depuis la page (filtres de Bloom, HyperLogLog de TableStatistics)
+     */
+    long hash(int c, Object value) {
+        long h;
+        if (tags[c] == INT) {
+            h = toInt(value);
+        } else if (tags[c] == FLOAT) {
+            h = Float.floatToIntBits(toFloat(value));
+        } else {
+            // FNV-1a sur les caractères
+            String str = value == null ? "" : value.toString();
+            h = 0xcbf29ce484222325L;
+            for (int i = 0; i < str.length(); i++) {
+                h ^= str.charAt(i);
+                h *= 0x100000001b3L;
+            }
+        }
+        // Mélange final (murmur3 fmix64)
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb53fe1a85ec3L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private String truncate(int c, Object value) {
+        String str = value == null ? "" : value.toString();
+        return str.length() > maxLengths[c] ? str.substring(0, maxLengths[c]) : str;
+    }
+
+    private static void putChars(ByteBuffer buff, int pos, String str) {
+        for (int i = 0; i < str.length(); i++) {
+            buff.put(pos + i, (byte) str.charAt(i));
+        }
+    }
+
+    private static void fillSpaces(ByteBuffer buff, int pos, int count) {
+        for (int i = 0; i < count; i++) {
+            buff.put(pos + i, (byte) ' ');
+        }
+    }
+
+    private static String getChars(ByteBuffer buff, int pos, int length) {
+        if (buff.hasArray()) {
+            return new String(buff.array(), buff.arrayOffset() + pos, length, StandardCharsets.ISO_8859_1);
+        }
+        byte[] bytes = new byte[length];
+        buff.get(pos, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    static int toInt(Object value) {
+        if (value instanceof Integer) {
+            return (Integer) value;
+        } else if (value instanceof String) {
+            return Integer.parseInt((String) value);
+        } else if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        throw new IllegalArgumentException("Impossible de convertir en INT : " + value);
+    }
+
+    static float toFloat(Object value) {
+        if (value instanceof Float) {
+            return (Float) value;
+        } else if (value instanceof Double) {
+            return ((Double) value).floatValue();
+        } else if (value instanceof String) {
+            return Float.parseFloat((String) value);
+        } else if (value instanceof Number) {
+            return ((Number) value).floatValue();
+        }
+        throw new IllegalArgumentException("Impossible de convertir en FLOAT : " + value);
+    }
+}
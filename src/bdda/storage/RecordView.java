@@ -0,0 +1,200 @@
+package bdda.storage;
+
+import java.util.List;
+
+import bdda.core.PageHandle;
+import bdda.core.PageId;
+
+/**
+ * Vue sur un record resté dans sa page : (page épinglée, indice de slot).
+ * Les colonnes sont décodées à la demande, à leur position précalculée
+ * dans le slot ; getInt / getFloat ne créent aucun objet.
+ *
+ * Une vue est réutilisée par son itérateur : elle n'est valable que jusqu'à
+ * l'appel suivant. Pour garder les valeurs, utiliser toRecord().
+ * Avant de libérer la page, l'itérateur appelle detach() : les valeurs sont
+ * alors copiées dans un Record et la vue reste lisible sans la page.
+ *
+ * En layout SLOTTED (valeurs sans position fixe), le record est décodé en
+ * entier au premier accès, une seule fois par slot.
+ */
+public class RecordView {
+
+    private final Relation relation;
+    private final boolean decodeWhole;
+
+    // Position courante (page == null : vue détachée ou construite sur un Record)
+    private PageHandle page;
+    private PageId pageId;
+    private int slotIdx;
+
+    // Valeurs déjà décodées (valables si decoded == true)
+    private Record values;
+    private boolean decoded;
+
+    /**
+     * Crée une vue (non positionnée) sur les records d'une relation
+     */
+    public RecordView(Relation relation) {
+        this.relation = relation;
+        this.decodeWhole = relation.getLayout() == StorageLayout.SLOTTED;
+    }
+
+    /**
+     * Crée une vue sur un record déjà matérialisé (sans page)
+     */
+    public RecordView(Record record) {
+        this.relation = null;
+        this.decodeWhole = false;
+        wrap(record);
+    }
+
+    /**
+     * Positionne la vue sur un slot occupé d'une page épinglée
+     */
+    public void attach(PageHandle page, int slotIdx) {
+        this.page = page;
+        this.pageId = page.getPageId();
+        this.slotIdx = slotIdx;
+        this.decoded = false;
+    }
+
+    /**
+     * Positionne la vue sur un record déjà matérialisé
+     */
+    public void wrap(Record record) {
+        this.page = null;
+        this.pageId = null;
+        this.slotIdx = -1;
+        this.values = record;
+        this.decoded = true;
+    }
+
+    /**
+     * Copie les valeurs du slot courant : la page peut ensuite être libérée
+     */
+    public void detach() {
+        if (page != null) {
+            decodeAll();
+            page = null;
+        }
+    }
+
+    /**
+     * Vrai si la vue lit directement dans une page épinglée
+     */
+    public boolean isAttached() {
+        return page != null;
+    }
+
+    /**
+     * RecordId du slot courant (null pour une vue construite sur un Record)
+     */
+    public RecordId getRecordId() {
+        return pageId == null ? null : new RecordId(pageId, slotIdx);
+    }
+
+    /**
+     * Schéma des records lus (null pour une vue sur un record générique)
+     */
+    public Record.Schema getSchema() {
+        return relation != null ? relation.getRecordSchema() : values.getSchema();
+    }
+
+    /**
+     * Nombre de colonnes
+     */
+    public int size() {
+        return relation != null ? relation.getColumns().size() : values.size();
+    }
+
+    /**
+     * Valeur d'une colonne (décodée seule, sauf en layout SLOTTED)
+     */
+    public Object getValue(int colIdx) {
+        if (!decoded) {
+            if (!decodeWhole) {
+                return relation.readColumnValue(page, slotIdx, colIdx);
+            }
+            decodeAll();
+        }
+        return values.getValue(colIdx);
+    }
+
+    /**
+     * Valeur d'une colonne INT
+     */
+    public int getInt(int colIdx) {
+        if (decoded || decodeWhole) {
+            decodeAll();
+            return values.getInt(colIdx);
+        }
+        return relation.readIntValue(page, slotIdx, colIdx);
+    }
+
+    /**
+     * Valeur d'une colonne FLOAT
+     */
+    public float getFloat(int colIdx) {
+        if (decoded || decodeWhole) {
+            decodeAll();
+            return values.getFloat(colIdx);
+        }
+        return relation.readFloatValue(page, slotIdx, colIdx);
+    }
+
+    /**
+     * Matérialise toutes les colonnes dans un nouveau Record
+     */
+    public Record toRecord() {
+        if (decoded) {
+            return values.copy();
+        }
+        Record record = relation.newRecord();
+        relation.readRecordFromSlot(page, slotIdx, record);
+        return record;
+    }
+
+    /**
+     * Matérialise seulement les colonnes demandées (dans cet ordre)
+     */
+    public Record toRecord(List<Integer> colIndices) {
+        Record.Schema schema = getSchema();
+        Record record = schema != null ? schema.project(colIndices).newRecord() : new Record();
+        readColumns(colIndices, record);
+        return record;
+    }
+
+    /**
+     * Copie les colonnes demandées dans les colonnes 0, 1, ... de dest
+     * (INT / FLOAT sans objet intermédiaire si dest est typé)
+     */
+    public void readColumns(List<Integer> colIndices, Record dest) {
+        Record.Schema destSchema = dest.getSchema();
+        for (int k = 0; k < colIndices.size(); k++) {
+            int colIdx = colIndices.get(k);
+            if (destSchema != null && destSchema.isInt(k)) {
+                dest.setInt(k, getInt(colIdx));
+            } else if (destSchema != null && destSchema.isFloat(k)) {
+                dest.setFloat(k, getFloat(colIdx));
+            } else if (destSchema == null && k == dest.size()) {
+                dest.addValue(getValue(colIdx));
+            } else {
+                dest.setValue(k, getValue(colIdx));
+            }
+        }
+    }
+
+    private void decodeAll() {
+        if (!decoded) {
+            values = relation.newRecord();
+            relation.readRecordFromSlot(page, slotIdx, values);
+            decoded = true;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RecordView{" + (pageId == null ? "record" : getRecordId()) + "}";
+    }
+}
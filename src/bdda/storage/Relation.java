@@ -1,12 +1,18 @@
 package bdda.storage;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import bdda.core.BufferManager;
 import bdda.core.DiskManager;
+import bdda.core.PageHandle;
 import bdda.core.PageId;
 
 /**
@@ -16,31 +22,93 @@ public class Relation {
     
     private String name;
     private List<ColumnInfo> columns;
+    private RecordLayout recordLayout;  // Schéma compilé : types, offsets, tailles, codec
     
     // TP5 : Nouveaux attributs
     private PageId headerPageId;
-    private int slotCount;  // Nombre de slots par page de données
+    private StorageLayout layout;  // Organisation des records dans les pages
+    private DataPageFormat format;  // Rangement des records dans une page de données
+    private ForwardingPageFormat forwarding;  // Le même format s'il déplace des records (SLOTTED), sinon null
+    private StringDictionary dictionary;  // Codes des colonnes DICT (null si aucune)
     private DiskManager diskManager;
     private BufferManager bufferManager;
     
-    // Constantes pour la structure des pages
-    private static final int DATA_PAGE_HEADER_SIZE = 16;  // prevPage + nextPage
+    // État de la Header Page, gardé en cache (écrit sur la page seulement s'il change)
+    private FreeSpaceMap freeSpaceMap;  // Répertoire des pages de données + bit "non pleine"
+    private ZoneMap zoneMap;            // min / max par page, dans les résumés de la FSM
+    private BloomFilters bloomFilters;  // filtres des colonnes BLOOM, après la zone map
+    private int bloomBits;              // taille d'un filtre de Bloom (bits)
+    private int bloomHashes;            // nombre de fonctions de hachage
+    private long recordCount;
+    private boolean headerDirty;
+    
+    private PageId insertHint;  // page cible courante des insertions (non pleine)
+    
+    // Ancien format (version 1) : header de 16 octets et bytemap en fin de page
+    private static final int LEGACY_DATA_PAGE_HEADER_SIZE = 16;
+    
+    /**
+     * Structure de la Header Page :
+     * 
+     * Offset 0-7   : fullPages (fileIdx, pageIdx) jusqu'à la version 2, -1 ensuite
+     * Offset 8-15  : freePages (fileIdx, pageIdx) jusqu'à la version 2, -1 ensuite
+     * Offset 16-19 : marqueur HEADER_MAGIC (absent sur les relations créées avant les compteurs)
+     * Offset 20-23 : version du format (1 = bytemap, 2 = bitmap, 3 = Free Space Map,
+     *                4 = Free Space Map avec zone maps, 5 = + filtres de Bloom)
+     * Offset 24-27 : nombre de pages non pleines
+     * Offset 28-31 : nombre de pages pleines
+     * Offset 32-39 : nombre de records
+     * Offset 40-43 : code du StorageLayout (0 = ROW)
+     * Offset 44-51 : première page du dictionnaire (si la relation a des colonnes DICT)
+     * Offset 52-59 : première page de la Free Space Map (versions 3 et plus)
+     * Offset 60-63 : taille d'un filtre de Bloom en bits (version 5)
+     * Offset 64-67 : nombre de fonctions de hachage des filtres de Bloom (version 5)
+     */
+    private static final int HEADER_FULL_OFFSET = 0;
+    private static final int HEADER_FREE_OFFSET = 8;
+    private static final int HEADER_MAGIC_OFFSET = 16;
+    private static final int HEADER_VERSION_OFFSET = 20;
+    private static final int HEADER_FREE_COUNT_OFFSET = 24;
+    private static final int HEADER_FULL_COUNT_OFFSET = 28;
+    private static final int HEADER_RECORD_COUNT_OFFSET = 32;
+    private static final int HEADER_LAYOUT_OFFSET = 40;
+    private static final int HEADER_DICTIONARY_OFFSET = 44;
+    private static final int HEADER_FSM_OFFSET = 52;
+    private static final int HEADER_BLOOM_BITS_OFFSET = 60;
+    private static final int HEADER_BLOOM_HASHES_OFFSET = 64;
+    private static final int HEADER_MAGIC = 0x48454150;  // "HEAP"
+    private static final int PAGE_FORMAT_VERSION = 5;
+    
+    // Nombre maximal de pages formatées puis écrites d'un coup par le chargement direct
+    private static final int DIRECT_RUN_PAGES = 64;
     
     // PageId factice pour indiquer "fin de liste"
     private static final int INVALID_PAGE_ID = -1;
     
     /**
-     * Constructeur pour créer une nouvelle relation
+     * Constructeur pour créer une nouvelle relation (layout ROW)
      */
     public Relation(String name, List<ColumnInfo> columns, 
                     DiskManager diskManager, BufferManager bufferManager) throws IOException {
+        this(name, columns, StorageLayout.ROW, diskManager, bufferManager);
+    }
+    
+    /**
+     * Constructeur pour créer une nouvelle relation avec le layout de pages donné
+     */
+    public Relation(String name, List<ColumnInfo> columns, StorageLayout layout,
+                    DiskManager diskManager, BufferManager bufferManager) throws IOException {
         this.name = name;
         this.columns = new ArrayList<>(columns);
+        this.recordLayout = new RecordLayout(this.columns);
         this.diskManager = diskManager;
         this.bufferManager = bufferManager;
         
-        // Calculer le nombre de slots par page
-        this.slotCount = calculateSlotCount();
+        // Format des pages de données (nombre de slots, ...)
+        setLayout(layout);
+        if (hasDictionaryColumns()) {
+            dictionary = new StringDictionary(diskManager, bufferManager, null);
+        }
         
         // Allouer la Header Page
         this.headerPageId = diskManager.allocPage();
@@ -54,13 +122,16 @@ public class Relation {
      */
     public Relation(String name, List<ColumnInfo> columns,
                     PageId headerPageId,
-                    DiskManager diskManager, BufferManager bufferManager) {
+                    DiskManager diskManager, BufferManager bufferManager) throws IOException {
         this.name = name;
         this.columns = new ArrayList<>(columns);
+        this.recordLayout = new RecordLayout(this.columns);
         this.headerPageId = headerPageId;
         this.diskManager = diskManager;
         this.bufferManager = bufferManager;
-        this.slotCount = calculateSlotCount();
+        
+        // Charger l'état de la Header Page en cache (dont le layout)
+        loadHeaderPage();
     }
     
     
@@ -84,498 +155,864 @@ public class Relation {
         return columns.get(index);
     }
 
+    /**
+     * Schéma des records typés de la relation (partagé par tous ses records)
+     */
+    public Record.Schema getRecordSchema() {
+        return recordLayout.getSchema();
+    }
+    
+    /**
+     * Schéma compilé de la relation (offsets et tailles des colonnes)
+     */
+    public RecordLayout getRecordLayout() {
+        return recordLayout;
+    }
+    
+    /**
+     * Nouveau record typé vide (INT et FLOAT rangés sans objet intermédiaire)
+     */
+    public Record newRecord() {
+        return recordLayout.getSchema().newRecord();
+    }
+
     public PageId getHeaderPageId() {
         return headerPageId;
     }
     
+    /**
+     * Nombre maximal de slots d'une page de données
+     */
     public int getSlotCount() {
-        return slotCount;
+        return format.getSlotCount();
+    }
+    
+    public StorageLayout getLayout() {
+        return layout;
+    }
+    
+    /**
+     * Vrai si au moins une colonne est encodée par dictionnaire
+     */
+    public boolean hasDictionaryColumns() {
+        for (ColumnInfo col : columns) {
+            if (col.isDictionaryEncoded()) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Retourne le code d'une chaîne dans le dictionnaire de la relation
+     * @return le code, ou -1 si aucune valeur stockée n'est égale à cette chaîne
+     */
+    public int lookupDictionaryCode(String value) {
+        return dictionary == null ? -1 : dictionary.lookup(value);
+    }
+    
+    /**
+     * Retourne les pages du dictionnaire (vide si la relation n'en a pas)
+     */
+    public List<PageId> getDictionaryPages() throws IOException {
+        return dictionary == null ? new ArrayList<>() : dictionary.getPages();
+    }
+    
+    /**
+     * Retourne le nombre de records de la relation (sans parcourir les pages)
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+    
+    /**
+     * Retourne le nombre de pages de données (taille du répertoire de la FSM)
+     */
+    public int getDataPageCount() {
+        return freeSpaceMap.size();
+    }
+    
+    /**
+     * Nombre de pages de données non pleines
+     */
+    public int getFreePageCount() {
+        return freeSpaceMap.getFreeCount();
+    }
+    
+    /**
+     * Nombre de pages de données pleines
+     */
+    public int getFullPageCount() {
+        return freeSpaceMap.size() - freeSpaceMap.getFreeCount();
+    }
+    
+    /**
+     * Zone map (min / max des colonnes INT / FLOAT de chaque page de données)
+     */
+    public ZoneMap getZoneMap() {
+        return zoneMap;
+    }
+    
+    /**
+     * Filtres de Bloom par page des colonnes BLOOM
+     */
+    public BloomFilters getBloomFilters() {
+        return bloomFilters;
+    }
+    
+    /**
+     * Pages de la Free Space Map (pour DROP TABLE)
+     */
+    public List<PageId> getFreeSpaceMapPages() {
+        return new ArrayList<>(freeSpaceMap.getMapPages());
     }
 
     /**
-     * Calcule la taille totale d'un record en bytes
+     * Taille totale d'un record en bytes (calculée une fois par le RecordLayout)
      * @return taille en bytes
      */
     public int getRecordSize() {
-        int size = 0;
-        for (ColumnInfo col : columns) {
-            size += col.getSizeInBytes();
-        }
-        return size;
+        return recordLayout.getRecordSize();
     }
 
-    private int calculateSlotCount() {
-        int pageSize = diskManager.getConfig().getPageSize();
-        int recordSize = getRecordSize();
-        
-        // Espace disponible = pageSize - header (prevPage + nextPage)
-        int availableSpace = pageSize - DATA_PAGE_HEADER_SIZE;
-        
-        // Chaque slot = 1 record + 1 byte pour la bytemap
-        int bytesPerSlot = recordSize + 1;
-        
-        return availableSpace / bytesPerSlot;
+    /**
+     * Choisit le format des pages de données correspondant au layout
+     */
+    private void setLayout(StorageLayout layout) {
+        this.layout = layout;
+        this.format = DataPageFormat.create(layout, this, diskManager.getConfig().getPageSize());
+        this.forwarding = format instanceof ForwardingPageFormat ? (ForwardingPageFormat) format : null;
     }
 
     // XXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXX HEADER PAGE XXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXX
     
     /**
-     * Initialise la Header Page avec des listes vides
+     * Initialise la Header Page (aucune page de données)
      */
     private void initHeaderPage() throws IOException {
-        byte[] buffer = bufferManager.GetPage(headerPageId);
-        ByteBuffer bb = ByteBuffer.wrap(buffer);
-        
-        // fullPages = (-1, -1) -> liste vide
-        bb.putInt(INVALID_PAGE_ID);
-        bb.putInt(INVALID_PAGE_ID);
-        
-        // freePages = (-1, -1) -> liste vide
-        bb.putInt(INVALID_PAGE_ID);
-        bb.putInt(INVALID_PAGE_ID);
-        
-        bufferManager.FreePage(headerPageId, true);
+        computeBloomParameters();
+        openFreeSpaceMap(null);
+        recordCount = 0;
+        headerDirty = true;
+        saveHeaderPage();
     }
 
     /**
-     * Lit le PageId de la première page pleine depuis la Header Page
+     * Charge l'état de la Header Page dans les champs de la relation
+     * Les relations des formats 1 et 2 (listes freePages / fullPages chaînées
+     * dans les pages) sont migrées : pages du format 1 converties en bitmap,
+     * Free Space Map construite à partir des listes, compteurs recalculés.
      */
-    private PageId getFullPagesHead() throws IOException {
-        byte[] buffer = bufferManager.GetPage(headerPageId);
-        ByteBuffer bb = ByteBuffer.wrap(buffer);
-        
-        int fileIdx = bb.getInt();
-        int pageIdx = bb.getInt();
-        
-        bufferManager.FreePage(headerPageId, false);
+    private void loadHeaderPage() throws IOException {
+        int version = 1;
+        StorageLayout storedLayout = StorageLayout.ROW;
+        PageId dictionaryPage = null;
+        PageId fsmPage = null;
+        PageId legacyFullHead;
+        PageId legacyFreeHead;
+        
+        try (PageHandle header = bufferManager.GetPageHandle(headerPageId)) {
+            legacyFullHead = readPageId(header, HEADER_FULL_OFFSET);
+            legacyFreeHead = readPageId(header, HEADER_FREE_OFFSET);
+            
+            if (header.getInt(HEADER_MAGIC_OFFSET) == HEADER_MAGIC) {
+                version = header.getInt(HEADER_VERSION_OFFSET);
+                storedLayout = StorageLayout.fromCode(header.getInt(HEADER_LAYOUT_OFFSET));
+                recordCount = header.getLong(HEADER_RECORD_COUNT_OFFSET);
+                if (hasDictionaryColumns()) {
+                    dictionaryPage = readPageId(header, HEADER_DICTIONARY_OFFSET);
+                }
+                if (version >= 3) {
+                    fsmPage = readPageId(header, HEADER_FSM_OFFSET);
+                }
+                if (version >= 5) {
+                    bloomBits = header.getInt(HEADER_BLOOM_BITS_OFFSET);
+                    bloomHashes = header.getInt(HEADER_BLOOM_HASHES_OFFSET);
+                }
+            }
+        }
+        setLayout(storedLayout);
+        if (hasDictionaryColumns()) {
+            dictionary = new StringDictionary(diskManager, bufferManager, dictionaryPage);
+        }
         
-        if (fileIdx == INVALID_PAGE_ID) {
-            return null;
+        if (version != PAGE_FORMAT_VERSION) {
+            // Ancien format : construire la FSM (les compteurs sont recalculés)
+            migrateToFreeSpaceMap(version, legacyFullHead, legacyFreeHead, fsmPage);
+            headerDirty = true;
+            saveHeaderPage();
+        } else {
+            openFreeSpaceMap(fsmPage);
         }
-        return new PageId(fileIdx, pageIdx);
     }
-    
+
     /**
-     * Lit le PageId de la première page libre depuis la Header Page
+     * Crée (firstPage == null) ou charge la FSM, et la zone map et les filtres
+     * de Bloom rangés dans ses résumés
      */
-    private PageId getFreePagesHead() throws IOException {
-        byte[] buffer = bufferManager.GetPage(headerPageId);
-        ByteBuffer bb = ByteBuffer.wrap(buffer);
-        
-        // Skip fullPages
-        bb.position(8);
-        
-        int fileIdx = bb.getInt();
-        int pageIdx = bb.getInt();
-        
-        bufferManager.FreePage(headerPageId, false);
-        
-        if (fileIdx == INVALID_PAGE_ID) {
-            return null;
+    private void openFreeSpaceMap(PageId firstPage) throws IOException {
+        int zoneSize = ZoneMap.summarySize(recordLayout);
+        int bloomSize = BloomFilters.summarySize(columns, bloomBits);
+        freeSpaceMap = new FreeSpaceMap(diskManager, bufferManager, firstPage, zoneSize + bloomSize);
+        zoneMap = new ZoneMap(recordLayout, freeSpaceMap);
+        bloomFilters = new BloomFilters(columns, recordLayout, freeSpaceMap, zoneSize,
+                                        bloomBits, bloomHashes, format.getSlotCount());
+    }
+
+    /**
+     * Dimensionne les filtres de Bloom pour le taux de faux positifs de la
+     * configuration (bloom_fpr) et le nombre maximal de records d'une page.
+     * Les résumés d'une page restent sous le quart d'une page de la FSM.
+     */
+    private void computeBloomParameters() {
+        int bloomColumns = 0;
+        for (ColumnInfo col : columns) {
+            if (col.hasBloomFilter()) {
+                bloomColumns++;
+            }
+        }
+        if (bloomColumns == 0) {
+            bloomBits = 0;
+            bloomHashes = 0;
+            return;
         }
-        return new PageId(fileIdx, pageIdx);
+        int pageSize = diskManager.getConfig().getPageSize();
+        int available = pageSize / 4 - ZoneMap.summarySize(recordLayout) - 4;
+        int maxBits = Math.max(64, available / bloomColumns * 8);
+        int expected = format.getSlotCount();
+        bloomBits = BloomFilters.bitsFor(expected, diskManager.getConfig().getBloomFpr(), maxBits);
+        bloomHashes = BloomFilters.hashCountFor(bloomBits, expected);
     }
-    
+
     /**
-     * Met à jour le pointeur fullPages dans la Header Page
+     * Construit la Free Space Map (et la zone map) d'une relation d'un ancien
+     * format : à partir de ses listes chaînées (formats 1 et 2) ou de sa FSM
+     * sans résumés (format 3). Les pages du format 1 (bytemap d'un octet par
+     * slot, en fin de page) sont d'abord converties en bitmap ; chaque record
+     * garde son indice de slot.
      */
-    private void setFullPagesHead(PageId pageId) throws IOException {
-        byte[] buffer = bufferManager.GetPage(headerPageId);
-        ByteBuffer bb = ByteBuffer.wrap(buffer);
-        
-        if (pageId == null) {
-            bb.putInt(INVALID_PAGE_ID);
-            bb.putInt(INVALID_PAGE_ID);
+    private void migrateToFreeSpaceMap(int version, PageId fullHead, PageId freeHead,
+                                       PageId oldMapPage) throws IOException {
+        List<PageId> pages = new ArrayList<>();
+        if (version >= 3) {
+            // Format 3 : entrées sans résumé ; format 4 : zone map seule
+            int oldSummarySize = version >= 4 ? ZoneMap.summarySize(recordLayout) : 0;
+            FreeSpaceMap oldMap = new FreeSpaceMap(diskManager, bufferManager, oldMapPage, oldSummarySize);
+            pages.addAll(oldMap.getDataPages());
+            for (PageId pageId : oldMap.getMapPages()) {
+                diskManager.DeallocPage(pageId);
+            }
         } else {
-            bb.putInt(pageId.getFileIdx());
-            bb.putInt(pageId.getPageIdx());
+            collectListPages(freeHead, pages);
+            collectListPages(fullHead, pages);
+        }
+        
+        List<Record> overflow = new ArrayList<>();
+        if (version == 1) {
+            convertLegacyPages(pages, overflow);
+        }
+        
+        computeBloomParameters();
+        openFreeSpaceMap(null);
+        long records = 0;
+        List<PageId> freePages = new ArrayList<>();
+        List<PageId> fullPages = new ArrayList<>();
+        for (PageId pageId : pages) {
+            try (PageHandle page = bufferManager.GetPageHandle(pageId)) {
+                // Les anciens chaînages ne servent plus
+                setPrevPage(page, null);
+                setNextPage(page, null);
+                page.markDirty();
+                
+                records += countOccupiedSlots(page);
+                if (isPageFull(page)) {
+                    fullPages.add(pageId);
+                } else {
+                    freePages.add(pageId);
+                }
+            }
+        }
+        freeSpaceMap.addAll(freePages, true);
+        freeSpaceMap.addAll(fullPages, false);
+        for (PageId pageId : pages) {
+            try (PageHandle page = bufferManager.GetPageHandle(pageId)) {
+                summarizePage(pageId, page.getByteBuffer());
+            }
         }
+        recordCount = records;
+        headerDirty = true;
         
-        bufferManager.FreePage(headerPageId, true);
+        for (Record record : overflow) {
+            InsertRecord(record);
+        }
     }
-    
+
     /**
-     * Met à jour le pointeur freePages dans la Header Page
+     * Convertit les pages de données du format 1 vers le format bitmap.
+     * Les records dont le slot n'existe plus (records très larges) sont
+     * ajoutés à overflow pour être réinsérés.
      */
-    private void setFreePagesHead(PageId pageId) throws IOException {
-        byte[] buffer = bufferManager.GetPage(headerPageId);
-        ByteBuffer bb = ByteBuffer.wrap(buffer);
+    private void convertLegacyPages(List<PageId> pages, List<Record> overflow) throws IOException {
+        // Le format 1 n'existait qu'avec le layout ROW
+        FixedSlotPageFormat rowFormat = (FixedSlotPageFormat) format;
+        int slotCount = rowFormat.getSlotCount();
+        int pageSize = diskManager.getConfig().getPageSize();
+        int recordSize = getRecordSize();
+        int legacySlotCount = (pageSize - LEGACY_DATA_PAGE_HEADER_SIZE) / (recordSize + 1);
+        int legacyBytemapOffset = LEGACY_DATA_PAGE_HEADER_SIZE + legacySlotCount * recordSize;
         
-        // Skip fullPages
-        bb.position(8);
+        byte[] legacy = new byte[pageSize];
+        ByteBuffer legacyBuffer = ByteBuffer.wrap(legacy);
         
-        if (pageId == null) {
-            bb.putInt(INVALID_PAGE_ID);
-            bb.putInt(INVALID_PAGE_ID);
-        } else {
-            bb.putInt(pageId.getFileIdx());
-            bb.putInt(pageId.getPageIdx());
+        for (PageId pageId : pages) {
+            try (PageHandle page = bufferManager.GetPageHandle(pageId)) {
+                byte[] bytes = page.getBytes();
+                ByteBuffer buff = page.getByteBuffer();
+                System.arraycopy(bytes, 0, legacy, 0, pageSize);
+                Arrays.fill(bytes, DataPageFormat.BODY_OFFSET, pageSize, (byte) 0);
+                
+                for (int i = 0; i < legacySlotCount; i++) {
+                    if (legacy[legacyBytemapOffset + i] != 1) {
+                        continue;
+                    }
+                    int legacyOffset = LEGACY_DATA_PAGE_HEADER_SIZE + i * recordSize;
+                    if (i < slotCount) {
+                        System.arraycopy(legacy, legacyOffset, bytes, rowFormat.getSlotOffset(i), recordSize);
+                        rowFormat.markOccupied(buff, i);
+                    } else {
+                        // Slot hors de la nouvelle page : réinséré ensuite
+                        Record record = new Record();
+                        readFromBuffer(record, legacyBuffer, legacyOffset);
+                        overflow.add(record);
+                    }
+                }
+                page.markDirty();
+            }
         }
-        
-        bufferManager.FreePage(headerPageId, true);
     }
 
-    // XXXXXXXXXXXXXXXXXXXXXXXXXXXXXX DATA PAGE STRUCTURE XXXXXXXXXXXXXXXXXXXXXXXXXXXXX
-    
     /**
-     * Structure d'une Data Page :
-     * 
-     * Offset 0-3   : prevPage.fileIdx
-     * Offset 4-7   : prevPage.pageIdx
-     * Offset 8-11  : nextPage.fileIdx
-     * Offset 12-15 : nextPage.pageIdx
-     * Offset 16... : Slots (records)
-     * Fin de page  : Bytemap
+     * Recalcule le résumé d'une page (zone map, filtres de Bloom) à partir de ses records
      */
-    
+    private void summarizePage(PageId pageId, ByteBuffer buff) throws IOException {
+        if (freeSpaceMap.getSummarySize() == 0) {
+            return;
+        }
+        zoneMap.clear(pageId);
+        bloomFilters.clear(pageId);
+        Record record = newRecord();
+        for (int i = format.nextOccupied(buff, 0); i >= 0; i = format.nextOccupied(buff, i + 1)) {
+            format.read(buff, i, record);
+            includeInSummary(pageId, record);
+        }
+        freeSpaceMap.saveSummary(pageId);
+    }
+
     /**
-     * Calcule l'offset d'un slot dans une page de données
+     * Ajoute un record au résumé de sa page, en mémoire (voir saveSummary)
+     * @return true si le résumé a changé
      */
-    private int getSlotOffset(int slotIdx) {
-        return DATA_PAGE_HEADER_SIZE + (slotIdx * getRecordSize());
+    private boolean includeInSummary(PageId pageId, Record record) {
+        boolean zoneChanged = zoneMap.include(pageId, record);
+        boolean bloomChanged = bloomFilters.include(pageId, record);
+        return zoneChanged || bloomChanged;
     }
-    
+
     /**
-     * Calcule l'offset de la bytemap dans une page de données
+     * Écrit le résumé de la page dans sa page de la FSM
      */
-    private int getBytemapOffset() {
-        return DATA_PAGE_HEADER_SIZE + (slotCount * getRecordSize());
+    private void saveSummary(PageId pageId) throws IOException {
+        if (freeSpaceMap.getSummarySize() > 0) {
+            freeSpaceMap.saveSummary(pageId);
+        }
     }
-    
+
     /**
-     * Lit le prevPage d'une Data Page
+     * Ajoute à la liste toutes les pages d'une liste chaînée (formats 1 et 2)
      */
-    private PageId getPrevPage(ByteBuffer bb) {
-        bb.position(0);
-        int fileIdx = bb.getInt();
-        int pageIdx = bb.getInt();
-        
-        if (fileIdx == INVALID_PAGE_ID) {
-            return null;
+    private void collectListPages(PageId head, List<PageId> pages) throws IOException {
+        PageId current = head;
+        while (current != null) {
+            pages.add(current);
+            
+            try (PageHandle page = bufferManager.GetPageHandle(current)) {
+                current = getNextPage(page);
+            }
         }
-        return new PageId(fileIdx, pageIdx);
     }
-    
+
     /**
-     * Lit le nextPage d'une Data Page
+     * Écrit l'état en cache dans la Header Page, uniquement s'il a changé
      */
-    private PageId getNextPage(ByteBuffer bb) {
-        bb.position(8);
-        int fileIdx = bb.getInt();
-        int pageIdx = bb.getInt();
+    private void saveHeaderPage() throws IOException {
+        // Écrire d'abord les nouvelles chaînes du dictionnaire
+        if (dictionary != null && dictionary.hasUnsavedEntries()) {
+            PageId first = dictionary.getFirstPage();
+            dictionary.save();
+            if (!samePage(first, dictionary.getFirstPage())) {
+                headerDirty = true;
+            }
+        }
+        
+        if (!headerDirty) {
+            return;
+        }
+        
+        try (PageHandle header = bufferManager.GetPageHandle(headerPageId)) {
+            writePageId(header, HEADER_FULL_OFFSET, null);
+            writePageId(header, HEADER_FREE_OFFSET, null);
+            header.putInt(HEADER_MAGIC_OFFSET, HEADER_MAGIC);
+            header.putInt(HEADER_VERSION_OFFSET, PAGE_FORMAT_VERSION);
+            header.putInt(HEADER_FREE_COUNT_OFFSET, getFreePageCount());
+            header.putInt(HEADER_FULL_COUNT_OFFSET, getFullPageCount());
+            header.putLong(HEADER_RECORD_COUNT_OFFSET, recordCount);
+            header.putInt(HEADER_LAYOUT_OFFSET, layout.getCode());
+            writePageId(header, HEADER_DICTIONARY_OFFSET, dictionary != null ? dictionary.getFirstPage() : null);
+            writePageId(header, HEADER_FSM_OFFSET, freeSpaceMap.getFirstPage());
+            header.putInt(HEADER_BLOOM_BITS_OFFSET, bloomBits);
+            header.putInt(HEADER_BLOOM_HASHES_OFFSET, bloomHashes);
+            header.markDirty();
+        }
         
+        headerDirty = false;
+    }
+
+    /**
+     * Compare deux PageId (null = fin de liste)
+     */
+    private static boolean samePage(PageId a, PageId b) {
+        return (a == null) ? b == null : a.equals(b);
+    }
+
+    /**
+     * Lit un PageId (fileIdx, pageIdx) à l'offset donné
+     * Retourne null si c'est le marqueur "fin de liste"
+     */
+    private static PageId readPageId(PageHandle page, int offset) {
+        int fileIdx = page.getInt(offset);
         if (fileIdx == INVALID_PAGE_ID) {
             return null;
         }
-        return new PageId(fileIdx, pageIdx);
+        return new PageId(fileIdx, page.getInt(offset + 4));
     }
-    
+
     /**
-     * Écrit le prevPage dans une Data Page
+     * Écrit un PageId (fileIdx, pageIdx) à l'offset donné
+     * null est écrit comme le marqueur "fin de liste" (-1, -1)
      */
-    private void setPrevPage(ByteBuffer bb, PageId pageId) {
-        bb.position(0);
+    private static void writePageId(PageHandle page, int offset, PageId pageId) {
         if (pageId == null) {
-            bb.putInt(INVALID_PAGE_ID);
-            bb.putInt(INVALID_PAGE_ID);
+            page.putInt(offset, INVALID_PAGE_ID);
+            page.putInt(offset + 4, INVALID_PAGE_ID);
         } else {
-            bb.putInt(pageId.getFileIdx());
-            bb.putInt(pageId.getPageIdx());
+            page.putInt(offset, pageId.getFileIdx());
+            page.putInt(offset + 4, pageId.getPageIdx());
         }
     }
+
+    // XXXXXXXXXXXXXXXXXXXXXXXXXXXXXX DATA PAGE STRUCTURE XXXXXXXXXXXXXXXXXXXXXXXXXXXXX
     
     /**
-     * Écrit le nextPage dans une Data Page
+     * Structure d'une Data Page (format 3) :
+     * 
+     * Offset 0-15  : réservé, à -1 (prevPage / nextPage des listes chaînées
+     *                jusqu'au format 2, lus seulement pour la migration)
+     * Offset 16... : contenu géré par le DataPageFormat du layout
+     *                (FixedSlotPageFormat, SlottedPageFormat, ColumnarPageFormat)
      */
-    private void setNextPage(ByteBuffer bb, PageId pageId) {
-        bb.position(8);
-        if (pageId == null) {
-            bb.putInt(INVALID_PAGE_ID);
-            bb.putInt(INVALID_PAGE_ID);
-        } else {
-            bb.putInt(pageId.getFileIdx());
-            bb.putInt(pageId.getPageIdx());
-        }
+    
+    /**
+     * Lit le nextPage d'une Data Page
+     */
+    private PageId getNextPage(PageHandle page) {
+        return readPageId(page, 8);
     }
     
     /**
-     * Compte le nombre de slots occupés dans une page
+     * Écrit le prevPage dans une Data Page
      */
-    private int countOccupiedSlots(ByteBuffer bb) {
-        int count = 0;
-        int bytemapOffset = getBytemapOffset();
-        
-        for (int i = 0; i < slotCount; i++) {
-            if (bb.get(bytemapOffset + i) == 1) {
-                count++;
-            }
-        }
-        return count;
+    private void setPrevPage(PageHandle page, PageId pageId) {
+        writePageId(page, 0, pageId);
+    }
+    
+    /**
+     * Écrit le nextPage dans une Data Page
+     */
+    private void setNextPage(PageHandle page, PageId pageId) {
+        writePageId(page, 8, pageId);
     }
     
     /**
-     * Trouve le premier slot libre dans une page
-     * Retourne -1 si aucun slot libre
+     * Retourne le nombre de slots occupés dans une page
      */
-    private int findFreeSlot(ByteBuffer bb) {
-        int bytemapOffset = getBytemapOffset();
-        
-        for (int i = 0; i < slotCount; i++) {
-            if (bb.get(bytemapOffset + i) == 0) {
-                return i;
-            }
-        }
-        return -1;
+    private int countOccupiedSlots(PageHandle page) {
+        return format.getOccupiedCount(page.getByteBuffer());
     }
     
     /**
      * Vérifie si la page est pleine
      */
-    private boolean isPageFull(ByteBuffer bb) {
-        return findFreeSlot(bb) == -1;
+    private boolean isPageFull(PageHandle page) {
+        return format.isFull(page.getByteBuffer());
     }
     
     /**
      * Vérifie si la page est vide
      */
-    private boolean isPageEmpty(ByteBuffer bb) {
-        return countOccupiedSlots(bb) == 0;
+    private boolean isPageEmpty(PageHandle page) {
+        return format.isEmpty(page.getByteBuffer());
     }
 
-    // XXXXXXXXXXXXXXXXXXXXXXX C2: ADD DATA PAGE XXXXXXXXXXXXXXXXXXXXXXXXXXXXX
-    
     /**
-     * Ajoute une nouvelle page de données au Heap File
+     * Indique si un slot d'une page de données (épinglée) contient un record
      */
-    public void addDataPage() throws IOException {
-        // Allouer une nouvelle page
-        PageId newPageId = diskManager.allocPage();
-        
-        // Récupérer l'ancienne tête de freePages
-        PageId oldHead = getFreePagesHead();
+    public boolean isSlotOccupied(PageHandle page, int slotIdx) {
+        return format.isOccupied(page.getByteBuffer(), slotIdx);
+    }
+
+    /**
+     * Retourne le premier slot occupé d'indice >= fromSlot
+     * @return l'indice du slot, ou -1 s'il n'y en a plus dans la page
+     */
+    public int nextOccupiedSlot(PageHandle page, int fromSlot) {
+        return format.nextOccupied(page.getByteBuffer(), fromSlot);
+    }
+
+    /**
+     * Lit le record d'un slot d'une page de données (épinglée)
+     * @param page la page
+     * @param slotIdx indice du slot (doit être occupé)
+     * @param record le record à remplir
+     */
+    public void readRecordFromSlot(PageHandle page, int slotIdx, Record record) {
+        format.read(page.getByteBuffer(), slotIdx, record);
+    }
+
+    /**
+     * Lit un record déplacé hors de sa page, à travers le renvoi de son slot
+     * (layout SLOTTED, voir relocate)
+     */
+    void readMovedRecord(RecordId moved, Record record) {
+        try (PageHandle page = bufferManager.GetPageHandle(moved.getPageId())) {
+            format.read(page.getByteBuffer(), moved.getSlotIdx(), record);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Réécrit le record d'un slot d'une page de données (épinglée)
+     * L'appelant doit marquer la page dirty.
+     * Avec des records de taille variable, la page peut devenir pleine ou
+     * non pleine dans la FSM ; son RecordId reste le même (un record qui ne
+     * tient plus dans sa page est déplacé, voir relocate).
+     */
+    public void writeRecordToSlot(PageHandle page, int slotIdx, Record record) throws IOException {
+        ByteBuffer buff = page.getByteBuffer();
+        boolean wasFull = format.isFull(buff);
         
-        // Initialiser la nouvelle page
-        byte[] buffer = bufferManager.GetPage(newPageId);
-        ByteBuffer bb = ByteBuffer.wrap(buffer);
+        if (format.getForward(buff, slotIdx) != null || !format.update(buff, slotIdx, record)) {
+            relocate(page, slotIdx, record);
+        }
+        // L'ancienne version du record reste dans les filtres de Bloom
+        boolean zoneChanged = includeInSummary(page.getPageId(), record);
+        if (bloomFilters.noteRemoved(page.getPageId()) || zoneChanged) {
+            saveSummary(page.getPageId());
+        }
         
-        // prevPage = null (c'est la nouvelle tête)
-        setPrevPage(bb, null);
+        boolean full = format.isFull(buff);
+        if (full && !wasFull) {
+            markPageFull(page.getPageId());
+        } else if (!full && wasFull) {
+            markPageFree(page.getPageId());
+        }
         
-        // nextPage = ancienne tête
-        setNextPage(bb, oldHead);
+        // FSM modifiée ou nouvelles chaînes du dictionnaire
+        saveHeaderPage();
+    }
+
+    /**
+     * Remplace les valeurs de quelques colonnes d'un slot (UPDATE) dans la page épinglée
+     * En layout ROW / COLUMNAR, seuls les bytes des colonnes modifiées sont
+     * réécrits, à leur position fixe ; en layout SLOTTED le record est réécrit
+     * (et déplacé s'il ne tient plus dans sa page, voir relocate).
+     * L'appelant doit marquer la page dirty.
+     * @param colIndices indices des colonnes modifiées
+     * @param values nouvelles valeurs (values[k] pour la colonne colIndices[k])
+     */
+    public void updateColumns(PageHandle page, int slotIdx, int[] colIndices, Object[] values) throws IOException {
+        if (colIndices.length != values.length) {
+            throw new IllegalArgumentException(
+                colIndices.length + " colonnes mais " + values.length + " valeurs");
+        }
+        ByteBuffer buff = page.getByteBuffer();
+        boolean wasFull = format.isFull(buff);
+        
+        if (format.getForward(buff, slotIdx) != null
+                || !format.updateColumns(buff, slotIdx, colIndices, values)) {
+            Record record = newRecord();
+            readRecordFromSlot(page, slotIdx, record);
+            for (int k = 0; k < colIndices.length; k++) {
+                record.setValue(colIndices[k], values[k]);
+            }
+            relocate(page, slotIdx, record);
+        }
+        boolean zoneChanged = zoneMap.include(page.getPageId(), colIndices, values);
+        if (bloomFilters.include(page.getPageId(), colIndices, values) || zoneChanged) {
+            saveSummary(page.getPageId());
+        }
         
-        // Initialiser la bytemap à 0 (tous les slots libres)
-        int bytemapOffset = getBytemapOffset();
-        for (int i = 0; i < slotCount; i++) {
-            bb.put(bytemapOffset + i, (byte) 0);
+        boolean full = format.isFull(buff);
+        if (full && !wasFull) {
+            markPageFull(page.getPageId());
+        } else if (!full && wasFull) {
+            markPageFree(page.getPageId());
         }
         
-        bufferManager.FreePage(newPageId, true);
+        // FSM modifiée ou nouvelles chaînes du dictionnaire
+        saveHeaderPage();
+    }
+    
+    /**
+     * Réécrit un record qui ne tient plus dans sa page, ou qui en a déjà été
+     * déplacé (layout SLOTTED) : il est rangé dans une page non pleine de la
+     * FSM et son slot devient un renvoi vers lui, le RecordId ne change pas.
+     * Un record déjà déplacé revient dans sa page s'il y tient de nouveau.
+     * Les résumés de la page d'origine sont mis à jour par l'appelant
+     * (les parcours lisent le record à travers son renvoi).
+     */
+    private void relocate(PageHandle page, int slotIdx, Record record) throws IOException {
+        if (forwarding == null) {
+            // Layouts à slots fixes : update réussit toujours, aucun renvoi
+            throw new IllegalStateException("Layout " + layout + " : records non déplaçables");
+        }
+        ByteBuffer buff = page.getByteBuffer();
+        RecordId previous = format.getForward(buff, slotIdx);
+        if (previous != null) {
+            releaseSlot(previous.getPageId(), previous.getSlotIdx());
+            if (format.update(buff, slotIdx, record)) {
+                return;
+            }
+        }
         
-        // Si l'ancienne tête existe, mettre à jour son prevPage
-        if (oldHead != null) {
-            byte[] oldBuffer = bufferManager.GetPage(oldHead);
-            ByteBuffer oldBb = ByteBuffer.wrap(oldBuffer);
-            setPrevPage(oldBb, newPageId);
-            bufferManager.FreePage(oldHead, true);
+        PageId targetId = getFreeDataPageId(getRecordSize());
+        if (targetId == null) {
+            addDataPage();
+            targetId = getFreeDataPageId(getRecordSize());
         }
         
-        // Mettre à jour la Header Page
-        setFreePagesHead(newPageId);
+        int movedSlot;
+        boolean full;
+        try (PageHandle target = bufferManager.GetPageHandle(targetId)) {
+            movedSlot = forwarding.insertMoved(target.getByteBuffer(), record, new RecordId(page.getPageId(), slotIdx));
+            if (movedSlot < 0) {
+                throw new IOException("Record trop grand pour une page de données : " + record);
+            }
+            target.markDirty();
+            full = isPageFull(target);
+        }
+        if (full) {
+            markPageFull(targetId);
+        }
+        forwarding.setForward(buff, slotIdx, new RecordId(targetId, movedSlot));
     }
 
-    // XXXXXXXXXXXXXXXXXXXXXXXXXXXXX C3: GET FREE DATA PAGE XXXXXXXXXXXXXXXXXXXXXXXX
-    
     /**
-     * Retourne une page avec de l'espace libre
-     * Retourne null si aucune page disponible
+     * Prépare un UPDATE avant qu'aucun record ne soit modifié : les nouvelles
+     * chaînes des colonnes DICT sont ajoutées au dictionnaire et écrites dans
+     * ses pages. Une valeur refusée lève l'exception ici, et non au milieu
+     * des records déjà réécrits.
+     * @param colIndices indices des colonnes modifiées
+     * @param values nouvelles valeurs (values[k] pour la colonne colIndices[k])
      */
-    public PageId getFreeDataPageId(int sizeRecord) throws IOException {
-        PageId current = getFreePagesHead();
-        
-        while (current != null) {
-            byte[] buffer = bufferManager.GetPage(current);
-            ByteBuffer bb = ByteBuffer.wrap(buffer);
-            
-            // Vérifier s'il y a un slot libre
-            if (!isPageFull(bb)) {
-                bufferManager.FreePage(current, false);
-                return current;
+    public void prepareUpdate(int[] colIndices, Object[] values) throws IOException {
+        if (colIndices.length != values.length) {
+            throw new IllegalArgumentException(
+                colIndices.length + " colonnes mais " + values.length + " valeurs");
+        }
+        for (int k = 0; k < colIndices.length; k++) {
+            if (!columns.get(colIndices[k]).isDictionaryEncoded()) {
+                continue;
             }
-            
-            // Passer à la page suivante
-            PageId next = getNextPage(bb);
-            bufferManager.FreePage(current, false);
-            current = next;
+            String value = recordLayout.toDictionaryValue(colIndices[k], values[k]);
+            if (!dictionary.fitsInPage(value)) {
+                throw new IOException("Chaîne trop longue pour une page du dictionnaire : " + value);
+            }
+            dictionary.encode(value);
         }
-        
-        return null;
+        // Nouvelles chaînes du dictionnaire
+        saveHeaderPage();
     }
 
-    // ==================== C4: WRITE RECORD TO DATA PAGE ====================
-    
     /**
-     * Écrit un record dans une page de données
-     * Retourne le RecordId du record écrit
+     * Remplace les valeurs de quelques colonnes d'un record (voir updateColumns ci-dessus)
      */
-    public RecordId writeRecordToDataPage(Record record, PageId pageId) throws IOException {
-        byte[] buffer = bufferManager.GetPage(pageId);
-        ByteBuffer bb = ByteBuffer.wrap(buffer);
-        
-        // Trouver un slot libre
-        int slotIdx = findFreeSlot(bb);
-        
-        // Écrire le record dans le slot
-        int slotOffset = getSlotOffset(slotIdx);
-        writeRecordToBuffer(record, bb, slotOffset);
-        
-        // Marquer le slot comme occupé dans la bytemap
-        int bytemapOffset = getBytemapOffset();
-        bb.put(bytemapOffset + slotIdx, (byte) 1);
-        
-        // Si la page devient pleine, la déplacer vers fullPages
-        if (isPageFull(bb)) {
-            bufferManager.FreePage(pageId, true);
-            movePageToFullList(pageId);
-        } else {
-            bufferManager.FreePage(pageId, true);
+    public void updateColumns(RecordId rid, int[] colIndices, Object[] values) throws IOException {
+        try (PageHandle page = bufferManager.GetPageHandle(rid.getPageId())) {
+            if (!isSlotOccupied(page, rid.getSlotIdx())) {
+                throw new IllegalArgumentException("Aucun record à " + rid);
+            }
+            updateColumns(page, rid.getSlotIdx(), colIndices, values);
+            page.markDirty();
         }
-        
-        return new RecordId(pageId, slotIdx);
     }
-    
+
     /**
-     * Déplace une page de freePages vers fullPages
+     * Lit la valeur d'une seule colonne d'un slot occupé, sans décoder le record entier
+     * (sauf en layout SLOTTED, où les valeurs n'ont pas de position fixe)
      */
-    private void movePageToFullList(PageId pageId) throws IOException {
-        // Retirer de freePages
-        removeFromFreeList(pageId);
-        
-        // Ajouter à fullPages
-        addToFullList(pageId);
+    public Object readColumnValue(PageHandle page, int slotIdx, int colIdx) {
+        return format.readColumnValue(page.getByteBuffer(), slotIdx, colIdx);
     }
-    
+
     /**
-     * Déplace une page de fullPages vers freePages
+     * Lit la valeur d'une colonne INT d'un slot occupé, sans objet intermédiaire
+     * (la colonne doit être de type INT)
      */
-    private void movePageToFreeList(PageId pageId) throws IOException {
-        // Retirer de fullPages
-        removeFromFullList(pageId);
-        
-        // Ajouter à freePages
-        addToFreeList(pageId);
+    public int readIntValue(PageHandle page, int slotIdx, int colIdx) {
+        return format.readIntValue(page.getByteBuffer(), slotIdx, colIdx);
     }
-    
+
     /**
-     * Retire une page de la liste freePages
+     * Lit la valeur d'une colonne FLOAT d'un slot occupé (voir readIntValue)
      */
-    private void removeFromFreeList(PageId pageId) throws IOException {
-        byte[] buffer = bufferManager.GetPage(pageId);
-        ByteBuffer bb = ByteBuffer.wrap(buffer);
-        
-        PageId prev = getPrevPage(bb);
-        PageId next = getNextPage(bb);
-        
-        bufferManager.FreePage(pageId, false);
-        
-        // Mettre à jour le lien prev -> next
-        if (prev != null) {
-            byte[] prevBuffer = bufferManager.GetPage(prev);
-            ByteBuffer prevBb = ByteBuffer.wrap(prevBuffer);
-            setNextPage(prevBb, next);
-            bufferManager.FreePage(prev, true);
-        } else {
-            // C'était la tête de liste
-            setFreePagesHead(next);
+    public float readFloatValue(PageHandle page, int slotIdx, int colIdx) {
+        return format.readFloatValue(page.getByteBuffer(), slotIdx, colIdx);
+    }
+
+    /**
+     * Lit le code stocké pour une colonne DICT d'un slot occupé, sans décoder la chaîne
+     */
+    public int readColumnCode(PageHandle page, int slotIdx, int colIdx) {
+        if (!columns.get(colIdx).isDictionaryEncoded()) {
+            throw new IllegalArgumentException("La colonne " + columns.get(colIdx) + " n'est pas encodée par dictionnaire");
         }
-        
-        // Mettre à jour le lien next -> prev
-        if (next != null) {
-            byte[] nextBuffer = bufferManager.GetPage(next);
-            ByteBuffer nextBb = ByteBuffer.wrap(nextBuffer);
-            setPrevPage(nextBb, prev);
-            bufferManager.FreePage(next, true);
+        return format.readColumnCode(page.getByteBuffer(), slotIdx, colIdx);
+    }
+
+    /**
+     * Copie les valeurs d'une colonne INT de la page : dest[slotIdx] pour chaque
+     * slot occupé (dest doit contenir getSlotCount() cases).
+     * En layout COLUMNAR, c'est une copie d'un tableau contigu.
+     */
+    public void readIntColumn(PageHandle page, int colIdx, int[] dest) {
+        if (!columns.get(colIdx).isInt()) {
+            throw new IllegalArgumentException("La colonne " + columns.get(colIdx) + " n'est pas de type INT");
+        }
+        format.readIntColumn(page.getByteBuffer(), colIdx, dest);
+    }
+
+    /**
+     * Copie les valeurs d'une colonne FLOAT de la page (voir readIntColumn)
+     */
+    public void readFloatColumn(PageHandle page, int colIdx, float[] dest) {
+        if (!columns.get(colIdx).isFloat()) {
+            throw new IllegalArgumentException("La colonne " + columns.get(colIdx) + " n'est pas de type FLOAT");
         }
+        format.readFloatColumn(page.getByteBuffer(), colIdx, dest);
     }
+
+    // XXXXXXXXXXXXXXXXXXXXXXX C2: ADD DATA PAGE XXXXXXXXXXXXXXXXXXXXXXXXXXXXX
     
     /**
-     * Retire une page de la liste fullPages
+     * Ajoute une nouvelle page de données au Heap File
      */
-    private void removeFromFullList(PageId pageId) throws IOException {
-        byte[] buffer = bufferManager.GetPage(pageId);
-        ByteBuffer bb = ByteBuffer.wrap(buffer);
-        
-        PageId prev = getPrevPage(bb);
-        PageId next = getNextPage(bb);
-        
-        bufferManager.FreePage(pageId, false);
+    public void addDataPage() throws IOException {
+        // Allouer une nouvelle page
+        PageId newPageId = diskManager.allocPage();
         
-        // Mettre à jour le lien prev -> next
-        if (prev != null) {
-            byte[] prevBuffer = bufferManager.GetPage(prev);
-            ByteBuffer prevBb = ByteBuffer.wrap(prevBuffer);
-            setNextPage(prevBb, next);
-            bufferManager.FreePage(prev, true);
-        } else {
-            // C'était la tête de liste
-            setFullPagesHead(next);
+        // Initialiser la nouvelle page
+        try (PageHandle page = bufferManager.GetPageHandle(newPageId)) {
+            setPrevPage(page, null);
+            setNextPage(page, null);
+            
+            // Page vide selon le format (tous les slots libres)
+            format.initPage(page.getByteBuffer());
+            
+            page.markDirty();
         }
         
-        // Mettre à jour le lien next -> prev
-        if (next != null) {
-            byte[] nextBuffer = bufferManager.GetPage(next);
-            ByteBuffer nextBb = ByteBuffer.wrap(nextBuffer);
-            setPrevPage(nextBb, prev);
-            bufferManager.FreePage(next, true);
-        }
+        // L'ajouter au répertoire ; elle devient la cible des insertions
+        freeSpaceMap.add(newPageId, true);
+        insertHint = newPageId;
+        headerDirty = true;
+        saveHeaderPage();
     }
+
+    // XXXXXXXXXXXXXXXXXXXXXXXXXXXXX C3: GET FREE DATA PAGE XXXXXXXXXXXXXXXXXXXXXXXX
     
     /**
-     * Ajoute une page en tête de freePages
+     * Retourne une page avec de l'espace libre
+     * Retourne null si aucune page disponible
+     * 
+     * La page cible courante est retournée tant qu'elle n'est pas pleine ;
+     * sinon la page est cherchée dans la bitmap de la Free Space Map,
+     * sans épingler de page de données.
      */
-    private void addToFreeList(PageId pageId) throws IOException {
-        PageId oldHead = getFreePagesHead();
-        
-        byte[] buffer = bufferManager.GetPage(pageId);
-        ByteBuffer bb = ByteBuffer.wrap(buffer);
-        
-        setPrevPage(bb, null);
-        setNextPage(bb, oldHead);
-        
-        bufferManager.FreePage(pageId, true);
-        
-        if (oldHead != null) {
-            byte[] oldBuffer = bufferManager.GetPage(oldHead);
-            ByteBuffer oldBb = ByteBuffer.wrap(oldBuffer);
-            setPrevPage(oldBb, pageId);
-            bufferManager.FreePage(oldHead, true);
+    public PageId getFreeDataPageId(int sizeRecord) throws IOException {
+        if (insertHint == null) {
+            insertHint = freeSpaceMap.findFreePage();
         }
-        
-        setFreePagesHead(pageId);
+        return insertHint;
     }
+
+    // ==================== C4: WRITE RECORD TO DATA PAGE ====================
     
     /**
-     * Ajoute une page en tête de fullPages
+     * Écrit un record dans une page de données
+     * Retourne le RecordId du record écrit
      */
-    private void addToFullList(PageId pageId) throws IOException {
-        PageId oldHead = getFullPagesHead();
-        
-        byte[] buffer = bufferManager.GetPage(pageId);
-        ByteBuffer bb = ByteBuffer.wrap(buffer);
+    public RecordId writeRecordToDataPage(Record record, PageId pageId) throws IOException {
+        int slotIdx;
+        boolean full;
+        
+        try (PageHandle page = bufferManager.GetPageHandle(pageId)) {
+            // Ranger le record dans un slot libre
+            slotIdx = format.insert(page.getByteBuffer(), record);
+            if (slotIdx < 0) {
+                throw new IOException("Record trop grand pour une page de données : " + record);
+            }
+            page.markDirty();
+            
+            // Résumé de la page : filtres reconstruits après beaucoup de suppressions
+            if (bloomFilters.needsRebuild(pageId)) {
+                summarizePage(pageId, page.getByteBuffer());
+            } else if (includeInSummary(pageId, record)) {
+                saveSummary(pageId);
+            }
+            
+            full = isPageFull(page);
+        }
         
-        setPrevPage(bb, null);
-        setNextPage(bb, oldHead);
+        // Si la page devient pleine, son bit est effacé dans la FSM
+        if (full) {
+            markPageFull(pageId);
+        }
         
-        bufferManager.FreePage(pageId, true);
+        recordCount++;
+        headerDirty = true;
+        saveHeaderPage();
         
-        if (oldHead != null) {
-            byte[] oldBuffer = bufferManager.GetPage(oldHead);
-            ByteBuffer oldBb = ByteBuffer.wrap(oldBuffer);
-            setPrevPage(oldBb, pageId);
-            bufferManager.FreePage(oldHead, true);
+        return new RecordId(pageId, slotIdx);
+    }
+    
+    /**
+     * Marque une page comme pleine dans la FSM (elle n'est plus cible des insertions)
+     */
+    private void markPageFull(PageId pageId) throws IOException {
+        freeSpaceMap.setFree(pageId, false);
+        if (samePage(pageId, insertHint)) {
+            insertHint = null;
         }
-        
-        setFullPagesHead(pageId);
+        headerDirty = true;
+    }
+    
+    /**
+     * Marque une page comme non pleine dans la FSM
+     */
+    private void markPageFree(PageId pageId) throws IOException {
+        freeSpaceMap.setFree(pageId, true);
+        headerDirty = true;
     }
 
     // XXXXXXXXXXXXXXXXXXXXXX C5: GET RECORDS IN DATA PAGE XXXXXXXXXXXXXXXXXXXXXXXXXX
@@ -586,23 +1023,15 @@ public class Relation {
     public List<Record> getRecordsInDataPage(PageId pageId) throws IOException {
         List<Record> records = new ArrayList<>();
         
-        byte[] buffer = bufferManager.GetPage(pageId);
-        ByteBuffer bb = ByteBuffer.wrap(buffer);
-        
-        int bytemapOffset = getBytemapOffset();
-        
-        for (int i = 0; i < slotCount; i++) {
-            // Vérifier si le slot est occupé
-            if (bb.get(bytemapOffset + i) == 1) {
-                Record record = new Record();
-                int slotOffset = getSlotOffset(i);
-                readFromBuffer(record, bb, slotOffset);
+        try (PageHandle page = bufferManager.GetPageHandle(pageId)) {
+            // Parcourir uniquement les slots occupés
+            for (int i = nextOccupiedSlot(page, 0); i >= 0; i = nextOccupiedSlot(page, i + 1)) {
+                Record record = newRecord();
+                readRecordFromSlot(page, i, record);
                 records.add(record);
             }
         }
         
-        bufferManager.FreePage(pageId, false);
-        
         return records;
     }
 
@@ -610,33 +1039,38 @@ public class Relation {
     
     /**
      * Retourne la liste de toutes les pages de données
+     * (lue dans le répertoire de la FSM, sans épingler de page)
      */
     public List<PageId> getDataPages() throws IOException {
-        List<PageId> pages = new ArrayList<>();
-        
-        // Parcourir freePages
-        PageId current = getFreePagesHead();
-        while (current != null) {
-            pages.add(current);
-            
-            byte[] buffer = bufferManager.GetPage(current);
-            ByteBuffer bb = ByteBuffer.wrap(buffer);
-            current = getNextPage(bb);
-            bufferManager.FreePage(pages.get(pages.size() - 1), false);
+        return new ArrayList<>(freeSpaceMap.getDataPages());
+    }
+
+    /**
+     * Page de données à la position index du répertoire (0 <= index < getDataPageCount()),
+     * sans copier le répertoire ni épingler de page
+     * L'ordre du répertoire change quand une page vidée en est retirée.
+     */
+    public PageId getDataPage(int index) {
+        return freeSpaceMap.getDataPage(index);
+    }
+    
+    /**
+     * Découpe le répertoire en au plus parts intervalles [from, to) de pages
+     * contiguës et de tailles égales à une page près (parcours partitionnés)
+     */
+    public List<int[]> splitDataPages(int parts) {
+        if (parts <= 0) {
+            throw new IllegalArgumentException("Nombre de parties invalide : " + parts);
         }
-        
-        // Parcourir fullPages
-        current = getFullPagesHead();
-        while (current != null) {
-            pages.add(current);
-            
-            byte[] buffer = bufferManager.GetPage(current);
-            ByteBuffer bb = ByteBuffer.wrap(buffer);
-            current = getNextPage(bb);
-            bufferManager.FreePage(pages.get(pages.size() - 1), false);
+        int count = getDataPageCount();
+        int n = Math.min(parts, count);
+        List<int[]> ranges = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int from = (int) ((long) count * i / n);
+            int to = (int) ((long) count * (i + 1) / n);
+            ranges.add(new int[]{from, to});
         }
-        
-        return pages;
+        return ranges;
     }
 
     // XXXXXXXXXXXXXXXXXXXXXX C7: API XXXXXXXXXXXXXXXXXXXXX
@@ -660,160 +1094,426 @@ public class Relation {
     }
     
     /**
-     * Retourne tous les records de la relation
+     * Insère une suite de records en remplissant les pages une à une :
+     * chaque page cible n'est épinglée qu'une fois, tous ses slots libres sont
+     * remplis, puis elle passe dans fullPages avant l'allocation de la suivante.
+     * La Header Page n'est réécrite qu'une fois à la fin.
+     * @return les RecordId des records insérés, dans l'ordre de l'itérateur
      */
-    public List<Record> GetAllRecords() throws IOException {
-        List<Record> allRecords = new ArrayList<>();
-        
-        List<PageId> pages = getDataPages();
-        
-        for (PageId pageId : pages) {
-            List<Record> pageRecords = getRecordsInDataPage(pageId);
-            allRecords.addAll(pageRecords);
+    public List<RecordId> InsertRecords(Iterator<Record> records) throws IOException {
+        List<RecordId> rids = new ArrayList<>();
+        Record pending = null;  // record qui n'a pas trouvé de place dans la page précédente
+        
+        while (pending != null || records.hasNext()) {
+            // Chercher une page avec de l'espace, sinon en créer une (nouvelle cible)
+            PageId pageId = getFreeDataPageId(getRecordSize());
+            if (pageId == null) {
+                addDataPage();
+                pageId = insertHint;
+            }
+            
+            boolean full;
+            boolean summaryChanged = false;
+            try (PageHandle page = bufferManager.GetPageHandle(pageId)) {
+                ByteBuffer buff = page.getByteBuffer();
+                if (bloomFilters.needsRebuild(pageId)) {
+                    summarizePage(pageId, buff);
+                }
+                while (!format.isFull(buff) && (pending != null || records.hasNext())) {
+                    Record record = pending != null ? pending : records.next();
+                    int slotIdx = format.insert(buff, record);
+                    if (slotIdx < 0) {
+                        if (format.isEmpty(buff)) {
+                            throw new IOException("Record trop grand pour une page de données : " + record);
+                        }
+                        pending = record;
+                        break;
+                    }
+                    pending = null;
+                    rids.add(new RecordId(pageId, slotIdx));
+                    summaryChanged |= includeInSummary(pageId, record);
+                    recordCount++;
+                }
+                page.markDirty();
+                
+                full = isPageFull(page);
+            }
+            
+            // Une seule mise à jour de la FSM par page remplie
+            if (summaryChanged) {
+                saveSummary(pageId);
+            }
+            if (full) {
+                markPageFull(pageId);
+            }
+            headerDirty = true;
         }
         
-        return allRecords;
+        saveHeaderPage();
+        return rids;
     }
     
     /**
-     * Supprime un record de la relation
+     * Insère une liste de records (voir InsertRecords(Iterator))
      */
-    public void DeleteRecord(RecordId rid) throws IOException {
-        PageId pageId = rid.getPageId();
-        int slotIdx = rid.getSlotIdx();
-        
-        byte[] buffer = bufferManager.GetPage(pageId);
-        ByteBuffer bb = ByteBuffer.wrap(buffer);
-        
-        // Vérifier si la page était pleine avant suppression
-        boolean wasFull = isPageFull(bb);
+    public List<RecordId> InsertRecords(List<Record> records) throws IOException {
+        return InsertRecords(records.iterator());
+    }
+    
+    /**
+     * Chargement direct : les records sont rangés dans des pages pleines
+     * formatées en mémoire privée, allouées contiguës en fin de fichier puis
+     * écrites d'un bloc par le DiskManager, sans passer par le buffer pool.
+     * Chaque groupe de pages est ajouté à la FSM en une seule opération.
+     * Les records restants (dernière page incomplète) passent par InsertRecords.
+     * @return le nombre de records chargés
+     */
+    public long LoadRecordsDirect(Iterator<Record> records) throws IOException {
+        int pageSize = diskManager.getConfig().getPageSize();
+        byte[] run = new byte[DIRECT_RUN_PAGES * pageSize];
+        ByteBuffer[] pages = new ByteBuffer[DIRECT_RUN_PAGES];
+        for (int i = 0; i < DIRECT_RUN_PAGES; i++) {
+            pages[i] = ByteBuffer.wrap(run, i * pageSize, pageSize).slice();
+        }
         
-        // Marquer le slot comme libre
-        int bytemapOffset = getBytemapOffset();
-        bb.put(bytemapOffset + slotIdx, (byte) 0);
+        int pagesInRun = 0;
+        long runRecords = 0;
+        long loaded = 0;
+        Record pending = null;  // record qui n'a pas trouvé de place dans la page précédente
+        format.initPage(pages[0]);
         
-        // Vérifier si la page devient vide
-        if (isPageEmpty(bb)) {
-            bufferManager.FreePage(pageId, true);
-            
-            // Retirer de la liste appropriée
-            if (wasFull) {
-                removeFromFullList(pageId);
-            } else {
-                removeFromFreeList(pageId);
+        while (pending != null || records.hasNext()) {
+            Record record = pending != null ? pending : records.next();
+            if (pending == null) {
+                loaded++;
             }
+            ByteBuffer page = pages[pagesInRun];
             
-            // Désallouer la page
-            diskManager.DeallocPage(pageId);
-            
-        } else if (wasFull) {
-            // La page était pleine et ne l'est plus
-            bufferManager.FreePage(pageId, true);
-            movePageToFreeList(pageId);
+            pending = null;
+            if (format.insert(page, record) < 0) {
+                if (format.isEmpty(page)) {
+                    throw new IOException("Record trop grand pour une page de données : " + record);
+                }
+                pending = record;
+            }
             
-        } else {
-            bufferManager.FreePage(pageId, true);
+            if (format.isFull(page)) {
+                // Page terminée : passer à la suivante du groupe
+                runRecords += format.getOccupiedCount(page);
+                pagesInRun++;
+                
+                if (pagesInRun == DIRECT_RUN_PAGES) {
+                    writeDirectRun(run, pagesInRun, runRecords);
+                    pagesInRun = 0;
+                    runRecords = 0;
+                }
+                format.initPage(pages[pagesInRun]);
+            }
+        }
+        
+        if (pagesInRun > 0) {
+            writeDirectRun(run, pagesInRun, runRecords);
+        }
+        
+        // Dernière page incomplète : relire ses records et les insérer normalement
+        ByteBuffer last = pages[pagesInRun];
+        List<Record> remaining = new ArrayList<>();
+        for (int i = format.nextOccupied(last, 0); i >= 0; i = format.nextOccupied(last, i + 1)) {
+            Record record = new Record();
+            format.read(last, i, record);
+            remaining.add(record);
+        }
+        if (!remaining.isEmpty()) {
+            InsertRecords(remaining);
         }
-    }
-
         
+        saveHeaderPage();
+        return loaded;
+    }
+    
     /**
-     * Écrit un record dans le buffer à la position donnée
-     * Format à taille fixe : chaque valeur est écrite sur un nombre fixe de bytes
-     * 
-     * @param record le record à écrire
-     * @param buff le buffer (ByteBuffer)
-     * @param pos la position de départ dans le buffer
+     * Alloue pageCount pages contiguës, les écrit d'un bloc, puis les ajoute
+     * (pleines) à la FSM et met à jour l'état du header
      */
-    public void writeRecordToBuffer(Record record, ByteBuffer buff, int pos) {
-        // Vérifier que le record a le bon nombre de valeurs
-        if (record.size() != columns.size()) {
-            throw new IllegalArgumentException(
-                "Le record a " + record.size() + " valeurs mais la relation a " + columns.size() + " colonnes");
+    private void writeDirectRun(byte[] run, int pageCount, long runRecords) throws IOException {
+        int pageSize = diskManager.getConfig().getPageSize();
+        ByteBuffer runBuffer = ByteBuffer.wrap(run);
+        PageId first = diskManager.allocContiguousPages(pageCount);
+        List<PageId> runPages = new ArrayList<>(pageCount);
+        
+        for (int i = 0; i < pageCount; i++) {
+            int base = i * pageSize;
+            PageId pageId = new PageId(first.getFileIdx(), first.getPageIdx() + i);
+            putPageId(runBuffer, base, null);
+            putPageId(runBuffer, base + 8, null);
+            runPages.add(pageId);
+            
+            // Aucune copie périmée ne doit survivre dans le buffer pool
+            bufferManager.DiscardPage(pageId);
         }
         
-        // Positionner le curseur
-        buff.position(pos);
+        diskManager.WritePages(first, run, pageCount);
         
-        // Écrire chaque valeur selon son type
-        for (int i = 0; i < columns.size(); i++) {
-            ColumnInfo col = columns.get(i);
-            Object value = record.getValue(i);
-            writeValue(buff, col, value);
+        freeSpaceMap.addAll(runPages, false);
+        for (int i = 0; i < pageCount; i++) {
+            summarizePage(runPages.get(i), ByteBuffer.wrap(run, i * pageSize, pageSize).slice());
         }
+        recordCount += runRecords;
+        headerDirty = true;
     }
     
     /**
-     * Écrit une valeur dans le buffer selon son type
+     * Écrit un PageId (ou INVALID_PAGE_ID si null) dans un buffer privé
      */
-    private void writeValue(ByteBuffer buff, ColumnInfo col, Object value) {
-        if (col.isInt()) {
-            int intValue = convertToInt(value);
-            buff.putInt(intValue);
-            
-        } else if (col.isFloat()) {
-            float floatValue = convertToFloat(value);
-            buff.putFloat(floatValue);
+    private static void putPageId(ByteBuffer buff, int offset, PageId pageId) {
+        buff.putInt(offset, pageId == null ? INVALID_PAGE_ID : pageId.getFileIdx());
+        buff.putInt(offset + 4, pageId == null ? INVALID_PAGE_ID : pageId.getPageIdx());
+    }
+    
+    /**
+     * Retourne tous les records de la relation (matérialisés en mémoire :
+     * préférer stream() pour une grande table)
+     */
+    public List<Record> GetAllRecords() throws IOException {
+        List<Record> allRecords = new ArrayList<>();
+        try {
+            stream().forEach(allRecords::add);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return allRecords;
+    }
+    
+    /**
+     * Flux des records de la relation, page par page (une seule page épinglée
+     * à la fois, mémoire constante). Les erreurs de lecture sont levées en
+     * UncheckedIOException. La relation ne doit pas être modifiée pendant le parcours.
+     */
+    public Stream<Record> stream() {
+        return StreamSupport.stream(new RelationSpliterator(this, 0, getDataPageCount()), false);
+    }
+    
+    /**
+     * Flux parallèle des records : les plages de pages sont réparties entre
+     * les threads du pool fork-join commun (voir RelationSpliterator)
+     */
+    public Stream<Record> parallelStream() {
+        return StreamSupport.stream(new RelationSpliterator(this, 0, getDataPageCount()), true);
+    }
+    
+    /**
+     * Compactage (VACUUM) : les records des pages non pleines les moins
+     * remplies sont déplacés dans les plus remplies, puis les pages vidées
+     * sont retirées de la FSM et désallouées. Les pages pleines ne sont pas
+     * lues. Les records déplacés changent de RecordId ; un renvoi et le
+     * record vers lequel il renvoie (layout SLOTTED) sont déplacés tels quels
+     * (voir moveEntry).
+     * @return le nombre de pages libérées
+     */
+    public int Vacuum() throws IOException {
+        // Pages non pleines, de la plus remplie à la moins remplie
+        List<PageId> pages = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        for (PageId pageId : freeSpaceMap.getDataPages()) {
+            if (freeSpaceMap.isFree(pageId)) {
+                try (PageHandle page = bufferManager.GetPageHandle(pageId)) {
+                    pages.add(pageId);
+                    counts.add(format.getOccupiedCount(page.getByteBuffer()));
+                }
+            }
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < pages.size(); i++) {
+            order.add(i);
+        }
+        order.sort((a, b) -> Integer.compare(counts.get(b), counts.get(a)));
+        
+        insertHint = null;
+        int reclaimed = 0;
+        int target = 0;
+        int source = order.size() - 1;
+        Record record = newRecord();
+        
+        while (target < source) {
+            PageId targetId = pages.get(order.get(target));
+            PageId sourceId = pages.get(order.get(source));
+            boolean targetFull;
+            boolean sourceEmpty;
             
-        } else if (col.isChar()) {
-            int maxLen = col.getMaxLength();
-            String strValue = convertToString(value);
-            writeFixedString(buff, strValue, maxLen);
+            try (PageHandle targetPage = bufferManager.GetPageHandle(targetId);
+                 PageHandle sourcePage = bufferManager.GetPageHandle(sourceId)) {
+                ByteBuffer targetBuff = targetPage.getByteBuffer();
+                ByteBuffer sourceBuff = sourcePage.getByteBuffer();
+                if (bloomFilters.needsRebuild(targetId)) {
+                    summarizePage(targetId, targetBuff);
+                }
+                
+                // Déplacer les records tant que la page cible n'est pas pleine
+                boolean summaryChanged = false;
+                for (int i = format.nextEntry(sourceBuff, 0); i >= 0 && !format.isFull(targetBuff);
+                        i = format.nextEntry(sourceBuff, i + 1)) {
+                    format.read(sourceBuff, i, record);
+                    if (!moveEntry(sourceBuff, i, targetId, targetBuff, record)) {
+                        break;
+                    }
+                    summaryChanged |= includeInSummary(targetId, record);
+                }
+                targetPage.markDirty();
+                sourcePage.markDirty();
+                if (summaryChanged) {
+                    saveSummary(targetId);
+                }
+                
+                targetFull = format.isFull(targetBuff);
+                sourceEmpty = format.isEmpty(sourceBuff);
+            }
             
-        } else if (col.isVarchar()) {
-            int maxLen = col.getMaxLength();
-            String strValue = convertToString(value);
-            writeVarcharString(buff, strValue, maxLen);
+            if (targetFull) {
+                markPageFull(targetId);
+                target++;
+            }
+            if (sourceEmpty) {
+                freeSpaceMap.remove(sourceId);
+                diskManager.DeallocPage(sourceId);
+                reclaimed++;
+                source--;
+            } else if (!targetFull) {
+                break;  // la cible a refusé un record : plus rien à gagner
+            }
         }
+        
+        headerDirty = true;
+        saveHeaderPage();
+        return reclaimed;
     }
     
     /**
-     * Écrit une chaîne de taille fixe (CHAR(T))
-     * Remplit avec des espaces si la chaîne est plus courte que T
-     * Tronque si la chaîne est plus longue que T
+     * VACUUM : déplace l'entrée d'un slot de la page source (record lu dans
+     * record) vers la page cible. Un renvoi est déplacé tel quel et son
+     * record déplacé pointe vers la nouvelle place ; un record déplacé garde
+     * son renvoi, qui pointe alors vers la nouvelle place.
+     * @return false si la page cible n'a plus la place
      */
-    private void writeFixedString(ByteBuffer buff, String str, int maxLen) {
-        // Tronquer si trop long
-        if (str.length() > maxLen) {
-            str = str.substring(0, maxLen);
+    private boolean moveEntry(ByteBuffer sourceBuff, int slotIdx, PageId targetId,
+                              ByteBuffer targetBuff, Record record) throws IOException {
+        RecordId forward = format.getForward(sourceBuff, slotIdx);
+        RecordId origin = forwarding != null ? forwarding.getOrigin(sourceBuff, slotIdx) : null;
+        int newSlot;
+        if (forward != null) {
+            newSlot = forwarding.insertForward(targetBuff, forward);
+        } else if (origin != null) {
+            newSlot = forwarding.insertMoved(targetBuff, record, origin);
+        } else {
+            newSlot = format.insert(targetBuff, record);
         }
-        
-        // Écrire les caractères
-        for (int i = 0; i < str.length(); i++) {
-            buff.put((byte) str.charAt(i));
+        if (newSlot < 0) {
+            return false;
         }
-        
-        // Remplir avec des espaces (padding)
-        for (int i = str.length(); i < maxLen; i++) {
-            buff.put((byte) ' ');
+        format.delete(sourceBuff, slotIdx);
+        
+        RecordId moved = new RecordId(targetId, newSlot);
+        RecordId partner = forward != null ? forward : origin;
+        if (partner != null) {
+            try (PageHandle page = bufferManager.GetPageHandle(partner.getPageId())) {
+                if (forward != null) {
+                    forwarding.setOrigin(page.getByteBuffer(), partner.getSlotIdx(), moved);
+                } else {
+                    forwarding.setForward(page.getByteBuffer(), partner.getSlotIdx(), moved);
+                }
+                page.markDirty();
+            }
         }
+        return true;
     }
     
     /**
-     * Écrit une chaîne de taille variable (VARCHAR(T))
-     * Format : 4 bytes pour la longueur réelle + T bytes pour les caractères
-     * Les caractères non utilisés sont remplis avec des espaces
+     * Vrai si un VACUUM automatique est utile : au moins deux pages non
+     * pleines, qui représentent une part des pages de données >= threshold
+     * @param threshold part des pages non pleines (0 = jamais)
      */
-    private void writeVarcharString(ByteBuffer buff, String str, int maxLen) {
-        // Tronquer si trop long
-        if (str.length() > maxLen) {
-            str = str.substring(0, maxLen);
+    public boolean needsVacuum(double threshold) {
+        int freePages = getFreePageCount();
+        return threshold > 0 && freePages >= 2 && freePages >= threshold * getDataPageCount();
+    }
+    
+    /**
+     * Supprime un record de la relation
+     */
+    public void DeleteRecord(RecordId rid) throws IOException {
+        RecordId moved = releaseSlot(rid.getPageId(), rid.getSlotIdx());
+        if (moved != null) {
+            // Le slot renvoyait vers un record déplacé (layout SLOTTED) : le libérer aussi
+            releaseSlot(moved.getPageId(), moved.getSlotIdx());
         }
         
-        // Écrire la longueur réelle (4 bytes)
-        buff.putInt(str.length());
-        
-        // Écrire les caractères
-        for (int i = 0; i < str.length(); i++) {
-            buff.put((byte) str.charAt(i));
+        recordCount--;
+        headerDirty = true;
+        saveHeaderPage();
+    }
+    
+    /**
+     * Libère un slot d'une page de données ; une page vidée est retirée du
+     * répertoire et désallouée
+     * @return le record vers lequel renvoyait le slot (voir DataPageFormat.getForward), ou null
+     */
+    private RecordId releaseSlot(PageId pageId, int slotIdx) throws IOException {
+        boolean wasFull;
+        boolean full;
+        boolean empty;
+        RecordId forward;
+        
+        try (PageHandle page = bufferManager.GetPageHandle(pageId)) {
+            // Vérifier si la page était pleine avant suppression
+            wasFull = isPageFull(page);
+            
+            // Marquer le slot comme libre
+            forward = format.getForward(page.getByteBuffer(), slotIdx);
+            format.delete(page.getByteBuffer(), slotIdx);
+            page.markDirty();
+            
+            // Vérifier si la page devient vide (en layout SLOTTED, libérer un
+            // petit record ne suffit pas toujours à la rendre non pleine)
+            full = isPageFull(page);
+            empty = isPageEmpty(page);
         }
         
-        // Remplir avec des espaces jusqu'à maxLen (padding)
-        for (int i = str.length(); i < maxLen; i++) {
-            buff.put((byte) ' ');
+        if (empty) {
+            // Retirer la page du répertoire puis la désallouer
+            freeSpaceMap.remove(pageId);
+            if (samePage(pageId, insertHint)) {
+                insertHint = null;
+            }
+            diskManager.DeallocPage(pageId);
+            
+        } else {
+            // Les valeurs du record restent dans les filtres de Bloom de la page
+            if (bloomFilters.noteRemoved(pageId)) {
+                saveSummary(pageId);
+            }
+            if (wasFull && !full) {
+                // La page était pleine et ne l'est plus
+                markPageFree(pageId);
+            }
         }
+        
+        headerDirty = true;
+        return forward;
     }
+
         
+    /**
+     * Écrit un record dans le buffer à la position donnée
+     * Format à taille fixe : chaque valeur est écrite sur un nombre fixe de bytes
+     * (offsets précalculés par le RecordLayout de la relation)
+     * 
+     * @param record le record à écrire
+     * @param buff le buffer (ByteBuffer)
+     * @param pos la position de départ dans le buffer
+     */
+    public void writeRecordToBuffer(Record record, ByteBuffer buff, int pos) {
+        recordLayout.write(buff, pos, record, dictionary);
+    }
+    
     /**
      * Lit un record depuis le buffer à la position donnée
      * Le record passé en paramètre sera rempli avec les valeurs lues
@@ -823,120 +1523,66 @@ public class Relation {
      * @param pos la position de départ dans le buffer
      */
     public void readFromBuffer(Record record, ByteBuffer buff, int pos) {
-        // Vider le record au cas où
-        record.clear();
-        
-        // Positionner le curseur
-        buff.position(pos);
-        
-        // Lire chaque valeur selon son type
-        for (int i = 0; i < columns.size(); i++) {
-            ColumnInfo col = columns.get(i);
-            Object value = readValue(buff, col);
-            record.addValue(value);
-        }
+        recordLayout.read(buff, pos, record, dictionary);
     }
     
     /**
-     * Lit une valeur depuis le buffer selon son type
+     * Écrit la colonne colIdx d'un record à la position valuePos
      */
-    private Object readValue(ByteBuffer buff, ColumnInfo col) {
-        if (col.isInt()) {
-            return buff.getInt();
-            
-        } else if (col.isFloat()) {
-            return buff.getFloat();
-            
-        } else if (col.isChar()) {
-            int maxLen = col.getMaxLength();
-            return readFixedString(buff, maxLen);
-            
-        } else if (col.isVarchar()) {
-            int maxLen = col.getMaxLength();
-            return readVarcharString(buff, maxLen);
-        }
-        
-        return null;
+    void writeColumn(ByteBuffer buff, int valuePos, int colIdx, Record record) {
+        recordLayout.writeColumn(buff, valuePos, colIdx, record, dictionary);
     }
     
     /**
-     * Lit une chaîne de taille fixe (CHAR(T))
-     * Supprime les espaces de fin (trailing spaces)
+     * Écrit une valeur de la colonne colIdx à la position valuePos
      */
-    private String readFixedString(ByteBuffer buff, int maxLen) {
-        StringBuilder sb = new StringBuilder();
-        
-        for (int i = 0; i < maxLen; i++) {
-            char c = (char) buff.get();
-            sb.append(c);
-        }
-        
-        // Supprimer les espaces de fin
-        return sb.toString().stripTrailing();
+    void writeValue(ByteBuffer buff, int valuePos, int colIdx, Object value) {
+        recordLayout.writeValue(buff, valuePos, colIdx, value, dictionary);
     }
     
     /**
-     * Lit une chaîne de taille variable (VARCHAR(T))
-     * Lit d'abord la longueur, puis les caractères
+     * Lit la colonne colIdx à la position valuePos et l'ajoute au record
      */
-    private String readVarcharString(ByteBuffer buff, int maxLen) {
-        // Lire la longueur réelle (4 bytes)
-        int realLength = buff.getInt();
-        
-        StringBuilder sb = new StringBuilder();
-        
-        // Lire uniquement les caractères réels
-        for (int i = 0; i < realLength; i++) {
-            char c = (char) buff.get();
-            sb.append(c);
-        }
-        
-        // Sauter les espaces de padding
-        for (int i = realLength; i < maxLen; i++) {
-            buff.get(); // ignorer
-        }
-        
-        return sb.toString();
+    void readColumn(ByteBuffer buff, int valuePos, int colIdx, Record record) {
+        recordLayout.readColumn(buff, valuePos, colIdx, record, dictionary);
     }
-        
+    
     /**
-     * Convertit une valeur en int
+     * Lit la valeur de la colonne colIdx à la position valuePos
      */
-    private int convertToInt(Object value) {
-        if (value instanceof Integer) {
-            return (Integer) value;
-        } else if (value instanceof String) {
-            return Integer.parseInt((String) value);
-        } else if (value instanceof Number) {
-            return ((Number) value).intValue();
-        }
-        throw new IllegalArgumentException("Impossible de convertir en INT : " + value);
+    Object readValue(ByteBuffer buff, int valuePos, int colIdx) {
+        return recordLayout.readValue(buff, valuePos, colIdx, dictionary);
     }
     
     /**
-     * Convertit une valeur en float
+     * Taille maximale d'un record au format compact (layout SLOTTED)
+     * VARCHAR(T) : 2 bytes (longueur) + T bytes au plus
      */
-    private float convertToFloat(Object value) {
-        if (value instanceof Float) {
-            return (Float) value;
-        } else if (value instanceof Double) {
-            return ((Double) value).floatValue();
-        } else if (value instanceof String) {
-            return Float.parseFloat((String) value);
-        } else if (value instanceof Number) {
-            return ((Number) value).floatValue();
-        }
-        throw new IllegalArgumentException("Impossible de convertir en FLOAT : " + value);
+    int getMaxCompactRecordSize() {
+        return recordLayout.getMaxCompactSize();
     }
     
     /**
-     * Convertit une valeur en String
+     * Taille minimale d'un record au format compact (VARCHAR vides)
      */
-    private String convertToString(Object value) {
-        if (value == null) {
-            return "";
-        }
-        return value.toString();
+    int getMinCompactRecordSize() {
+        return recordLayout.getMinCompactSize();
+    }
+    
+    /**
+     * Écrit un record au format compact : comme writeRecordToBuffer, mais un
+     * VARCHAR n'occupe que 2 bytes de longueur + ses caractères réels (pas de padding)
+     * @return le nombre de bytes écrits
+     */
+    int writeCompactRecord(Record record, ByteBuffer buff, int pos) {
+        return recordLayout.writeCompact(buff, pos, record, dictionary);
+    }
+    
+    /**
+     * Lit un record écrit par writeCompactRecord
+     */
+    void readCompactRecord(Record record, ByteBuffer buff, int pos) {
+        recordLayout.readCompact(buff, pos, record, dictionary);
     }
     
     @Override
@@ -0,0 +1,104 @@
+package bdda.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import bdda.core.PageHandle;
+
+/**
+ * Spliterator des records d'une relation sur les pages [page, endPage[ de
+ * son répertoire (voir Relation.getDataPage) : une seule page est épinglée
+ * à la fois, la mémoire utilisée ne dépend pas de la taille de la table.
+ *
+ * trySplit coupe la plage de pages en deux (la première moitié est rendue,
+ * l'ordre des records est conservé) : Relation.parallelStream répartit
+ * ainsi les pages entre les threads du pool fork-join commun.
+ *
+ * forEachRemaining lit les records directement dans la page épinglée ;
+ * tryAdvance garde les records décodés de la page courante (au plus
+ * un slotCount) et la libère avant de les rendre.
+ * La relation ne doit pas être modifiée pendant le parcours.
+ */
+final class RelationSpliterator implements Spliterator<Record> {
+
+    private final Relation relation;
+    private int page;            // prochaine page à lire
+    private final int endPage;   // exclue
+    private final ArrayDeque<Record> pending = new ArrayDeque<>();  // reste de la page lue par tryAdvance
+
+    RelationSpliterator(Relation relation, int fromPage, int endPage) {
+        this.relation = relation;
+        this.page = fromPage;
+        this.endPage = endPage;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Record> action) {
+        while (pending.isEmpty()) {
+            if (page >= endPage) {
+                return false;
+            }
+            readPage(page++, pending::add);
+        }
+        action.accept(pending.poll());
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Record> action) {
+        while (!pending.isEmpty()) {
+            action.accept(pending.poll());
+        }
+        while (page < endPage) {
+            readPage(page++, action);
+        }
+    }
+
+    /**
+     * Lit les records de la page d'indice index (un nouveau Record par slot occupé)
+     */
+    private void readPage(int index, Consumer<? super Record> sink) {
+        try (PageHandle handle = relation.getBufferManager().GetPageHandle(relation.getDataPage(index))) {
+            for (int slot = relation.nextOccupiedSlot(handle, 0); slot >= 0;
+                    slot = relation.nextOccupiedSlot(handle, slot + 1)) {
+                Record record = relation.newRecord();
+                relation.readRecordFromSlot(handle, slot, record);
+                sink.accept(record);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Spliterator<Record> trySplit() {
+        // Pas de coupure au milieu d'une page déjà décodée (le préfixe rendu
+        // doit précéder tous les records restants)
+        int remaining = endPage - page;
+        if (remaining < 2 || !pending.isEmpty()) {
+            return null;
+        }
+        int mid = page + remaining / 2;
+        RelationSpliterator prefix = new RelationSpliterator(relation, page, mid);
+        page = mid;
+        return prefix;
+    }
+
+    /**
+     * Estimation : nombre moyen de records par page × pages restantes
+     */
+    @Override
+    public long estimateSize() {
+        int pageCount = relation.getDataPageCount();
+        long perPages = pageCount == 0 ? 0 : relation.getRecordCount() * (endPage - page) / pageCount;
+        return pending.size() + perPages;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+}
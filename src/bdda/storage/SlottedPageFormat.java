@@ -0,0 +1,372 @@
+package bdda.storage;
+
+import java.nio.ByteBuffer;
+
+import bdda.core.PageId;
+
+/**
+ * Format SLOTTED : répertoire de slots + records de taille variable.
+ *
+ * Offset 16-19 : nombre d'entrées du répertoire
+ * Offset 20-23 : nombre de slots occupés
+ * Offset 24-27 : début de la zone des records (ils sont rangés depuis la fin de la page)
+ * Offset 28-31 : octets perdus (records supprimés ou raccourcis, récupérés au compactage)
+ * Offset 32... : répertoire, 4 bytes par slot (offset du record, longueur), offset 0 = slot libre
+ *
+ * Les records sont écrits au format compact (VARCHAR sans padding, voir
+ * Relation.writeCompactRecord). Le compactage regroupe les records en fin de
+ * page sans changer leur indice de slot : les RecordId restent stables.
+ * Il est fait à la demande, quand une insertion ou une mise à jour manque de
+ * place contiguë.
+ *
+ * Un record qui grandit au-delà de la place libre de sa page est déplacé
+ * par Relation dans une autre page ; son slot devient un renvoi vers lui.
+ * Ces deux entrées ont une longueur 0 dans le répertoire, le premier octet
+ * de leur tuple donne leur genre :
+ *   FORWARD : PageId (8 bytes) + slot (2 bytes) du record déplacé
+ *   MOVED   : PageId + slot du renvoi (10 bytes) + longueur (2 bytes) + record
+ * Un renvoi compte comme un record de sa page ; un record déplacé n'est vu
+ * qu'à travers son renvoi (nextOccupied l'ignore). Tout tuple occupe au
+ * moins STUB_SIZE bytes : un renvoi peut toujours prendre sa place.
+ */
+class SlottedPageFormat extends DataPageFormat implements ForwardingPageFormat {
+
+    private static final int ENTRY_COUNT_OFFSET = 16;
+    private static final int OCCUPIED_COUNT_OFFSET = 20;
+    private static final int FREE_END_OFFSET = 24;
+    private static final int FRAGMENTED_OFFSET = 28;
+    private static final int DIRECTORY_OFFSET = 32;
+    private static final int ENTRY_SIZE = 4;  // offset (2 bytes) + longueur (2 bytes)
+
+    // Genre d'une entrée de longueur 0 (premier octet de son tuple)
+    private static final byte FORWARD = 1;
+    private static final byte MOVED = 2;
+    private static final int STUB_SIZE = 11;     // genre + RecordId du record déplacé
+    private static final int MOVED_HEADER = 13;  // genre + RecordId du renvoi + longueur
+
+    private final int maxRecordSize;
+    private final int slotCount;
+
+    // Buffers de travail (un record encodé, une copie lors du compactage)
+    private final byte[] encoded;
+    private final ByteBuffer encodedBuffer;
+    private final byte[] compactScratch;
+
+    SlottedPageFormat(Relation relation, int pageSize) {
+        super(relation, pageSize);
+        if (pageSize > 65536) {
+            throw new IllegalArgumentException("LAYOUT SLOTTED : taille de page limitée à 65536 octets");
+        }
+        this.maxRecordSize = relation.getMaxCompactRecordSize();
+        int minRecordSize = Math.max(STUB_SIZE, relation.getMinCompactRecordSize());
+        this.slotCount = (pageSize - DIRECTORY_OFFSET) / (ENTRY_SIZE + minRecordSize);
+        this.encoded = new byte[MOVED_HEADER + maxRecordSize];
+        this.encodedBuffer = ByteBuffer.wrap(encoded);
+        this.compactScratch = new byte[pageSize];
+    }
+
+    @Override
+    int getSlotCount() {
+        return slotCount;
+    }
+
+    @Override
+    void initPage(ByteBuffer page) {
+        page.putInt(ENTRY_COUNT_OFFSET, 0);
+        page.putInt(OCCUPIED_COUNT_OFFSET, 0);
+        page.putInt(FREE_END_OFFSET, pageSize);
+        page.putInt(FRAGMENTED_OFFSET, 0);
+    }
+
+    @Override
+    int getOccupiedCount(ByteBuffer page) {
+        return page.getInt(OCCUPIED_COUNT_OFFSET);
+    }
+
+    private int getEntryCount(ByteBuffer page) {
+        return page.getInt(ENTRY_COUNT_OFFSET);
+    }
+
+    private static int getEntryOffset(ByteBuffer page, int slotIdx) {
+        return page.getShort(DIRECTORY_OFFSET + slotIdx * ENTRY_SIZE) & 0xFFFF;
+    }
+
+    private static int getEntryLength(ByteBuffer page, int slotIdx) {
+        return page.getShort(DIRECTORY_OFFSET + slotIdx * ENTRY_SIZE + 2) & 0xFFFF;
+    }
+
+    private static void setEntry(ByteBuffer page, int slotIdx, int offset, int length) {
+        page.putShort(DIRECTORY_OFFSET + slotIdx * ENTRY_SIZE, (short) offset);
+        page.putShort(DIRECTORY_OFFSET + slotIdx * ENTRY_SIZE + 2, (short) length);
+    }
+
+    /**
+     * Genre d'une entrée de longueur 0 (FORWARD ou MOVED), 0 pour un record ou un slot libre
+     */
+    private static byte getKind(ByteBuffer page, int slotIdx) {
+        int offset = getEntryOffset(page, slotIdx);
+        return offset != 0 && getEntryLength(page, slotIdx) == 0 ? page.get(offset) : 0;
+    }
+
+    /**
+     * Place occupée dans la zone des records par le tuple d'un slot non libre
+     */
+    private static int getTupleSize(ByteBuffer page, int slotIdx) {
+        int length = getEntryLength(page, slotIdx);
+        if (length > 0) {
+            return Math.max(length, STUB_SIZE);
+        }
+        int offset = getEntryOffset(page, slotIdx);
+        return page.get(offset) == FORWARD ? STUB_SIZE : MOVED_HEADER + (page.getShort(offset + 11) & 0xFFFF);
+    }
+
+    private static RecordId readRecordId(ByteBuffer buff, int pos) {
+        return new RecordId(new PageId(buff.getInt(pos), buff.getInt(pos + 4)), buff.getShort(pos + 8) & 0xFFFF);
+    }
+
+    private static void putRecordId(ByteBuffer buff, int pos, RecordId rid) {
+        buff.putInt(pos, rid.getPageId().getFileIdx());
+        buff.putInt(pos + 4, rid.getPageId().getPageIdx());
+        buff.putShort(pos + 8, (short) rid.getSlotIdx());
+    }
+
+    /**
+     * Espace libre contigu entre le répertoire et la zone des records
+     */
+    private int getContiguousFree(ByteBuffer page) {
+        return page.getInt(FREE_END_OFFSET) - (DIRECTORY_OFFSET + getEntryCount(page) * ENTRY_SIZE);
+    }
+
+    /**
+     * Espace libre total (contigu + récupérable par compactage)
+     */
+    private int getTotalFree(ByteBuffer page) {
+        return getContiguousFree(page) + page.getInt(FRAGMENTED_OFFSET);
+    }
+
+    @Override
+    boolean isFull(ByteBuffer page) {
+        // Non pleine = un record de taille maximale, même déplacé depuis
+        // une autre page, et une nouvelle entrée tiennent
+        return getOccupiedCount(page) >= slotCount
+                || getTotalFree(page) < MOVED_HEADER + maxRecordSize + ENTRY_SIZE;
+    }
+
+    @Override
+    int insert(ByteBuffer page, Record record) {
+        int length = relation.writeCompactRecord(record, encodedBuffer, 0);
+        return insertTuple(page, length, length);
+    }
+
+    @Override
+    public int insertMoved(ByteBuffer page, Record record, RecordId origin) {
+        int length = relation.writeCompactRecord(record, encodedBuffer, MOVED_HEADER);
+        encodedBuffer.put(0, MOVED);
+        putRecordId(encodedBuffer, 1, origin);
+        encodedBuffer.putShort(11, (short) length);
+        return insertTuple(page, MOVED_HEADER + length, 0);
+    }
+
+    @Override
+    public int insertForward(ByteBuffer page, RecordId target) {
+        encodedBuffer.put(0, FORWARD);
+        putRecordId(encodedBuffer, 1, target);
+        return insertTuple(page, STUB_SIZE, 0);
+    }
+
+    /**
+     * Range le tuple encodé (length bytes) dans un slot libre
+     * @param entryLength longueur notée dans le répertoire (0 pour un renvoi ou un record déplacé)
+     * @return l'indice du slot utilisé, ou -1 si la place manque
+     */
+    private int insertTuple(ByteBuffer page, int length, int entryLength) {
+        int size = Math.max(length, STUB_SIZE);
+        int entryCount = getEntryCount(page);
+
+        // Réutiliser une entrée libre du répertoire, sinon en ajouter une
+        int slotIdx = entryCount;
+        for (int i = 0; i < entryCount; i++) {
+            if (getEntryOffset(page, i) == 0) {
+                slotIdx = i;
+                break;
+            }
+        }
+        if (slotIdx >= slotCount) {
+            return -1;
+        }
+
+        int needed = size + (slotIdx == entryCount ? ENTRY_SIZE : 0);
+        if (getContiguousFree(page) < needed) {
+            if (getTotalFree(page) < needed) {
+                return -1;
+            }
+            compact(page);
+        }
+
+        if (slotIdx == entryCount) {
+            page.putInt(ENTRY_COUNT_OFFSET, entryCount + 1);
+        }
+        writeTuple(page, slotIdx, size, entryLength);
+        page.putInt(OCCUPIED_COUNT_OFFSET, getOccupiedCount(page) + 1);
+        return slotIdx;
+    }
+
+    /**
+     * Copie le tuple encodé (size bytes) en tête de la zone des records et l'associe au slot
+     */
+    private void writeTuple(ByteBuffer page, int slotIdx, int size, int entryLength) {
+        int offset = page.getInt(FREE_END_OFFSET) - size;
+        System.arraycopy(encoded, 0, page.array(), page.arrayOffset() + offset, size);
+        page.putInt(FREE_END_OFFSET, offset);
+        setEntry(page, slotIdx, offset, entryLength);
+    }
+
+    @Override
+    void delete(ByteBuffer page, int slotIdx) {
+        if (slotIdx >= getEntryCount(page) || getEntryOffset(page, slotIdx) == 0) {
+            return;
+        }
+
+        page.putInt(FRAGMENTED_OFFSET, page.getInt(FRAGMENTED_OFFSET) + getTupleSize(page, slotIdx));
+        setEntry(page, slotIdx, 0, 0);
+        int occupied = getOccupiedCount(page) - 1;
+        page.putInt(OCCUPIED_COUNT_OFFSET, occupied);
+
+        if (occupied == 0) {
+            // Page vide : tout l'espace redevient contigu
+            initPage(page);
+            return;
+        }
+
+        // Rendre à l'espace libre les entrées libres en fin de répertoire
+        int entryCount = getEntryCount(page);
+        while (entryCount > 0 && getEntryOffset(page, entryCount - 1) == 0) {
+            entryCount--;
+        }
+        page.putInt(ENTRY_COUNT_OFFSET, entryCount);
+    }
+
+    @Override
+    boolean isOccupied(ByteBuffer page, int slotIdx) {
+        return slotIdx < getEntryCount(page) && getEntryOffset(page, slotIdx) != 0
+                && getKind(page, slotIdx) != MOVED;
+    }
+
+    @Override
+    int nextOccupied(ByteBuffer page, int fromSlot) {
+        int entryCount = getEntryCount(page);
+        for (int i = fromSlot; i < entryCount; i++) {
+            if (getEntryOffset(page, i) != 0 && getKind(page, i) != MOVED) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    int nextEntry(ByteBuffer page, int fromSlot) {
+        int entryCount = getEntryCount(page);
+        for (int i = fromSlot; i < entryCount; i++) {
+            if (getEntryOffset(page, i) != 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    void read(ByteBuffer page, int slotIdx, Record record) {
+        int offset = getEntryOffset(page, slotIdx);
+        byte kind = getKind(page, slotIdx);
+        if (kind == FORWARD) {
+            relation.readMovedRecord(readRecordId(page, offset + 1), record);
+        } else if (kind == MOVED) {
+            relation.readCompactRecord(record, page, offset + MOVED_HEADER);
+        } else {
+            relation.readCompactRecord(record, page, offset);
+        }
+    }
+
+    @Override
+    RecordId getForward(ByteBuffer page, int slotIdx) {
+        return getKind(page, slotIdx) == FORWARD ? readRecordId(page, getEntryOffset(page, slotIdx) + 1) : null;
+    }
+
+    @Override
+    public RecordId getOrigin(ByteBuffer page, int slotIdx) {
+        return getKind(page, slotIdx) == MOVED ? readRecordId(page, getEntryOffset(page, slotIdx) + 1) : null;
+    }
+
+    @Override
+    public void setForward(ByteBuffer page, int slotIdx, RecordId target) {
+        // Le renvoi prend la place du tuple (au moins STUB_SIZE bytes), le reste devient perdu
+        int offset = getEntryOffset(page, slotIdx);
+        page.putInt(FRAGMENTED_OFFSET, page.getInt(FRAGMENTED_OFFSET) + getTupleSize(page, slotIdx) - STUB_SIZE);
+        page.put(offset, FORWARD);
+        putRecordId(page, offset + 1, target);
+        setEntry(page, slotIdx, offset, 0);
+    }
+
+    @Override
+    public void setOrigin(ByteBuffer page, int slotIdx, RecordId origin) {
+        putRecordId(page, getEntryOffset(page, slotIdx) + 1, origin);
+    }
+
+    /**
+     * Réécrit un record ou remplace un renvoi par le record (Relation libère
+     * d'abord la copie déplacée) ; rien n'est écrit s'il ne tient pas dans la page
+     */
+    @Override
+    boolean update(ByteBuffer page, int slotIdx, Record record) {
+        int length = relation.writeCompactRecord(record, encodedBuffer, 0);
+        int size = Math.max(length, STUB_SIZE);
+        int oldOffset = getEntryOffset(page, slotIdx);
+        int oldSize = getTupleSize(page, slotIdx);
+
+        if (size <= oldSize) {
+            // Réécriture sur place, la fin de l'ancien tuple devient perdue
+            System.arraycopy(encoded, 0, page.array(), page.arrayOffset() + oldOffset, size);
+            setEntry(page, slotIdx, oldOffset, length);
+            page.putInt(FRAGMENTED_OFFSET, page.getInt(FRAGMENTED_OFFSET) + oldSize - size);
+            return true;
+        }
+
+        // Le record grandit : il doit tenir dans la page, ancien emplacement compris
+        if (getTotalFree(page) + oldSize < size) {
+            return false;
+        }
+
+        setEntry(page, slotIdx, 0, 0);
+        page.putInt(FRAGMENTED_OFFSET, page.getInt(FRAGMENTED_OFFSET) + oldSize);
+        if (getContiguousFree(page) < size) {
+            compact(page);
+        }
+        writeTuple(page, slotIdx, size, length);
+        return true;
+    }
+
+    /**
+     * Regroupe les records en fin de page (les indices de slot ne changent pas)
+     */
+    private void compact(ByteBuffer page) {
+        byte[] bytes = page.array();
+        int base = page.arrayOffset();
+        int entryCount = getEntryCount(page);
+        int end = pageSize;
+
+        for (int i = 0; i < entryCount; i++) {
+            int offset = getEntryOffset(page, i);
+            if (offset == 0) {
+                continue;
+            }
+            int size = getTupleSize(page, i);
+            end -= size;
+            System.arraycopy(bytes, base + offset, compactScratch, end, size);
+            setEntry(page, i, end, getEntryLength(page, i));
+        }
+
+        System.arraycopy(compactScratch, end, bytes, base + end, pageSize - end);
+        page.putInt(FREE_END_OFFSET, end);
+        page.putInt(FRAGMENTED_OFFSET, 0);
+    }
+}
@@ -0,0 +1,39 @@
+package bdda.storage;
+
+/**
+ * Organisation des records dans les pages de données d'une relation
+ * Choisie à la création de la table (CREATE TABLE ... LAYOUT X),
+ * puis mémorisée dans la Header Page.
+ *
+ * - ROW     : slots de taille fixe + bitmap d'occupation (format par défaut)
+ * - SLOTTED : répertoire de slots + records de taille variable (VARCHAR compacts)
+ * - COLUMNAR : PAX, les valeurs de chaque colonne sont contiguës dans la page
+ */
+public enum StorageLayout {
+    ROW(0),
+    SLOTTED(1),
+    COLUMNAR(2);
+
+    // Code stocké dans la Header Page (ne pas réutiliser l'ordinal)
+    private final int code;
+
+    StorageLayout(int code) {
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * Retrouve le layout à partir du code lu dans la Header Page
+     */
+    public static StorageLayout fromCode(int code) {
+        for (StorageLayout layout : values()) {
+            if (layout.code == code) {
+                return layout;
+            }
+        }
+        throw new IllegalArgumentException("Layout de page inconnu : " + code);
+    }
+}
@@ -0,0 +1,213 @@
+package bdda.storage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import bdda.core.BufferManager;
+import bdda.core.DiskManager;
+import bdda.core.PageHandle;
+import bdda.core.PageId;
+
+/**
+ * Dictionnaire d'une relation pour ses colonnes CHAR/VARCHAR marquées DICT :
+ * chaque chaîne distincte reçoit un code entier (son rang d'ajout), seul le
+ * code est stocké dans les slots.
+ *
+ * Le dictionnaire est gardé entièrement en mémoire. Il est persisté dans sa
+ * propre liste de pages, en ajout seul (un code n'est jamais réattribué) :
+ *
+ * Offset 0-7   : page suivante (fileIdx, pageIdx), -1 = fin de liste
+ * Offset 8-11  : nombre d'entrées de la page
+ * Offset 12-15 : fin de la zone utilisée
+ * Offset 16... : entrées (longueur sur 2 bytes + caractères)
+ *
+ * Les nouvelles chaînes sont d'abord ajoutées en mémoire (encode() n'épingle
+ * aucune page), puis écrites par save().
+ */
+class StringDictionary {
+
+    private static final int NEXT_PAGE_OFFSET = 0;
+    private static final int ENTRY_COUNT_OFFSET = 8;
+    private static final int USED_END_OFFSET = 12;
+    private static final int ENTRIES_OFFSET = 16;
+    private static final int INVALID_PAGE_ID = -1;
+
+    private final DiskManager diskManager;
+    private final BufferManager bufferManager;
+    private final int pageSize;
+
+    private final List<String> values = new ArrayList<>();
+    private final Map<String, Integer> codes = new HashMap<>();
+    private int savedCount;  // nombre de chaînes déjà écrites dans les pages
+
+    private PageId firstPage;
+    private PageId lastPage;
+    private int lastPageEnd;
+
+    /**
+     * Crée un dictionnaire vide, ou le charge depuis sa première page
+     * @param firstPage première page du dictionnaire (null s'il est vide)
+     */
+    StringDictionary(DiskManager diskManager, BufferManager bufferManager, PageId firstPage) throws IOException {
+        this.diskManager = diskManager;
+        this.bufferManager = bufferManager;
+        this.pageSize = diskManager.getConfig().getPageSize();
+        this.firstPage = firstPage;
+        load();
+    }
+
+    private void load() throws IOException {
+        PageId current = firstPage;
+        while (current != null) {
+            try (PageHandle page = bufferManager.GetPageHandle(current)) {
+                int count = page.getInt(ENTRY_COUNT_OFFSET);
+                int offset = ENTRIES_OFFSET;
+                for (int i = 0; i < count; i++) {
+                    int length = page.getShort(offset) & 0xFFFF;
+                    StringBuilder sb = new StringBuilder(length);
+                    for (int c = 0; c < length; c++) {
+                        sb.append((char) (page.get(offset + 2 + c) & 0xFF));
+                    }
+                    add(sb.toString());
+                    offset += 2 + length;
+                }
+
+                lastPage = current;
+                lastPageEnd = page.getInt(USED_END_OFFSET);
+                current = readNextPage(page);
+            }
+        }
+        savedCount = values.size();
+    }
+
+    private int add(String value) {
+        int code = values.size();
+        values.add(value);
+        codes.put(value, code);
+        return code;
+    }
+
+    /**
+     * Retourne le code d'une chaîne, ou -1 si elle n'est pas dans le dictionnaire
+     */
+    int lookup(String value) {
+        Integer code = codes.get(value);
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * Retourne le code d'une chaîne, en l'ajoutant si nécessaire (en mémoire)
+     */
+    int encode(String value) {
+        Integer code = codes.get(value);
+        return code != null ? code : add(value);
+    }
+
+    String decode(int code) {
+        return values.get(code);
+    }
+
+    int size() {
+        return values.size();
+    }
+
+    PageId getFirstPage() {
+        return firstPage;
+    }
+
+    /**
+     * Indique si des chaînes ajoutées n'ont pas encore été écrites
+     */
+    boolean hasUnsavedEntries() {
+        return savedCount < values.size();
+    }
+
+    /**
+     * Indique si une chaîne tient dans une page du dictionnaire (voir save)
+     */
+    boolean fitsInPage(String value) {
+        return ENTRIES_OFFSET + 2 + value.length() <= pageSize;
+    }
+
+    /**
+     * Écrit les nouvelles chaînes à la fin de la liste de pages
+     * (une page est ajoutée quand la dernière est pleine)
+     */
+    void save() throws IOException {
+        while (savedCount < values.size()) {
+            String value = values.get(savedCount);
+            int entrySize = 2 + value.length();
+            if (!fitsInPage(value)) {
+                throw new IOException("Chaîne trop longue pour une page du dictionnaire : " + value);
+            }
+
+            if (lastPage == null || lastPageEnd + entrySize > pageSize) {
+                appendPage();
+            }
+
+            try (PageHandle page = bufferManager.GetPageHandle(lastPage)) {
+                page.putShort(lastPageEnd, (short) value.length());
+                for (int c = 0; c < value.length(); c++) {
+                    page.put(lastPageEnd + 2 + c, (byte) value.charAt(c));
+                }
+                lastPageEnd += entrySize;
+                page.putInt(ENTRY_COUNT_OFFSET, page.getInt(ENTRY_COUNT_OFFSET) + 1);
+                page.putInt(USED_END_OFFSET, lastPageEnd);
+                page.markDirty();
+            }
+            savedCount++;
+        }
+    }
+
+    /**
+     * Alloue une page vide et la chaîne à la fin de la liste
+     */
+    private void appendPage() throws IOException {
+        PageId newPage = diskManager.allocPage();
+        try (PageHandle page = bufferManager.GetPageHandle(newPage)) {
+            page.putInt(NEXT_PAGE_OFFSET, INVALID_PAGE_ID);
+            page.putInt(NEXT_PAGE_OFFSET + 4, INVALID_PAGE_ID);
+            page.putInt(ENTRY_COUNT_OFFSET, 0);
+            page.putInt(USED_END_OFFSET, ENTRIES_OFFSET);
+            page.markDirty();
+        }
+
+        if (lastPage == null) {
+            firstPage = newPage;
+        } else {
+            try (PageHandle previous = bufferManager.GetPageHandle(lastPage)) {
+                previous.putInt(NEXT_PAGE_OFFSET, newPage.getFileIdx());
+                previous.putInt(NEXT_PAGE_OFFSET + 4, newPage.getPageIdx());
+                previous.markDirty();
+            }
+        }
+        lastPage = newPage;
+        lastPageEnd = ENTRIES_OFFSET;
+    }
+
+    /**
+     * Retourne toutes les pages du dictionnaire (pour DROP TABLE)
+     */
+    List<PageId> getPages() throws IOException {
+        List<PageId> pages = new ArrayList<>();
+        PageId current = firstPage;
+        while (current != null) {
+            pages.add(current);
+            try (PageHandle page = bufferManager.GetPageHandle(current)) {
+                current = readNextPage(page);
+            }
+        }
+        return pages;
+    }
+
+    private static PageId readNextPage(PageHandle page) {
+        int fileIdx = page.getInt(NEXT_PAGE_OFFSET);
+        if (fileIdx == INVALID_PAGE_ID) {
+            return null;
+        }
+        return new PageId(fileIdx, page.getInt(NEXT_PAGE_OFFSET + 4));
+    }
+}
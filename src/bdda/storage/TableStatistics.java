@@ -0,0 +1,259 @@
+package bdda.storage;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import bdda.core.PageHandle;
+
+/**
+ * Statistiques d'une table calculées par ANALYZE TABLE, en un seul
+ * parcours de ses pages (toutes les partitions d'une table partitionnée) :
+ *
+ * - nombre exact de records et de pages de données ;
+ * - nombre de valeurs distinctes de chaque colonne, estimé par HyperLogLog
+ *   sur toutes les valeurs (mémoire constante) ;
+ * - histogramme équi-profondeur de chaque colonne : HISTOGRAM_BUCKETS
+ *   tranches contenant chacune la même part des records, bornes prises
+ *   dans un échantillon uniforme (réservoir) de SAMPLE_SIZE records.
+ *
+ * Les statistiques ne sont pas maintenues par les insertions ou les
+ * suppressions : elles décrivent la table au moment du dernier ANALYZE.
+ * Elles sont persistées par DBManager (database.save).
+ */
+public final class TableStatistics {
+
+    // Taille de l'échantillon des histogrammes
+    static final int SAMPLE_SIZE = 8192;
+
+    // Nombre de tranches d'un histogramme
+    static final int HISTOGRAM_BUCKETS = 16;
+
+    // Précision de HyperLogLog (2^12 registres, environ 1.6 % d'erreur)
+    private static final int HLL_PRECISION = 12;
+
+    private final List<ColumnInfo> columns;
+    private final long rowCount;
+    private final int pageCount;
+    private final long[] distinctCounts;
+    private final Object[][] histograms;  // HISTOGRAM_BUCKETS + 1 bornes croissantes (vide si aucun record)
+
+    private TableStatistics(List<ColumnInfo> columns, long rowCount, int pageCount,
+                            long[] distinctCounts, Object[][] histograms) {
+        this.columns = columns;
+        this.rowCount = rowCount;
+        this.pageCount = pageCount;
+        this.distinctCounts = distinctCounts;
+        this.histograms = histograms;
+    }
+
+    /**
+     * Calcule les statistiques de relations de même schéma (une table,
+     * ou les partitions d'une table partitionnée) en lisant chaque page une fois
+     */
+    public static TableStatistics collect(List<Relation> relations) throws IOException {
+        Relation first = relations.get(0);
+        RecordLayout layout = first.getRecordLayout();
+        int columnCount = first.getColumnCount();
+
+        HyperLogLog[] sketches = new HyperLogLog[columnCount];
+        for (int c = 0; c < columnCount; c++) {
+            sketches[c] = new HyperLogLog(HLL_PRECISION);
+        }
+        List<Record> sample = new ArrayList<>();
+        Random random = new Random(0);
+        long rowCount = 0;
+        int pageCount = 0;
+
+        for (Relation relation : relations) {
+            Record record = relation.newRecord();
+            for (int i = 0; i < relation.getDataPageCount(); i++) {
+                pageCount++;
+                try (PageHandle page = relation.getBufferManager().GetPageHandle(relation.getDataPage(i))) {
+                    for (int slot = relation.nextOccupiedSlot(page, 0); slot >= 0;
+                            slot = relation.nextOccupiedSlot(page, slot + 1)) {
+                        relation.readRecordFromSlot(page, slot, record);
+                        for (int c = 0; c < columnCount; c++) {
+                            sketches[c].add(layout.hash(c, record.getValue(c)));
+                        }
+
+                        // Échantillon réservoir : chaque record y est avec la même probabilité
+                        if (sample.size() < SAMPLE_SIZE) {
+                            sample.add(record.copy());
+                        } else {
+                            long j = random.nextLong(rowCount + 1);
+                            if (j < SAMPLE_SIZE) {
+                                sample.set((int) j, record.copy());
+                            }
+                        }
+                        rowCount++;
+                    }
+                }
+            }
+        }
+
+        long[] distinctCounts = new long[columnCount];
+        Object[][] histograms = new Object[columnCount][];
+        for (int c = 0; c < columnCount; c++) {
+            // Au plus une valeur distincte par record
+            distinctCounts[c] = Math.min(sketches[c].estimate(), rowCount);
+            histograms[c] = buildHistogram(layout, c, sample);
+        }
+        return new TableStatistics(new ArrayList<>(first.getColumns()), rowCount, pageCount,
+                distinctCounts, histograms);
+    }
+
+    /**
+     * Bornes équi-profondeur de la colonne : quantiles k / HISTOGRAM_BUCKETS de l'échantillon
+     */
+    private static Object[] buildHistogram(RecordLayout layout, int colIdx, List<Record> sample) {
+        if (sample.isEmpty()) {
+            return new Object[0];
+        }
+        Object[] values = new Object[sample.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = sample.get(i).getValue(colIdx);
+        }
+        Arrays.sort(values, (a, b) -> compare(layout.isInt(colIdx), layout.isFloat(colIdx), a, b));
+
+        Object[] bounds = new Object[HISTOGRAM_BUCKETS + 1];
+        for (int k = 0; k <= HISTOGRAM_BUCKETS; k++) {
+            bounds[k] = values[(int) ((long) k * (values.length - 1) / HISTOGRAM_BUCKETS)];
+        }
+        return bounds;
+    }
+
+    private static int compare(boolean isInt, boolean isFloat, Object a, Object b) {
+        if (isInt) {
+            return Integer.compare(RecordLayout.toInt(a), RecordLayout.toInt(b));
+        }
+        if (isFloat) {
+            return Float.compare(RecordLayout.toFloat(a), RecordLayout.toFloat(b));
+        }
+        return String.valueOf(a).compareTo(String.valueOf(b));
+    }
+
+    /**
+     * Nombre de records de la table au moment de l'ANALYZE
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Nombre de pages de données au moment de l'ANALYZE
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Nombre estimé de valeurs distinctes de la colonne
+     */
+    public long getDistinctCount(int colIdx) {
+        return distinctCounts[colIdx];
+    }
+
+    /**
+     * Bornes de l'histogramme de la colonne (HISTOGRAM_BUCKETS + 1 valeurs
+     * croissantes, liste vide pour une table vide)
+     */
+    public List<Object> getHistogram(int colIdx) {
+        return Collections.unmodifiableList(Arrays.asList(histograms[colIdx]));
+    }
+
+    /**
+     * Nombre estimé de records pour "colonne = constante" (valeurs supposées uniformes)
+     */
+    public double estimateEqualRows(int colIdx) {
+        return distinctCounts[colIdx] == 0 ? 0 : (double) rowCount / distinctCounts[colIdx];
+    }
+
+    /**
+     * Part estimée des records dont la colonne est strictement inférieure à value,
+     * d'après l'histogramme (interpolation linéaire dans la tranche pour INT / FLOAT)
+     */
+    public double fractionBelow(int colIdx, Object value) {
+        Object[] bounds = histograms[colIdx];
+        if (bounds.length == 0) {
+            return 0;
+        }
+        boolean isInt = columns.get(colIdx).isInt();
+        boolean isFloat = columns.get(colIdx).isFloat();
+        if (compare(isInt, isFloat, value, bounds[0]) <= 0) {
+            return 0;
+        }
+        if (compare(isInt, isFloat, value, bounds[bounds.length - 1]) > 0) {
+            return 1;
+        }
+
+        // Tranche k : ]bounds[k], bounds[k + 1]]
+        int k = 0;
+        while (compare(isInt, isFloat, value, bounds[k + 1]) > 0) {
+            k++;
+        }
+        double within = 0.5;
+        if (isInt || isFloat) {
+            double low = RecordLayout.toFloat(bounds[k]);
+            double high = RecordLayout.toFloat(bounds[k + 1]);
+            if (high > low) {
+                within = (RecordLayout.toFloat(value) - low) / (high - low);
+            }
+        }
+        return (k + within) / HISTOGRAM_BUCKETS;
+    }
+
+    // ---------------------------------------------------------------- Persistance
+
+    /**
+     * Écrit les statistiques (bornes au format de leur colonne)
+     */
+    public void write(DataOutputStream dos) throws IOException {
+        dos.writeLong(rowCount);
+        dos.writeInt(pageCount);
+        for (int c = 0; c < columns.size(); c++) {
+            dos.writeLong(distinctCounts[c]);
+            dos.writeInt(histograms[c].length);
+            for (Object bound : histograms[c]) {
+                ColumnInfo col = columns.get(c);
+                if (col.isInt()) {
+                    dos.writeInt(RecordLayout.toInt(bound));
+                } else if (col.isFloat()) {
+                    dos.writeFloat(RecordLayout.toFloat(bound));
+                } else {
+                    dos.writeUTF(String.valueOf(bound));
+                }
+            }
+        }
+    }
+
+    /**
+     * Relit des statistiques écrites par write pour une table de ces colonnes
+     */
+    public static TableStatistics read(DataInputStream dis, List<ColumnInfo> columns) throws IOException {
+        long rowCount = dis.readLong();
+        int pageCount = dis.readInt();
+        long[] distinctCounts = new long[columns.size()];
+        Object[][] histograms = new Object[columns.size()][];
+        for (int c = 0; c < columns.size(); c++) {
+            distinctCounts[c] = dis.readLong();
+            histograms[c] = new Object[dis.readInt()];
+            for (int k = 0; k < histograms[c].length; k++) {
+                ColumnInfo col = columns.get(c);
+                if (col.isInt()) {
+                    histograms[c][k] = dis.readInt();
+                } else if (col.isFloat()) {
+                    histograms[c][k] = dis.readFloat();
+                } else {
+                    histograms[c][k] = dis.readUTF();
+                }
+            }
+        }
+        return new TableStatistics(new ArrayList<>(columns), rowCount, pageCount, distinctCounts, histograms);
+    }
+}
@@ -0,0 +1,210 @@
+package bdda.storage;
+
+import java.nio.ByteBuffer;
+
+import bdda.core.PageId;
+
+/**
+ * Zone map d'une relation : pour chaque page de données, le minimum et le
+ * maximum de chaque colonne INT / FLOAT. Un parcours avec conditions saute
+ * les pages dont l'intervalle ne peut pas satisfaire une condition
+ * (voir Condition.mayMatch), sans les épingler.
+ *
+ * Les intervalles sont rangés au début du résumé de l'entrée de la page
+ * dans la Free Space Map (persistés avec elle, voir aussi BloomFilters) :
+ *
+ * Offset 0-3 : 1 si les intervalles sont valides (0 : page sans record ou
+ *              intervalles inconnus, la page n'est jamais sautée)
+ * Offset 4.. : pour chaque colonne suivie, min (4 bytes) puis max (4 bytes)
+ *
+ * Élargissement paresseux : une insertion ou un UPDATE élargit l'intervalle,
+ * une suppression ne le réduit pas (il reste une borne valide). Une page
+ * vidée est retirée de la FSM avec son résumé.
+ * Les chaînes (CHAR, VARCHAR, DICT) ne sont pas suivies.
+ */
+public final class ZoneMap {
+
+    private static final int HAS_VALUES_OFFSET = 0;
+    private static final int BOUNDS_OFFSET = 4;
+
+    private final RecordLayout layout;
+    private final FreeSpaceMap freeSpaceMap;
+    private final int[] boundsOffsets;  // offset du min de la colonne dans le résumé, -1 si non suivie
+    private final int size;              // taille de la zone map dans le résumé (0 : aucune colonne suivie)
+
+    ZoneMap(RecordLayout layout, FreeSpaceMap freeSpaceMap) {
+        this.layout = layout;
+        this.freeSpaceMap = freeSpaceMap;
+        this.boundsOffsets = new int[layout.getColumnCount()];
+
+        int offset = BOUNDS_OFFSET;
+        for (int c = 0; c < boundsOffsets.length; c++) {
+            if (isTrackable(layout, c)) {
+                boundsOffsets[c] = offset;
+                offset += 8;
+            } else {
+                boundsOffsets[c] = -1;
+            }
+        }
+        this.size = summarySize(layout);
+    }
+
+    private static boolean isTrackable(RecordLayout layout, int colIdx) {
+        return layout.isInt(colIdx) || layout.isFloat(colIdx);
+    }
+
+    /**
+     * Taille du résumé d'une page pour ce schéma (0 s'il n'a aucune colonne INT / FLOAT)
+     */
+    static int summarySize(RecordLayout layout) {
+        int tracked = 0;
+        for (int c = 0; c < layout.getColumnCount(); c++) {
+            if (isTrackable(layout, c)) {
+                tracked++;
+            }
+        }
+        return tracked == 0 ? 0 : BOUNDS_OFFSET + 8 * tracked;
+    }
+
+    /**
+     * Vrai si la colonne a un intervalle par page (INT ou FLOAT)
+     */
+    public boolean isTracked(int colIdx) {
+        return boundsOffsets[colIdx] >= 0;
+    }
+
+    public boolean isInt(int colIdx) {
+        return layout.isInt(colIdx);
+    }
+
+    /**
+     * Vrai si les intervalles de la page sont valides (utilisables pour la sauter)
+     */
+    public boolean hasValues(PageId pageId) {
+        if (size == 0 || !freeSpaceMap.contains(pageId)) {
+            return false;
+        }
+        return summaries().getInt(base(pageId) + HAS_VALUES_OFFSET) != 0;
+    }
+
+    public int getIntMin(PageId pageId, int colIdx) {
+        return summaries().getInt(base(pageId) + boundsOffset(colIdx));
+    }
+
+    public int getIntMax(PageId pageId, int colIdx) {
+        return summaries().getInt(base(pageId) + boundsOffset(colIdx) + 4);
+    }
+
+    public float getFloatMin(PageId pageId, int colIdx) {
+        return summaries().getFloat(base(pageId) + boundsOffset(colIdx));
+    }
+
+    public float getFloatMax(PageId pageId, int colIdx) {
+        return summaries().getFloat(base(pageId) + boundsOffset(colIdx) + 4);
+    }
+
+    /**
+     * Élargit en mémoire les intervalles de quelques colonnes (UPDATE en place)
+     * @return true si le résumé a changé (Relation l'écrit dans la FSM)
+     */
+    boolean include(PageId pageId, int[] colIndices, Object[] values) {
+        if (size == 0) {
+            return false;
+        }
+        ByteBuffer buff = summaries();
+        int base = base(pageId);
+        if (buff.getInt(base + HAS_VALUES_OFFSET) == 0) {
+            return false;  // intervalles inconnus : rien à élargir
+        }
+        boolean changed = false;
+        for (int k = 0; k < colIndices.length; k++) {
+            int c = colIndices[k];
+            if (!isTracked(c)) {
+                continue;
+            }
+            if (layout.isInt(c)) {
+                changed |= includeInt(buff, base + boundsOffsets[c], RecordLayout.toInt(values[k]), false);
+            } else {
+                changed |= includeFloat(buff, base + boundsOffsets[c], RecordLayout.toFloat(values[k]), false);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Élargit en mémoire les intervalles avec un record inséré ou réécrit
+     * @return true si le résumé a changé (Relation l'écrit dans la FSM)
+     */
+    boolean include(PageId pageId, Record record) {
+        if (size == 0) {
+            return false;
+        }
+        ByteBuffer buff = summaries();
+        int base = base(pageId);
+        boolean first = buff.getInt(base + HAS_VALUES_OFFSET) == 0;
+        boolean changed = first;
+        for (int c = 0; c < boundsOffsets.length; c++) {
+            if (boundsOffsets[c] < 0) {
+                continue;
+            }
+            if (layout.isInt(c)) {
+                changed |= includeInt(buff, base + boundsOffsets[c], record.getInt(c), first);
+            } else {
+                changed |= includeFloat(buff, base + boundsOffsets[c], record.getFloat(c), first);
+            }
+        }
+        buff.putInt(base + HAS_VALUES_OFFSET, 1);
+        return changed;
+    }
+
+    /**
+     * Vide les intervalles d'une page en mémoire (avant de les recalculer)
+     */
+    void clear(PageId pageId) {
+        if (size > 0) {
+            summaries().putInt(base(pageId) + HAS_VALUES_OFFSET, 0);
+        }
+    }
+
+    private static boolean includeInt(ByteBuffer buff, int pos, int value, boolean first) {
+        boolean changed = false;
+        if (first || value < buff.getInt(pos)) {
+            buff.putInt(pos, value);
+            changed = true;
+        }
+        if (first || value > buff.getInt(pos + 4)) {
+            buff.putInt(pos + 4, value);
+            changed = true;
+        }
+        return changed;
+    }
+
+    private static boolean includeFloat(ByteBuffer buff, int pos, float value, boolean first) {
+        // Même ordre que Condition (Float.compare)
+        boolean changed = false;
+        if (first || Float.compare(value, buff.getFloat(pos)) < 0) {
+            buff.putFloat(pos, value);
+            changed = true;
+        }
+        if (first || Float.compare(value, buff.getFloat(pos + 4)) > 0) {
+            buff.putFloat(pos + 4, value);
+            changed = true;
+        }
+        return changed;
+    }
+
+    private ByteBuffer summaries() {
+        return freeSpaceMap.getSummaries();
+    }
+
+    private int base(PageId pageId) {
+        return freeSpaceMap.getSummaryOffset(pageId);
+    }
+
+    private int boundsOffset(int colIdx) {
+        if (boundsOffsets[colIdx] < 0) {
+            throw new IllegalArgumentException("Colonne sans zone map : " + colIdx);
+        }
+        return boundsOffsets[colIdx];
+    }
+}
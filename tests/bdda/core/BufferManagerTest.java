@@ -3,10 +3,12 @@ package bdda.core;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -130,6 +132,150 @@ public class BufferManagerTest {
         String msg = exception.getMessage();
         assertTrue(msg.contains("toutes les frames sont épinglées") || msg.contains("saturé"), 
                    "Le message d'erreur doit indiquer la saturation");
+
+        // Sans delai d'attente (defaut), la saturation est quand meme comptee
+        assertEquals(1, bufferManager.getPinWaitCount());
+        assertEquals(1, bufferManager.getPinWaitTimeouts());
+    }
+
+    @Test
+    public void testPageHandle() throws IOException {
+        PageId pid = diskManager.allocPage();
+
+        // try-with-resources -> la page est desepinglee a la sortie du bloc
+        try (PageHandle page = bufferManager.GetPageHandle(pid)) {
+            assertEquals(pid, page.getPageId());
+            assertEquals(1, getFrameFromBuffer(pid).pinCount);
+
+            page.putInt(0, 1234);
+            page.putFloat(4, 2.5f);
+            page.markDirty();
+
+            // Les accesseurs sont coherents avec ByteBuffer (big-endian)
+            assertEquals(1234, page.getByteBuffer().getInt(0));
+            assertEquals(2.5f, page.getByteBuffer().getFloat(4));
+        }
+
+        Frame frame = getFrameFromBuffer(pid);
+        assertEquals(0, frame.pinCount, "close() doit desepingler la page");
+        assertTrue(frame.dirty, "markDirty() doit marquer la frame");
+
+        // La poignee est celle de la frame : aucune allocation par acces
+        PageHandle h1 = bufferManager.GetPageHandle(pid);
+        PageHandle h2 = bufferManager.GetPageHandle(pid);
+        assertSame(h1, h2);
+        h1.close();
+        h2.close();
+        assertEquals(0, frame.pinCount);
+
+        bufferManager.FlushBuffers();
+        try (PageHandle page = bufferManager.GetPageHandle(pid)) {
+            assertEquals(1234, page.getInt(0));
+        }
+    }
+
+    @Test
+    public void testPageHandleMisuse(@TempDir Path tempDir) throws IOException {
+        DBConfig smallConfig = new DBConfig(tempDir.toString(), 4096, 5, 1, BufferPolicy.LRU);
+        DiskManager dm = new DiskManager(smallConfig);
+        BufferManager bm = new BufferManager(smallConfig, dm);
+        PageId p1 = dm.allocPage();
+        PageId p2 = dm.allocPage();
+
+        // Double close : le second close ne desepingle pas un autre epinglage
+        PageHandle h1 = bm.GetPageHandle(p1);
+        h1.close();
+        assertThrows(IllegalStateException.class, h1::close);
+
+
+        // Poignee gardee apres eviction : la frame porte maintenant p2
+        try (PageHandle page = bm.GetPageHandle(p2)) {
+            assertEquals(p1, h1.getPageId());
+            assertThrows(IllegalStateException.class, h1::markDirty);
+            assertThrows(IllegalStateException.class, h1::close);
+            assertEquals(1, bm.getPageTable().get(p2.getFileIdx() + ":" + p2.getPageIdx()).pinCount);
+        }
+    }
+
+    @Test
+    public void testCompressedCache(@TempDir Path tempDir) throws IOException {
+        // Pool de 2 frames + 1 Mo de pages compressees
+        DBConfig smallConfig = new DBConfig(tempDir.toString(), 4096, 5, 2, BufferPolicy.LRU);
+        smallConfig.setCompressedCacheMb(1);
+        DiskManager dm = new DiskManager(smallConfig);
+        BufferManager bm = new BufferManager(smallConfig, dm);
+        CompressedPageCache cache = bm.getCompressedCache();
+        assertNotNull(cache);
+
+        PageId[] pids = new PageId[4];
+        for (int i = 0; i < pids.length; i++) {
+            pids[i] = dm.allocPage();
+            try (PageHandle page = bm.GetPageHandle(pids[i])) {
+                page.putInt(0, 100 + i);
+                page.markDirty();
+            }
+        }
+
+        // Les 2 premieres pages ont ete evincees -> dans le cache compresse
+        assertEquals(2, cache.getPageCount());
+        assertTrue(cache.getUsedBytes() < 2 * 4096);
+
+        // Relecture : servie par le cache, contenu intact
+        try (PageHandle page = bm.GetPageHandle(pids[0])) {
+            assertEquals(100, page.getInt(0));
+        }
+        assertEquals(1, cache.getHits());
+
+        // Desactive par defaut
+        assertNull(bufferManager.getCompressedCache());
+    }
+
+    @Test
+    public void testPinWaitUntilUnpin(@TempDir Path tempDir) throws Exception {
+        DBConfig smallConfig = new DBConfig(tempDir.toString(), 4096, 5, 1, BufferPolicy.LRU);
+        smallConfig.setPinTimeoutMs(5000);
+        DiskManager dm = new DiskManager(smallConfig);
+        BufferManager bm = new BufferManager(smallConfig, dm);
+
+        PageId p1 = dm.allocPage();
+        PageId p2 = dm.allocPage();
+        bm.GetPage(p1);
+
+        // Une autre session libere la frame apres un court delai
+        Thread other = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                return;
+            }
+            bm.FreePage(p1, false);
+        });
+        other.start();
+
+        // Le pool est sature : la demande attend au lieu d'echouer
+        bm.GetPage(p2);
+        other.join();
+
+        assertEquals(1, bm.getPinWaitCount());
+        assertEquals(0, bm.getPinWaitTimeouts());
+        assertTrue(bm.getTotalPinWaitMs() >= 50);
+    }
+
+    @Test
+    public void testPinWaitTimeout(@TempDir Path tempDir) throws IOException {
+        DBConfig smallConfig = new DBConfig(tempDir.toString(), 4096, 5, 1, BufferPolicy.LRU);
+        smallConfig.setPinTimeoutMs(50);
+        DiskManager dm = new DiskManager(smallConfig);
+        BufferManager bm = new BufferManager(smallConfig, dm);
+
+        PageId p1 = dm.allocPage();
+        PageId p2 = dm.allocPage();
+        bm.GetPage(p1);
+
+        Exception exception = assertThrows(IOException.class, () -> bm.GetPage(p2));
+        assertTrue(exception.getMessage().contains("saturé"));
+        assertEquals(1, bm.getPinWaitCount());
+        assertEquals(1, bm.getPinWaitTimeouts());
     }
 
     // Methode utilitaire pour acceder a la Frame via la PageTable
@@ -52,6 +52,32 @@ class DBConfigTest {
         assertEquals("/usr/local/db", config.getPath());
         assertEquals(8192, config.getPageSize());
         assertEquals(BufferPolicy.MRU, config.getBufferPolicy());
+        assertEquals(0, config.getCompressedCacheMb(), "Cache compresse desactive par defaut");
+    }
+
+    @Test
+    void testLoadDBConfigOptionalSettings(@TempDir Path tempDir) throws IOException {
+        File configFile = tempDir.resolve("db.config").toFile();
+        List<String> lines = List.of(
+            "dbpath = '/usr/local/db'",
+            "pagesize = 4096",
+            "dm_maxfilecount = 20",
+            "bm_buffercount = 100",
+            "bm_policy = 'LRU'",
+            "bm_compressed_cache_mb = 16"
+        );
+        Files.write(configFile.toPath(), lines);
+
+        DBConfig config = DBConfig.LoadDBConfig(configFile);
+
+        assertNotNull(config);
+        assertEquals(16, config.getCompressedCacheMb());
+
+        // Seuil de VACUUM automatique hors de [0, 1] refusé
+        assertThrows(IllegalArgumentException.class, () -> config.setVacuumThreshold(-0.1));
+        assertThrows(IllegalArgumentException.class, () -> config.setVacuumThreshold(1.5));
+        config.setVacuumThreshold(1);
+        assertEquals(1, config.getVacuumThreshold());
     }
 
     @Test
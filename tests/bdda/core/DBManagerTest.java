@@ -1,9 +1,12 @@
 package bdda.core;
 
 import bdda.manager.DBManager;
+import bdda.query.Condition;
 import bdda.storage.ColumnInfo;
+import bdda.storage.PartitionedRelation;
 import bdda.storage.Record;
 import bdda.storage.Relation;
+import bdda.storage.StorageLayout;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -154,6 +157,44 @@ class DBManagerTest {
         assertEquals(42, records.get(0).getValues().get(0));
     }
 
+    @Test
+    void testWarmUpFromHotPages() throws Exception {
+        List<ColumnInfo> cols = Arrays.asList(new ColumnInfo("Val", "INT"));
+        Relation table = new Relation("Chaude", cols, diskManager, bufferManager);
+        dbManager.AddTable(table);
+        table.InsertRecord(new Record(Arrays.asList(7)));
+
+        // La fermeture memorise les pages residentes
+        dbManager.Finish();
+
+        // Redemarrage : pool froid puis rechauffement
+        DiskManager dm2 = new DiskManager(config);
+        BufferManager bm2 = new BufferManager(config, dm2);
+        DBManager dbManager2 = new DBManager(config, dm2, bm2);
+        dbManager2.LoadState();
+
+        List<PageId> hot = dbManager2.LoadHotPages();
+        assertFalse(hot.isEmpty());
+
+        // LoadState ne lit que les pages d'en-tete et de FSM : les pages de
+        // donnees chaudes ne sont pas encore dans le pool
+        List<PageId> dataPages = dbManager2.GetTable("Chaude").getDataPages();
+        assertFalse(dataPages.isEmpty());
+        assertTrue(hot.containsAll(dataPages));
+        for (PageId pid : dataPages) {
+            assertFalse(bm2.getPageTable().containsKey(pid.getFileIdx() + ":" + pid.getPageIdx()));
+        }
+
+        dbManager2.StartWarmUp().join();
+
+        for (PageId pid : hot) {
+            assertTrue(bm2.getPageTable().containsKey(pid.getFileIdx() + ":" + pid.getPageIdx()));
+        }
+
+        // Les pages prechargees ne sont pas epinglees
+        assertEquals(7, dbManager2.GetTable("Chaude").GetAllRecords().get(0).getValue(0));
+    }
+
     @Test
     void testDescribeTable() throws IOException {
         // Vérifie juste qu'aucune exception n'est levée
@@ -163,4 +204,81 @@ class DBManagerTest {
         assertDoesNotThrow(() -> dbManager.DescribeTable("T1"));
         assertDoesNotThrow(() -> dbManager.DescribeAllTables());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testRangePartitionsRoutingPruningAndDrop() throws IOException {
+        List<ColumnInfo> cols = Arrays.asList(new ColumnInfo("Jour", "INT"), new ColumnInfo("Nom", "CHAR(5)"));
+        PartitionedRelation table = dbManager.CreateRangePartitionedTable("Ventes", cols,
+                StorageLayout.ROW, 0, Arrays.asList(10, 20, 30));
+        assertEquals(3, table.getPartitionCount());
+        assertTrue(dbManager.TableExists("Ventes"));
+
+        for (int i = 0; i < 30; i++) {
+            table.InsertRecord(new Record(Arrays.asList(i, "n" + i)));
+        }
+        assertEquals(10, table.getPartition(1).getRecordCount());
+        assertThrows(IllegalArgumentException.class, () -> table.InsertRecord(new Record(Arrays.asList(30, "x"))));
+
+        // Jour >= 20 : seule la derniere partition peut correspondre ; 15 > Jour : les deux premieres
+        List<Condition> recent = Arrays.asList(new Condition(0, null, ">=", -1, 20));
+        List<Condition> old = Arrays.asList(new Condition(-1, 15, ">", 0, null));
+        assertFalse(Condition.mayMatchAll(recent, table, 1));
+        assertTrue(Condition.mayMatchAll(recent, table, 2));
+        assertTrue(Condition.mayMatchAll(old, table, 1));
+        assertFalse(Condition.mayMatchAll(old, table, 2));
+
+        // Supprimer la plus ancienne partition : pages liberees, valeurs refusees
+        assertEquals(10, dbManager.DropPartition("Ventes", 0));
+        assertEquals(2, table.getPartitionCount());
+        assertEquals(-1, table.partitionFor(5));
+        dbManager.AddRangePartition("Ventes", 40);
+        table.InsertRecord(new Record(Arrays.asList(35, "y")));
+        assertEquals(21, table.getRecordCount());
+
+        // Persistance du schema de partitionnement
+        dbManager.Finish();
+        DiskManager dm2 = new DiskManager(config);
+        BufferManager bm2 = new BufferManager(config, dm2);
+        DBManager dbManager2 = new DBManager(config, dm2, bm2);
+        dbManager2.LoadState();
+
+        PartitionedRelation loaded = dbManager2.GetPartitionedTable("Ventes");
+        assertNotNull(loaded);
+        assertEquals(3, loaded.getPartitionCount());
+        assertEquals(10, loaded.getLowBound(0));
+        assertEquals(40, loaded.getHighBound(2));
+        assertEquals(21, loaded.getRecordCount());
+        assertEquals(1, loaded.getPartition(2).GetAllRecords().size());
+    }
+
+    @Test
+    void testHashPartitionsEqualityPruning() throws IOException {
+        List<ColumnInfo> cols = Arrays.asList(new ColumnInfo("Id", "INT"), new ColumnInfo("Ville", "CHAR(8)"));
+        PartitionedRelation table = dbManager.CreateHashPartitionedTable("Clients", cols,
+                StorageLayout.ROW, 1, 4);
+        String[] villes = {"Paris", "Lyon", "Lille", "Nantes", "Nice", "Brest"};
+        for (int i = 0; i < 60; i++) {
+            table.InsertRecords(Arrays.asList(new Record(Arrays.asList(i, villes[i % villes.length]))));
+        }
+        assertEquals(60, table.getRecordCount());
+
+        // Une egalite sur la colonne de partitionnement ne garde qu'une partition, qui contient les records
+        List<Condition> conditions = Arrays.asList(new Condition(1, null, "=", -1, "Lyon"));
+        int kept = -1;
+        for (int p = 0; p < table.getPartitionCount(); p++) {
+            if (Condition.mayMatchAll(conditions, table, p)) {
+                assertEquals(-1, kept);
+                kept = p;
+            }
+        }
+        long lyon = table.getPartition(kept).GetAllRecords().stream()
+                .filter(r -> r.getValue(1).equals("Lyon")).count();
+        assertEquals(10, lyon);
+
+        // Les autres operateurs ne permettent pas d'eliminer de partition
+        List<Condition> range = Arrays.asList(new Condition(1, null, "<", -1, "Lyon"));
+        for (int p = 0; p < table.getPartitionCount(); p++) {
+            assertTrue(Condition.mayMatchAll(range, table, p));
+        }
+    }
+}
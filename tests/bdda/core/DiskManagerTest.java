@@ -122,4 +122,29 @@ class DiskManagerTest {
             assertNotNull(diskManager.allocPage());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void testWritePagesSequential() throws IOException {
+        PageId p0 = diskManager.allocPage();
+        PageId p1 = diskManager.allocPage();
+        PageId p2 = diskManager.allocPage();
+        assertEquals(p0.getPageIdx() + 2, p2.getPageIdx());
+
+        // 3 pages bout a bout, ecrites en une seule operation
+        byte[] data = new byte[3 * PAGE_SIZE];
+        new Random().nextBytes(data);
+        diskManager.WritePages(p0, data, 3);
+
+        byte[] buff = new byte[PAGE_SIZE];
+        PageId[] pages = {p0, p1, p2};
+        for (int i = 0; i < pages.length; i++) {
+            diskManager.ReadPage(pages[i], buff);
+            for (int j = 0; j < PAGE_SIZE; j++) {
+                assertEquals(data[i * PAGE_SIZE + j], buff[j]);
+            }
+        }
+
+        // Sequence depassant la fin du fichier -> erreur
+        assertThrows(IOException.class, () -> diskManager.WritePages(p1, data, 3));
+    }
+}
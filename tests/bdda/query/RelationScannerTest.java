@@ -5,6 +5,7 @@ import bdda.core.DBConfig;
 import bdda.core.DiskManager;
 import bdda.storage.ColumnInfo;
 import bdda.storage.Record;
+import bdda.storage.RecordView;
 import bdda.storage.Relation;
 
 import org.junit.jupiter.api.AfterEach;
@@ -106,6 +107,76 @@ class RelationScannerTest {
         scanner.Close();
     }
 
+    @Test
+    void testRelationScannerPartition() throws IOException {
+        // Remplir plusieurs pages
+        int perPage = relation.getSlotCount();
+        List<Record> batch = new ArrayList<>();
+        for (int i = 0; i < 3 * perPage; i++) {
+            batch.add(new Record(Arrays.asList(100 + i, 1.0f, "P" + i)));
+        }
+        relation.InsertRecords(batch);
+        int pageCount = relation.getDataPageCount();
+        assertTrue(pageCount >= 4);
+
+        // Les intervalles couvrent tout le répertoire, sans chevauchement
+        List<RelationScanner> scanners = RelationScanner.partition(relation, 3);
+        assertEquals(3, scanners.size());
+        assertEquals(pageCount, RelationScanner.partition(relation, 100).size());
+
+        int total = 0;
+        for (RelationScanner scanner : scanners) {
+            while (scanner.GetNextView() != null) {
+                total++;
+            }
+            scanner.Close();
+        }
+        assertEquals(4 + batch.size(), total);
+
+        // Un intervalle vide ne lit rien
+        RelationScanner empty = new RelationScanner(relation, 1, 1);
+        assertNull(empty.GetNextRecord());
+        empty.Close();
+    }
+
+    @Test
+    void testZoneMapSkipsPages() throws IOException {
+        // Ages croissants : chaque page couvre un intervalle distinct
+        int perPage = relation.getSlotCount();
+        List<Record> batch = new ArrayList<>();
+        for (int i = 0; i < 4 * perPage; i++) {
+            batch.add(new Record(Arrays.asList(100 + i, 1.0f, "Z" + i)));
+        }
+        relation.InsertRecords(batch);
+
+        List<Condition> conditions = Collections.singletonList(
+            new Condition(-1, 100 + perPage / 2, Condition.OP_GREATER, 0, null));
+        int candidates = 0;
+        for (int i = 0; i < relation.getDataPageCount(); i++) {
+            if (Condition.mayMatchAll(conditions, relation, relation.getDataPage(i))) {
+                candidates++;
+            }
+        }
+        // La page des 4 premiers records et celle des ages < 100 + perPage / 2
+        assertTrue(candidates <= 2, "pages candidates : " + candidates);
+
+        // Le resultat est le meme qu'en lisant toutes les pages
+        RelationScannerWithSelect scanner = new RelationScannerWithSelect(relation, conditions);
+        int count = 0;
+        while (scanner.GetNextRecord() != null) {
+            count++;
+        }
+        assertEquals(4 + perPage / 2, count);
+
+        SelectOperator select = new SelectOperator(new RelationScanner(relation), conditions, relation.getColumns());
+        count = 0;
+        while (select.GetNextView() != null) {
+            count++;
+        }
+        assertEquals(4 + perPage / 2, count);
+        select.Close();
+    }
+
     // --- TESTS POUR RELATION SCANNER WITH SELECT (AVEC CONDITIONS) ---
 
     @Test
@@ -191,4 +262,77 @@ class RelationScannerTest {
         assertNotNull(r2);
         assertEquals("Bob", r2.getValue(2));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testScannerSelectOnDictionaryColumn() throws IOException {
+        List<ColumnInfo> columns = Arrays.asList(
+            new ColumnInfo("Id", "INT"),
+            new ColumnInfo("Pays", "VARCHAR(20) DICT")
+        );
+        Relation rel = new Relation("Clients", columns, diskManager, bufferManager);
+        String[] pays = {"FR", "DE", "IT"};
+        for (int i = 0; i < 30; i++) {
+            rel.InsertRecord(new Record(Arrays.asList(i, pays[i % 3])));
+        }
+
+        // Pays = "DE" : comparaison sur les codes
+        Condition cond = new Condition(1, null, Condition.OP_EQUAL, -1, "DE");
+        RelationScannerWithSelect scanner = new RelationScannerWithSelect(rel, Collections.singletonList(cond));
+        assertEquals(1, cond.getDictionaryColIndex());
+
+        int count = 0;
+        Record r;
+        while ((r = scanner.GetNextRecord()) != null) {
+            assertEquals("DE", r.getValue(1));
+            count++;
+        }
+        assertEquals(10, count);
+
+        // Constante absente du dictionnaire : = ne trouve rien, <> trouve tout
+        Condition absent = new Condition(1, null, Condition.OP_EQUAL, -1, "ES");
+        assertNull(new RelationScannerWithSelect(rel, Collections.singletonList(absent)).GetNextRecord());
+        Condition different = new Condition(-1, "ES", Condition.OP_NOT_EQUAL, 1, null);
+        RelationScannerWithSelect all = new RelationScannerWithSelect(rel, Collections.singletonList(different));
+        count = 0;
+        while (all.GetNextRecord() != null) {
+            count++;
+        }
+        assertEquals(30, count);
+    }
+
+    @Test
+    void testRecordViewThroughOperators() throws IOException {
+        // Vues directes : décodage colonne par colonne, sans objet pour INT / FLOAT
+        RelationScanner scanner = new RelationScanner(relation);
+        RecordView view = scanner.GetNextView();
+        assertTrue(view.isAttached());
+        assertEquals(20, view.getInt(0));
+        assertEquals(15.5f, view.getFloat(1));
+        assertEquals("Alice", view.getValue(2));
+        assertEquals(new Record(Arrays.asList(20, 15.5f, "Alice")), view.toRecord());
+        assertNotNull(view.getRecordId());
+
+        // Fin du parcours : la dernière vue est détachée de sa page mais reste lisible
+        RecordView last = null;
+        RecordView v;
+        while ((v = scanner.GetNextView()) != null) {
+            last = v;
+        }
+        assertFalse(last.isAttached());
+        assertEquals("David", last.getValue(2));
+        assertEquals(25, last.getInt(0));
+
+        // Select + Project sur des vues : seul le résultat est matérialisé
+        Condition cond = new Condition(0, null, Condition.OP_EQUAL, -1, 20);
+        SelectOperator select = new SelectOperator(new RelationScanner(relation),
+            Collections.singletonList(cond), relation.getColumns());
+        ProjectOperator project = new ProjectOperator(select, Arrays.asList(2));
+        List<Record> results = new ArrayList<>();
+        Record r;
+        while ((r = project.GetNextRecord()) != null) {
+            results.add(r);
+        }
+        project.Close();
+        assertEquals(Arrays.asList(new Record(Arrays.asList("Alice")), new Record(Arrays.asList("Charlie"))), results);
+    }
+}
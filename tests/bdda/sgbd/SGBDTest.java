@@ -0,0 +1,106 @@
+package bdda.sgbd;
+
+import bdda.core.BufferManager;
+import bdda.core.DBConfig;
+import bdda.core.DiskManager;
+import bdda.manager.DBManager;
+import bdda.storage.PartitionedRelation;
+import bdda.storage.Record;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SGBDTest {
+
+    @TempDir
+    Path tempDir;
+
+    private DBConfig loadConfig() throws IOException {
+        File configFile = tempDir.resolve("config.txt").toFile();
+        Files.write(configFile.toPath(), List.of(
+            "dbpath = '" + tempDir + "'",
+            "pagesize = 4096",
+            "dm_maxfilecount = 5",
+            "bm_buffercount = 32",
+            "bm_policy = 'LRU'"
+        ));
+        return DBConfig.LoadDBConfig(configFile);
+    }
+
+    /**
+     * Exécute des commandes (suivies de EXIT) et retourne la sortie standard
+     */
+    private String run(DBConfig config, List<String> commands) throws IOException {
+        InputStream in = System.in;
+        PrintStream out = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        List<String> lines = new ArrayList<>(commands);
+        lines.add("EXIT");
+        try {
+            System.setIn(new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8)));
+            System.setOut(new PrintStream(captured, true, StandardCharsets.UTF_8));
+            new SGBD(config).Run();
+        } finally {
+            System.setIn(in);
+            System.setOut(out);
+        }
+        return captured.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testUpdateMovesRecordsAcrossPartitions() throws IOException {
+        DBConfig config = loadConfig();
+        List<String> commands = new ArrayList<>();
+        commands.add("CREATE TABLE V (Id:INT,P:INT,Nom:VARCHAR(5000) DICT) PARTITION BY RANGE(P) (10,20)");
+        for (int i = 0; i < 20; i++) {
+            commands.add("INSERT INTO V VALUES (" + i + "," + i + ",\"n" + i + "\")");
+        }
+        // Chaîne trop longue pour le dictionnaire : refusée avant qu'aucun record ne soit touché
+        commands.add("UPDATE V v SET v.P=15,v.Nom=\"" + "y".repeat(4500) + "\" WHERE v.P<5");
+        // Les records 0 à 4 passent de la première à la deuxième partition
+        commands.add("UPDATE V v SET v.P=15,v.Nom=\"moved\" WHERE v.P<5");
+        String output = run(config, commands);
+        assertTrue(output.contains("Total updated records=5"), output);
+
+        DiskManager diskManager = new DiskManager(config);
+        BufferManager bufferManager = new BufferManager(config, diskManager);
+        DBManager dbManager = new DBManager(config, diskManager, bufferManager);
+        dbManager.LoadState();
+        PartitionedRelation table = dbManager.GetPartitionedTable("V");
+        assertEquals(20, table.getRecordCount());
+        assertEquals(5, table.getPartition(0).getRecordCount());
+        assertEquals(15, table.getPartition(1).getRecordCount());
+        for (Record record : table.getPartition(0).GetAllRecords()) {
+            int id = (Integer) record.getValue(0);
+            assertTrue(id >= 5 && id < 10);
+            assertEquals("n" + id, record.getValue(2));
+        }
+        int moved = 0;
+        for (Record record : table.getPartition(1).GetAllRecords()) {
+            int id = (Integer) record.getValue(0);
+            if (id < 5) {
+                assertEquals(15, record.getValue(1));
+                assertEquals("moved", record.getValue(2));
+                moved++;
+            } else {
+                assertEquals(id, record.getValue(1));
+                assertEquals("n" + id, record.getValue(2));
+            }
+        }
+        assertEquals(5, moved);
+        dbManager.Finish();
+    }
+}
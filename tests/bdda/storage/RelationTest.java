@@ -0,0 +1,767 @@
+package bdda.storage;
+
+import bdda.core.BufferManager;
+import bdda.core.DBConfig;
+import bdda.core.DiskManager;
+import bdda.core.PageHandle;
+import bdda.core.PageId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RelationTest {
+
+    private DBConfig config;
+    private DiskManager diskManager;
+    private BufferManager bufferManager;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        File configFile = tempDir.resolve("config.txt").toFile();
+        Files.write(configFile.toPath(), List.of(
+            "dbpath = '" + tempDir + "'",
+            "pagesize = 4096",
+            "dm_maxfilecount = 5",
+            "bm_buffercount = 10",
+            "bm_policy = 'LRU'"
+        ));
+        config = DBConfig.LoadDBConfig(configFile);
+        diskManager = new DiskManager(config);
+        bufferManager = new BufferManager(config, diskManager);
+    }
+
+    private Relation createRelation() throws IOException {
+        List<ColumnInfo> columns = Arrays.asList(
+            new ColumnInfo("Id", "INT"),
+            new ColumnInfo("Nom", "VARCHAR(20)")
+        );
+        return new Relation("R", columns, diskManager, bufferManager);
+    }
+
+    @Test
+    void testHeaderCountersAfterInsertAndDelete() throws IOException {
+        Relation rel = createRelation();
+        int perPage = rel.getSlotCount();
+
+        // Une page pleine + une page avec 1 record
+        List<RecordId> rids = new ArrayList<>();
+        for (int i = 0; i <= perPage; i++) {
+            rids.add(rel.InsertRecord(new Record(Arrays.asList(i, "n" + i))));
+        }
+
+        assertEquals(perPage + 1, rel.getRecordCount());
+        assertEquals(2, rel.getDataPageCount());
+        assertEquals(1, rel.getFullPageCount());
+        assertEquals(1, rel.getFreePageCount());
+
+        // Supprimer le dernier record -> sa page est désallouée
+        rel.DeleteRecord(rids.get(perPage));
+        assertEquals(perPage, rel.getRecordCount());
+        assertEquals(1, rel.getDataPageCount());
+        assertEquals(rel.getDataPageCount(), rel.getDataPages().size());
+    }
+
+    @Test
+    void testHeaderStateReloaded() throws IOException {
+        Relation rel = createRelation();
+        for (int i = 0; i < 5; i++) {
+            rel.InsertRecord(new Record(Arrays.asList(i, "x")));
+        }
+        bufferManager.FlushBuffers();
+
+        // Rechargement depuis la Header Page
+        Relation loaded = new Relation("R", rel.getColumns(), rel.getHeaderPageId(), diskManager, bufferManager);
+        assertEquals(5, loaded.getRecordCount());
+        assertEquals(1, loaded.getDataPageCount());
+        assertEquals(5, loaded.GetAllRecords().size());
+    }
+
+    @Test
+    void testBitmapSlotCountAndReuse() throws IOException {
+        Relation rel = createRelation();
+        // Record de 28 octets : 140 slots avec une bytemap, 144 avec une bitmap
+        assertEquals(144, rel.getSlotCount());
+
+        List<RecordId> rids = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            rids.add(rel.InsertRecord(new Record(Arrays.asList(i, "v" + i))));
+        }
+
+        // Libérer un slot du second mot de la bitmap : il est réutilisé en premier
+        rel.DeleteRecord(rids.get(100));
+        RecordId reused = rel.InsertRecord(new Record(Arrays.asList(999, "z")));
+        assertEquals(100, reused.getSlotIdx());
+
+        try (PageHandle page = bufferManager.GetPageHandle(reused.getPageId())) {
+            assertEquals(0, rel.nextOccupiedSlot(page, 0));
+            assertEquals(100, rel.nextOccupiedSlot(page, 100));
+            assertEquals(-1, rel.nextOccupiedSlot(page, 120));
+        }
+        assertEquals(120, rel.GetAllRecords().size());
+    }
+
+    @Test
+    void testLegacyPagesMigratedOnLoad() throws IOException {
+        Relation rel = createRelation();
+        List<RecordId> rids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            rids.add(rel.InsertRecord(new Record(Arrays.asList(i, "old" + i))));
+        }
+
+        // Réécrire la page au format 1 : records à partir de l'offset 16, bytemap en fin de zone
+        int recordSize = 28;
+        int legacySlots = (4096 - 16) / (recordSize + 1);
+        int slotsOffset = 24 + 8 * 3;
+        try (PageHandle page = bufferManager.GetPageHandle(rids.get(0).getPageId())) {
+            byte[] bytes = page.getBytes();
+            byte[] records = Arrays.copyOfRange(bytes, slotsOffset, slotsOffset + 3 * recordSize);
+            Arrays.fill(bytes, 0, 16, (byte) -1);  // seule page de freePages
+            Arrays.fill(bytes, 16, bytes.length, (byte) 0);
+            System.arraycopy(records, 0, bytes, 16, records.length);
+            for (int i = 0; i < 3; i++) {
+                bytes[16 + legacySlots * recordSize + i] = 1;
+            }
+            page.markDirty();
+        }
+        // Header sans marqueur de format (ancienne relation) : listes fullPages / freePages
+        PageId dataPage = rids.get(0).getPageId();
+        try (PageHandle header = bufferManager.GetPageHandle(rel.getHeaderPageId())) {
+            Arrays.fill(header.getBytes(), 0, 8, (byte) -1);
+            header.putInt(8, dataPage.getFileIdx());
+            header.putInt(12, dataPage.getPageIdx());
+            Arrays.fill(header.getBytes(), 16, 60, (byte) 0);
+            header.markDirty();
+        }
+        bufferManager.FlushBuffers();
+
+        Relation loaded = new Relation("R", rel.getColumns(), rel.getHeaderPageId(), diskManager, bufferManager);
+        assertEquals(3, loaded.getRecordCount());
+        List<Record> all = loaded.GetAllRecords();
+        assertEquals(3, all.size());
+        assertEquals(2, all.get(2).getValue(0));
+        assertEquals("old2", all.get(2).getValue(1));
+
+        // Les insertions suivantes utilisent la bitmap
+        RecordId next = loaded.InsertRecord(new Record(Arrays.asList(3, "new")));
+        assertEquals(3, next.getSlotIdx());
+        assertEquals(4, loaded.GetAllRecords().size());
+    }
+
+    @Test
+    void testFreeSpaceMapDirectory() throws IOException {
+        Relation rel = createRelation();
+        int perPage = rel.getSlotCount();
+        List<RecordId> rids = new ArrayList<>();
+        for (int i = 0; i < 3 * perPage; i++) {
+            rids.add(rel.InsertRecord(new Record(Arrays.asList(i, "v" + i))));
+        }
+        assertEquals(3, rel.getDataPageCount());
+        assertEquals(3, rel.getFullPageCount());
+        assertEquals(1, rel.getFreeSpaceMapPages().size());
+
+        // Rechargement : le répertoire est relu depuis les pages FSM
+        bufferManager.FlushBuffers();
+        Relation loaded = new Relation("R", rel.getColumns(), rel.getHeaderPageId(), diskManager, bufferManager);
+        assertEquals(rel.getDataPages(), loaded.getDataPages());
+        assertEquals(3, loaded.getFullPageCount());
+        assertNull(loaded.getFreeDataPageId(28));
+
+        // Un slot libéré rend sa page cible des insertions
+        PageId second = rids.get(perPage).getPageId();
+        loaded.DeleteRecord(rids.get(perPage));
+        assertEquals(second, loaded.getFreeDataPageId(28));
+        assertEquals(second, loaded.InsertRecord(new Record(Arrays.asList(-1, "x"))).getPageId());
+
+        // Une page vidée est retirée du répertoire
+        for (int i = 0; i < perPage; i++) {
+            loaded.DeleteRecord(rids.get(i));
+        }
+        assertEquals(2, loaded.getDataPageCount());
+        assertFalse(loaded.getDataPages().contains(rids.get(0).getPageId()));
+        assertEquals(2 * perPage, loaded.GetAllRecords().size());
+    }
+
+    @Test
+    void testBulkInsertFillsPages() throws IOException {
+        Relation rel = createRelation();
+        int perPage = rel.getSlotCount();
+
+        // Un record isolé puis un lot : le lot complète d'abord la page existante
+        rel.InsertRecord(new Record(Arrays.asList(-1, "seul")));
+        List<Record> batch = new ArrayList<>();
+        for (int i = 0; i < 2 * perPage; i++) {
+            batch.add(new Record(Arrays.asList(i, "b" + i)));
+        }
+        List<RecordId> rids = rel.InsertRecords(batch);
+
+        assertEquals(batch.size(), rids.size());
+        assertEquals(1, rids.get(0).getSlotIdx());
+        assertEquals(rids.get(0).getPageId(), rids.get(perPage - 2).getPageId());
+        assertNotEquals(rids.get(0).getPageId(), rids.get(perPage - 1).getPageId());
+
+        assertEquals(2 * perPage + 1, rel.getRecordCount());
+        assertEquals(2, rel.getFullPageCount());
+        assertEquals(1, rel.getFreePageCount());
+        assertEquals(2 * perPage + 1, rel.GetAllRecords().size());
+    }
+
+    @Test
+    void testDirectLoadBuildsFullPages() throws IOException {
+        Relation rel = createRelation();
+        int perPage = rel.getSlotCount();
+        rel.InsertRecord(new Record(Arrays.asList(-1, "avant")));
+
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < 3 * perPage + 5; i++) {
+            records.add(new Record(Arrays.asList(i, "d" + i)));
+        }
+        assertEquals(records.size(), rel.LoadRecordsDirect(records.iterator()));
+
+        // 3 pages pleines écrites directement, le reste complète la page existante
+        assertEquals(3 * perPage + 6, rel.getRecordCount());
+        assertEquals(3, rel.getFullPageCount());
+        assertEquals(1, rel.getFreePageCount());
+
+        bufferManager.FlushBuffers();
+        Relation loaded = new Relation("R", rel.getColumns(), rel.getHeaderPageId(), diskManager, bufferManager);
+        List<Record> all = loaded.GetAllRecords();
+        assertEquals(3 * perPage + 6, all.size());
+        assertEquals(4, loaded.getDataPages().size());
+        assertTrue(all.stream().anyMatch(r -> "d0".equals(r.getValue(1))));
+        assertTrue(all.stream().anyMatch(r -> ("d" + (3 * perPage + 4)).equals(r.getValue(1))));
+    }
+
+    @Test
+    void testInsertHintAndFreeSpaceMapReuse() throws IOException {
+        Relation rel = createRelation();
+        int perPage = rel.getSlotCount();
+
+        // Page A pleine, page B avec un seul record (cible courante)
+        List<RecordId> rids = new ArrayList<>();
+        for (int i = 0; i <= perPage; i++) {
+            rids.add(rel.InsertRecord(new Record(Arrays.asList(i, "h" + i))));
+        }
+        PageId pageA = rids.get(0).getPageId();
+        PageId pageB = rids.get(perPage).getPageId();
+        assertEquals(pageB, rel.getFreeDataPageId(rel.getRecordSize()));
+
+        // A regagne un slot (bit libre dans la FSM) : la cible reste B tant qu'elle n'est pas pleine
+        rel.DeleteRecord(rids.get(3));
+        assertEquals(pageB, rel.InsertRecord(new Record(Arrays.asList(-1, "b"))).getPageId());
+
+        // B supprimée (vide) : plus de cible, la page A est trouvée dans la
+        // bitmap de la FSM et son slot libéré est réutilisé
+        rel.DeleteRecord(rids.get(perPage));
+        rel.DeleteRecord(new RecordId(pageB, 1));
+        RecordId reused = rel.InsertRecord(new Record(Arrays.asList(-2, "a")));
+        assertEquals(pageA, reused.getPageId());
+        assertEquals(3, reused.getSlotIdx());
+        assertEquals(perPage, rel.getRecordCount());
+        assertEquals(1, rel.getDataPageCount());
+    }
+
+    @Test
+    void testZoneMapBounds() throws IOException {
+        Relation rel = createRelation();
+        int perPage = rel.getSlotCount();
+        List<RecordId> rids = new ArrayList<>();
+        for (int i = 0; i < 2 * perPage; i++) {
+            rids.add(rel.InsertRecord(new Record(Arrays.asList(i, "v" + i))));
+        }
+        ZoneMap zones = rel.getZoneMap();
+        assertTrue(zones.isTracked(0));
+        assertFalse(zones.isTracked(1));
+        PageId first = rids.get(0).getPageId();
+        PageId second = rids.get(perPage).getPageId();
+        assertEquals(0, zones.getIntMin(first, 0));
+        assertEquals(perPage - 1, zones.getIntMax(first, 0));
+        assertEquals(perPage, zones.getIntMin(second, 0));
+
+        // UPDATE élargit l'intervalle, DELETE ne le réduit pas
+        rel.updateColumns(rids.get(1), new int[]{0}, new Object[]{-50});
+        rel.DeleteRecord(rids.get(perPage - 1));
+        assertEquals(-50, zones.getIntMin(first, 0));
+        assertEquals(perPage - 1, zones.getIntMax(first, 0));
+
+        // Persistée avec la FSM
+        bufferManager.FlushBuffers();
+        Relation loaded = new Relation("R", rel.getColumns(), rel.getHeaderPageId(), diskManager, bufferManager);
+        assertTrue(loaded.getZoneMap().hasValues(second));
+        assertEquals(-50, loaded.getZoneMap().getIntMin(first, 0));
+        assertEquals(2 * perPage - 1, loaded.getZoneMap().getIntMax(second, 0));
+    }
+
+    @Test
+    void testBloomFiltersPerPage() throws IOException {
+        List<ColumnInfo> columns = Arrays.asList(
+            new ColumnInfo("Id", "INT BLOOM"),
+            new ColumnInfo("Nom", "VARCHAR(20) DICT BLOOM"),
+            new ColumnInfo("Note", "FLOAT")
+        );
+        assertTrue(columns.get(1).isDictionaryEncoded());
+        assertTrue(columns.get(1).hasBloomFilter());
+        assertEquals(4, columns.get(1).getSizeInBytes());
+
+        Relation rel = new Relation("B", columns, diskManager, bufferManager);
+        int perPage = rel.getSlotCount();
+        List<RecordId> rids = new ArrayList<>();
+        for (int i = 0; i < 3 * perPage; i++) {
+            // Ids dispersés : la zone map de chaque page couvre presque tout l'intervalle
+            int id = (i * 7919) % (3 * perPage);
+            rids.add(rel.InsertRecord(new Record(Arrays.asList(id, "nom" + id, 1.0f))));
+        }
+        BloomFilters filters = rel.getBloomFilters();
+        assertFalse(filters.hasFilter(2));
+
+        // Aucun faux négatif, peu de pages candidates pour une valeur donnée
+        PageId page = rids.get(5).getPageId();
+        int id = (5 * 7919) % (3 * perPage);
+        assertTrue(filters.mightContain(page, 0, id));
+        assertTrue(filters.mightContain(page, 1, "nom" + id));
+        int candidates = 0;
+        for (PageId p : rel.getDataPages()) {
+            if (filters.mightContain(p, 1, "nom" + id)) {
+                candidates++;
+            }
+        }
+        assertEquals(1, candidates);
+
+        // Persistés avec la FSM
+        bufferManager.FlushBuffers();
+        Relation loaded = new Relation("B", columns, rel.getHeaderPageId(), diskManager, bufferManager);
+        assertTrue(loaded.getBloomFilters().mightContain(page, 0, id));
+        assertFalse(loaded.getBloomFilters().mightContain(page, 1, "absent"));
+
+        // Après beaucoup de suppressions, la prochaine insertion reconstruit les filtres
+        for (int i = 0; i < perPage / 2; i++) {
+            loaded.DeleteRecord(rids.get(i));
+        }
+        assertTrue(loaded.getBloomFilters().mightContain(page, 1, "nom" + id));
+        RecordId added = loaded.InsertRecord(new Record(Arrays.asList(-1, "nouveau", 2.0f)));
+        assertEquals(page, added.getPageId());
+        assertFalse(loaded.getBloomFilters().mightContain(page, 1, "nom" + id));
+        assertTrue(loaded.getBloomFilters().mightContain(page, 1, "nouveau"));
+    }
+
+    @Test
+    void testVacuumReclaimsSparsePages() throws IOException {
+        Relation rel = createRelation();
+        int perPage = rel.getSlotCount();
+        List<Record> batch = new ArrayList<>();
+        for (int i = 0; i < 6 * perPage; i++) {
+            batch.add(new Record(Arrays.asList(i, "v" + i)));
+        }
+        List<RecordId> rids = rel.InsertRecords(batch);
+        assertEquals(6, rel.getDataPageCount());
+
+        // Garder un record sur trois : 6 pages au tiers pleines
+        for (int i = 0; i < rids.size(); i++) {
+            if (i % 3 != 0) {
+                rel.DeleteRecord(rids.get(i));
+            }
+        }
+        assertEquals(6, rel.getFreePageCount());
+        assertTrue(rel.needsVacuum(0.5));
+
+        assertEquals(4, rel.Vacuum());
+        assertEquals(2, rel.getDataPageCount());
+        assertEquals(2 * perPage, rel.getRecordCount());
+        List<Record> all = rel.GetAllRecords();
+        assertEquals(2 * perPage, all.size());
+        long sum = 0;
+        for (Record r : all) {
+            sum += (Integer) r.getValue(0);
+        }
+        long expected = 0;
+        for (int i = 0; i < rids.size(); i += 3) {
+            expected += i;
+        }
+        assertEquals(expected, sum);
+
+        // Rien à gagner une seconde fois
+        assertEquals(0, rel.Vacuum());
+        assertFalse(rel.needsVacuum(0.5));
+    }
+
+    @Test
+    void testUpdateColumnsInPlace() throws IOException {
+        List<ColumnInfo> columns = Arrays.asList(
+            new ColumnInfo("Id", "INT"),
+            new ColumnInfo("Note", "FLOAT"),
+            new ColumnInfo("Pays", "VARCHAR(10) DICT"),
+            new ColumnInfo("Nom", "VARCHAR(20)")
+        );
+        for (StorageLayout layout : StorageLayout.values()) {
+            Relation rel = new Relation("U" + layout, columns, layout, diskManager, bufferManager);
+            RecordId a = rel.InsertRecord(new Record(Arrays.asList(1, 1.5f, "France", "Alice")));
+            RecordId b = rel.InsertRecord(new Record(Arrays.asList(2, 2.5f, "Italie", "Bob")));
+
+            rel.updateColumns(a, new int[]{0, 2}, new Object[]{10, "Espagne"});
+            rel.updateColumns(b, new int[]{3}, new Object[]{"Roberto"});
+
+            // Les autres colonnes et l'autre record sont intacts
+            List<Record> all = rel.GetAllRecords();
+            assertEquals(Arrays.asList(10, 1.5f, "Espagne", "Alice"), all.get(0).getValues(), layout.name());
+            assertEquals(Arrays.asList(2, 2.5f, "Italie", "Roberto"), all.get(1).getValues(), layout.name());
+            assertEquals(2, rel.getRecordCount());
+        }
+
+        // SLOTTED : des records qui grandissent au-delà de la place de leur page pleine
+        Relation slotted = new Relation("UGrow", columns, StorageLayout.SLOTTED, diskManager, bufferManager);
+        List<RecordId> rids = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            rids.add(slotted.InsertRecord(new Record(Arrays.asList(i, 0.5f, "France", "a"))));
+        }
+        slotted.prepareUpdate(new int[]{2, 3}, new Object[]{"Portugal", "Bartholomew Lee"});
+        for (RecordId rid : rids) {
+            slotted.updateColumns(rid, new int[]{2, 3}, new Object[]{"Portugal", "Bartholomew Lee"});
+        }
+        List<Record> all = slotted.GetAllRecords();
+        assertEquals(250, all.size());
+        for (Record record : all) {
+            assertEquals(Arrays.asList("Portugal", "Bartholomew Lee"), record.getValues().subList(2, 4));
+        }
+        assertEquals(250, slotted.getRecordCount());
+
+        Relation rel = createRelation();
+        RecordId rid = rel.InsertRecord(new Record(Arrays.asList(1, "a")));
+        assertThrows(IllegalArgumentException.class,
+            () -> rel.updateColumns(rid, new int[]{0, 1}, new Object[]{2}));
+    }
+
+    @Test
+    void testSlottedLayoutVariableLength() throws IOException {
+        List<ColumnInfo> columns = Arrays.asList(
+            new ColumnInfo("Id", "INT"),
+            new ColumnInfo("Texte", "VARCHAR(255)")
+        );
+        Relation row = new Relation("Row", columns, diskManager, bufferManager);
+        Relation rel = new Relation("Slotted", columns, StorageLayout.SLOTTED, diskManager, bufferManager);
+
+        // Des chaînes courtes : bien plus de records par page qu'avec des slots fixes
+        List<RecordId> rids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            rids.add(rel.InsertRecord(new Record(Arrays.asList(i, "abc"))));
+        }
+        assertTrue(row.getSlotCount() < 20);
+        assertEquals(1, rel.getDataPageCount());
+
+        // Supprimer puis agrandir des records : le compactage garde les RecordId
+        for (int i = 0; i < 200; i += 2) {
+            rel.DeleteRecord(rids.get(i));
+        }
+        String longText = "x".repeat(200);
+        try (PageHandle page = bufferManager.GetPageHandle(rids.get(1).getPageId())) {
+            for (int i = 1; i < 20; i += 2) {
+                rel.writeRecordToSlot(page, rids.get(i).getSlotIdx(), new Record(Arrays.asList(i, longText)));
+            }
+            page.markDirty();
+
+            Record record = new Record();
+            rel.readRecordFromSlot(page, rids.get(7).getSlotIdx(), record);
+            assertEquals(longText, record.getValue(1));
+            rel.readRecordFromSlot(page, rids.get(199).getSlotIdx(), record);
+            assertEquals(Arrays.asList(199, "abc"), record.getValues());
+        }
+        assertEquals(100, rel.GetAllRecords().size());
+
+        // Le layout est relu depuis la Header Page
+        bufferManager.FlushBuffers();
+        Relation loaded = new Relation("Slotted", columns, rel.getHeaderPageId(), diskManager, bufferManager);
+        assertEquals(StorageLayout.SLOTTED, loaded.getLayout());
+        assertEquals(100, loaded.GetAllRecords().size());
+        assertEquals(100, loaded.getRecordCount());
+    }
+
+    @Test
+    void testSlottedRecordsGrowingOutOfTheirPage() throws IOException {
+        List<ColumnInfo> columns = Arrays.asList(
+            new ColumnInfo("Id", "INT"),
+            new ColumnInfo("Texte", "VARCHAR(255)")
+        );
+        Relation rel = new Relation("Grow", columns, StorageLayout.SLOTTED, diskManager, bufferManager);
+        List<RecordId> rids = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            rids.add(rel.InsertRecord(new Record(Arrays.asList(i, "abc"))));
+        }
+
+        // La première page est pleine : ses records grandis sont déplacés,
+        // leur slot renvoie vers eux et les RecordId restent valides
+        String longText = "x".repeat(250);
+        for (RecordId rid : rids) {
+            rel.updateColumns(rid, new int[]{1}, new Object[]{longText});
+        }
+        assertTrue(rel.getDataPageCount() > 10);
+        Record record = new Record();
+        for (int i = 0; i < 300; i++) {
+            try (PageHandle page = bufferManager.GetPageHandle(rids.get(i).getPageId())) {
+                assertTrue(rel.isSlotOccupied(page, rids.get(i).getSlotIdx()));
+                rel.readRecordFromSlot(page, rids.get(i).getSlotIdx(), record);
+                assertEquals(Arrays.asList(i, longText), record.getValues());
+            }
+        }
+
+        // Un parcours voit chaque record une seule fois (à travers son renvoi)
+        List<Integer> ids = rel.stream().map(r -> (Integer) r.getValue(0)).sorted().collect(Collectors.toList());
+        assertEquals(300, ids.size());
+        assertEquals(299, ids.get(299));
+        assertEquals(300, rel.getRecordCount());
+
+        // Raccourcir un record déplacé le ramène dans sa page
+        rel.updateColumns(rids.get(0), new int[]{1}, new Object[]{"a"});
+
+        // Supprimer libère le renvoi et le record déplacé ; VACUUM garde les paires
+        for (int i = 1; i < 300; i += 3) {
+            rel.DeleteRecord(rids.get(i));
+        }
+        assertTrue(rel.Vacuum() > 0);
+        bufferManager.FlushBuffers();
+        Relation loaded = new Relation("Grow", columns, rel.getHeaderPageId(), diskManager, bufferManager);
+        List<Record> all = loaded.GetAllRecords();
+        assertEquals(200, all.size());
+        assertEquals(200, loaded.getRecordCount());
+        for (Record r : all) {
+            int id = (Integer) r.getValue(0);
+            assertNotEquals(1, id % 3);
+            assertEquals(id == 0 ? "a" : longText, r.getValue(1));
+        }
+    }
+
+    @Test
+    void testColumnarLayout() throws IOException {
+        List<ColumnInfo> columns = Arrays.asList(
+            new ColumnInfo("Id", "INT"),
+            new ColumnInfo("Nom", "CHAR(8)"),
+            new ColumnInfo("Prix", "FLOAT")
+        );
+        Relation rel = new Relation("C", columns, StorageLayout.COLUMNAR, diskManager, bufferManager);
+        List<RecordId> rids = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            rids.add(rel.InsertRecord(new Record(Arrays.asList(i, "n" + i, i * 1.5f))));
+        }
+        rel.DeleteRecord(rids.get(10));
+
+        PageId pageId = rids.get(0).getPageId();
+        int[] ids = new int[rel.getSlotCount()];
+        float[] prix = new float[rel.getSlotCount()];
+        try (PageHandle page = bufferManager.GetPageHandle(pageId)) {
+            rel.readIntColumn(page, 0, ids);
+            rel.readFloatColumn(page, 2, prix);
+            // Le ByteBuffer de la page, partagé par ses lecteurs, n'est pas déplacé
+            assertEquals(0, page.getByteBuffer().position());
+            assertEquals("n7", rel.readColumnValue(page, rids.get(7).getSlotIdx(), 1));
+        }
+        assertEquals(42, ids[rids.get(42).getSlotIdx()]);
+        assertEquals(63.0f, prix[rids.get(42).getSlotIdx()]);
+
+        // Lecture ligne à ligne inchangée pour les opérateurs
+        List<Record> all = rel.GetAllRecords();
+        assertEquals(49, all.size());
+        assertTrue(all.contains(new Record(Arrays.asList(49, "n49", 73.5f))));
+
+        bufferManager.FlushBuffers();
+        Relation loaded = new Relation("C", columns, rel.getHeaderPageId(), diskManager, bufferManager);
+        assertEquals(StorageLayout.COLUMNAR, loaded.getLayout());
+        assertEquals(49, loaded.GetAllRecords().size());
+    }
+
+    @Test
+    void testDictionaryEncodedColumns() throws IOException {
+        List<ColumnInfo> columns = Arrays.asList(
+            new ColumnInfo("Id", "INT"),
+            new ColumnInfo("Pays", "VARCHAR(40) DICT"),
+            new ColumnInfo("Statut", "CHAR(10) dict")
+        );
+        Relation rel = new Relation("D", columns, diskManager, bufferManager);
+        // Seulement des codes de 4 bytes dans les slots
+        assertEquals(12, rel.getRecordSize());
+
+        String[] pays = {"France", "Allemagne", "Italie"};
+        for (int i = 0; i < 300; i++) {
+            rel.InsertRecord(new Record(Arrays.asList(i, pays[i % 3], i % 2 == 0 ? "OK" : "KO")));
+        }
+        assertEquals(0, rel.lookupDictionaryCode("France"));
+        assertEquals(-1, rel.lookupDictionaryCode("Espagne"));
+        assertEquals(1, rel.getDictionaryPages().size());
+
+        // Le dictionnaire est relu depuis ses pages
+        bufferManager.FlushBuffers();
+        Relation loaded = new Relation("D", columns, rel.getHeaderPageId(), diskManager, bufferManager);
+        List<Record> all = loaded.GetAllRecords();
+        assertEquals(300, all.size());
+        assertTrue(all.contains(new Record(Arrays.asList(4, "Allemagne", "OK"))));
+        // Un seul dictionnaire pour la relation : France, OK, Allemagne, KO, Italie
+        assertEquals(4, loaded.lookupDictionaryCode("Italie"));
+
+        // Les nouvelles valeurs continuent la numérotation
+        RecordId rid = loaded.InsertRecord(new Record(Arrays.asList(300, "Espagne", "OK")));
+        assertEquals(5, loaded.lookupDictionaryCode("Espagne"));
+        try (PageHandle page = bufferManager.GetPageHandle(rid.getPageId())) {
+            assertEquals(5, loaded.readColumnCode(page, rid.getSlotIdx(), 1));
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> new ColumnInfo("X", "INT DICT"));
+    }
+
+    @Test
+    void testTypedRecords() throws IOException {
+        List<ColumnInfo> columns = Arrays.asList(
+            new ColumnInfo("Id", "INT"),
+            new ColumnInfo("Note", "FLOAT"),
+            new ColumnInfo("Nom", "VARCHAR(10)")
+        );
+        Relation rel = new Relation("Typed", columns, diskManager, bufferManager);
+
+        // Écriture depuis un record typé
+        Record typed = rel.newRecord();
+        typed.setInt(0, 7);
+        typed.setFloat(1, 12.5f);
+        typed.setValue(2, "Zoe");
+        RecordId rid = rel.InsertRecord(typed);
+
+        // Relecture dans un record typé : valeurs primitives, égal au record générique
+        Record read = rel.newRecord();
+        try (PageHandle page = bufferManager.GetPageHandle(rid.getPageId())) {
+            rel.readRecordFromSlot(page, rid.getSlotIdx(), read);
+        }
+        assertNotNull(read.getSchema());
+        assertEquals(7, read.getInt(0));
+        assertEquals(12.5f, read.getFloat(1));
+        assertEquals("Zoe", read.getString(2));
+        assertEquals(new Record(Arrays.asList(7, 12.5f, "Zoe")), read);
+        assertEquals(new Record(Arrays.asList(7, 12.5f, "Zoe")), rel.GetAllRecords().get(0));
+
+        // Conversion à l'affectation, projection du schéma
+        read.setValue(0, "42");
+        assertEquals(42, read.getValue(0));
+        Record projected = rel.getRecordSchema().project(Arrays.asList(2, 0)).newRecord();
+        projected.copyValue(0, read, 2);
+        projected.copyValue(1, read, 0);
+        assertEquals(new Record(Arrays.asList("Zoe", 42)), projected);
+    }
+
+    @Test
+    void testRecordLayout() throws IOException {
+        List<ColumnInfo> columns = Arrays.asList(
+            new ColumnInfo("Id", "INT"),
+            new ColumnInfo("Code", "char(3)"),
+            new ColumnInfo("Nom", "VARCHAR(10)"),
+            new ColumnInfo("Note", "FLOAT")
+        );
+        Relation rel = new Relation("Layout", columns, diskManager, bufferManager);
+        RecordLayout layout = rel.getRecordLayout();
+
+        // Offsets et tailles calculés une fois : 4 + 3 + (4 + 10) + 4
+        assertEquals(25, layout.getRecordSize());
+        assertEquals(25, rel.getRecordSize());
+        assertEquals(7, layout.getOffset(2));
+        assertEquals(14, layout.getSize(2));
+        assertEquals(10, layout.getMaxLength(2));
+        assertTrue(layout.isFloat(3));
+
+        // Codec : accès absolus, la position du buffer ne bouge pas
+        ByteBuffer buff = ByteBuffer.allocate(64);
+        Record record = new Record(Arrays.asList(5, "ABCD", "Eve", 1.5f));
+        rel.writeRecordToBuffer(record, buff, 10);
+        assertEquals(0, buff.position());
+        assertEquals(5, buff.getInt(10));
+        assertEquals(3, buff.getInt(10 + 7));
+
+        Record read = rel.newRecord();
+        rel.readFromBuffer(read, buff, 10);
+        assertEquals(new Record(Arrays.asList(5, "ABC", "Eve", 1.5f)), read);
+    }
+
+    @Test
+    void testTableStatistics() throws IOException {
+        Relation rel = createRelation();
+
+        // Id : 0..19999 (tous distincts), Nom : 50 valeurs
+        List<Record> batch = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            batch.add(new Record(Arrays.asList(i, "nom" + (i % 50))));
+        }
+        rel.InsertRecords(batch);
+
+        TableStatistics stats = TableStatistics.collect(List.of(rel));
+        assertEquals(20000, stats.getRowCount());
+        assertEquals(rel.getDataPageCount(), stats.getPageCount());
+
+        // HyperLogLog : quelques pourcents d'erreur
+        assertEquals(20000, stats.getDistinctCount(0), 20000 * 0.05);
+        assertEquals(50, stats.getDistinctCount(1), 3);
+        assertEquals(400, stats.estimateEqualRows(1), 400 * 0.1);
+
+        // Histogramme equi-profondeur sur l'echantillon : bornes croissantes, quantiles proches
+        List<Object> histogram = stats.getHistogram(0);
+        assertEquals(TableStatistics.HISTOGRAM_BUCKETS + 1, histogram.size());
+        for (int k = 1; k < histogram.size(); k++) {
+            assertTrue((Integer) histogram.get(k - 1) <= (Integer) histogram.get(k));
+        }
+        assertEquals(0.25, stats.fractionBelow(0, 5000), 0.05);
+        assertEquals(0.0, stats.fractionBelow(0, -1));
+        assertEquals(1.0, stats.fractionBelow(0, 20000));
+
+        // Persistance : relu a l'identique
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        stats.write(new DataOutputStream(bytes));
+        TableStatistics read = TableStatistics.read(
+            new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), rel.getColumns());
+        assertEquals(stats.getDistinctCount(1), read.getDistinctCount(1));
+        assertEquals(histogram, read.getHistogram(0));
+        assertEquals(stats.getHistogram(1), read.getHistogram(1));
+    }
+
+    @Test
+    void testStreamAndParallelStream() throws IOException {
+        Relation rel = createRelation();
+        List<Record> batch = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            batch.add(new Record(Arrays.asList(i, "n" + (i % 7))));
+        }
+        rel.InsertRecords(batch);
+        // Plus de pages que de frames : une page epinglee non liberee bloquerait le parcours
+        assertTrue(rel.getDataPageCount() > config.getBufferCount());
+
+        long expectedSum = 5000L * 4999 / 2;
+        assertEquals(5000, rel.stream().count());
+        assertEquals(expectedSum, rel.stream().mapToLong(r -> r.getInt(0)).sum());
+        assertEquals(expectedSum, rel.parallelStream().mapToLong(r -> r.getInt(0)).sum());
+        assertEquals(5000 / 7 + 1, rel.parallelStream().filter(r -> r.getValue(1).equals("n0")).count());
+
+        // Meme ordre que GetAllRecords, y compris en parallele (flux ordonne)
+        List<Record> all = rel.GetAllRecords();
+        assertEquals(all, rel.parallelStream().collect(Collectors.toList()));
+
+        // Decoupage par plages de pages : les deux moitiees couvrent tous les records
+        RelationSpliterator rest = new RelationSpliterator(rel, 0, rel.getDataPageCount());
+        Spliterator<Record> prefix = rest.trySplit();
+        assertNotNull(prefix);
+        long[] counts = new long[2];
+        prefix.forEachRemaining(r -> counts[0]++);
+        while (rest.tryAdvance(r -> counts[1]++)) { }
+        assertTrue(counts[0] > 0 && counts[1] > 0);
+        assertEquals(5000, counts[0] + counts[1]);
+        assertNull(new RelationSpliterator(rel, 0, 1).trySplit());
+    }
+}